@@ -1,48 +1,68 @@
 package com.example.team_16.database;
 
+import com.example.team_16.models.AuthorSnapshot;
 import com.example.team_16.models.Comment;
-import com.example.team_16.models.EmotionalState;
 import com.example.team_16.models.MoodEvent;
+import com.example.team_16.utils.ConnectivityUtil;
+import com.example.team_16.utils.ImageCompressionPipeline;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.AggregateQuerySnapshot;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.CollectionReference;
+import com.google.firebase.firestore.DocumentChange;
 import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FieldPath;
 import com.google.firebase.firestore.FieldValue;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreException;
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
+import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
 import com.google.firebase.firestore.DocumentSnapshot;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.Transaction;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
 import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import android.app.ProgressDialog;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 import android.net.Uri;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.widget.Toast;
 
 /**
  * Comprehensive Firebase Database Management for Mood Tracking App
  */
-public class FirebaseDB {
+public class FirebaseDB implements MoodRepository, SocialGraphRepository, PhotoUploadQueue.Uploader {
     // Singleton instance
     private static FirebaseDB instance;
 
@@ -51,14 +71,59 @@ public class FirebaseDB {
     private final FirebaseAuth auth;
     private final FirebaseStorage storage;
     private final Context context;
+    private final UserSummaryCache userSummaryCache;
+    private final PhotoUrlResolver photoUrlResolver;
+    private final ConnectivityUtil connectivity;
+
+    private final Map<String, MoodOperationJournal> pendingJournals = new HashMap<>();
+    private final Map<String, PhotoUploadQueue> photoUploadQueues = new HashMap<>();
+    // Journal writes, replays and staged-photo restores, in submission order off the main thread
+    private final Executor pendingWriter = Executors.newSingleThreadExecutor();
+    private final Executor mainThread = new Handler(Looper.getMainLooper())::post;
+    private LocalMoodStore localMoodStore;
+    private ImageCompressionPipeline imageCompressionPipeline;
+
+    // Users whose legacy following array is known to be empty or already moved to edges
+    private final Set<String> migratedFollowing = ConcurrentHashMap.newKeySet();
 
     // Collection names
     private static final String USERS_COLLECTION = "users";
+    private static final String USERNAMES_COLLECTION = "usernames";
     private static final String MOODS_COLLECTION = "mood_events";
     private static final String FOLLOW_REQUESTS_COLLECTION = "follow_requests";
     private static final String FOLLOWING_COLLECTION = "following";
+    private static final String FOLLOW_COUNTS_COLLECTION = "follow_counts";
+    private static final String EDGES_SUBCOLLECTION = "edges";
     private static final String COMMENTS_SUBCOLLECTION = "comments";
 
+    // Tombstone field Firestore's TTL policy deletes expired tombstones by
+    private static final String EXPIRE_AT_FIELD = "expireAt";
+
+    // Directory under getFilesDir() holding the offline write journals
+    private static final String PENDING_JOURNAL_DIR = "pending_moods";
+
+    // Directory under getFilesDir() holding staged mood photos, one subdirectory per user
+    private static final String PENDING_UPLOADS_DIR = "pending_uploads";
+
+    // Maximum number of values Firestore accepts in a single whereIn clause
+    private static final int WHERE_IN_LIMIT = 30;
+
+    // Upper bound on per-followee queries in flight at once
+    private static final int MAX_CONCURRENT_QUERIES = 8;
+
+    // Upper bound on write batches in flight at once when flushing queued writes
+    private static final int MAX_CONCURRENT_BATCHES = 2;
+
+    // Mood events read per page when rewriting author snapshots
+    private static final int AUTHOR_REFRESH_PAGE_SIZE = 200;
+
+    // Shared user summary cache bounds
+    private static final int USER_CACHE_SIZE = 256;
+    private static final long USER_CACHE_TTL_MS = 5 * 60 * 1000;
+
+    // Photo download URLs remembered per session
+    private static final int PHOTO_URL_CACHE_SIZE = 512;
+
     /**
      * Interface for callbacks
      */
@@ -83,6 +148,15 @@ public class FirebaseDB {
 
         this.auth = FirebaseAuth.getInstance();
         this.storage = FirebaseStorage.getInstance();
+        this.userSummaryCache = new UserSummaryCache(
+                (userId, callback) -> fetchUserById(userId,
+                        userData -> callback.onCallback(UserSummary.fromUserData(userId, userData))),
+                USER_CACHE_SIZE,
+                USER_CACHE_TTL_MS);
+        this.photoUrlResolver = new PhotoUrlResolver(this::fetchDownloadUrl, this::backfillPhotoUrl,
+                PHOTO_URL_CACHE_SIZE);
+        this.connectivity = new ConnectivityUtil(context);
+        connectivity.startMonitoring();
     }
 
     /**
@@ -104,18 +178,26 @@ public class FirebaseDB {
     }
 
     /**
-     * Check if device is online
+     * Check if device is online, using the state cached from network callbacks
      */
+    @Override
     public boolean isOnline() {
-        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        NetworkInfo netInfo = cm.getActiveNetworkInfo();
-        return netInfo != null && netInfo.isConnected();
+        return connectivity.isNetworkAvailable();
+    }
+
+    /**
+     * Network state shared by everything that waits for connectivity, e.g. SyncScheduler
+     */
+    public ConnectivityUtil getConnectivity() {
+        return connectivity;
     }
 
     // Authentication Methods
 
     /**
-     * Sign up a new user
+     * Sign up a new user. The username is claimed by creating usernames/{usernameLower}
+     * in the same transaction as the profile, so two signups racing for one name
+     * cannot both succeed; the loser's auth account is deleted again.
      */
     public void signup(
             String fullName,
@@ -124,84 +206,201 @@ public class FirebaseDB {
             String password,
             FirebaseCallback<String> callback) {
 
-        // First, check if username is unique
-        db.collection(USERS_COLLECTION)
-                .whereEqualTo("usernameLower", username.toLowerCase())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (!queryDocumentSnapshots.isEmpty()) {
-                        // Username already exists
-                        callback.onCallback("Username is already taken. Please choose another.");
+        String usernameLower = username.toLowerCase();
+
+        // Cheap early check so a taken name does not create an auth account first
+        isUsernameTaken(usernameLower, taken -> {
+            if (taken == null) {
+                callback.onCallback("Error checking username availability.");
+                return;
+            }
+            if (taken) {
+                callback.onCallback("Username is already taken. Please choose another.");
+                return;
+            }
+            // Create user with email and password
+            auth.createUserWithEmailAndPassword(email, password)
+                    .addOnSuccessListener(authResult -> {
+                        FirebaseUser firebaseUser = authResult.getUser();
+                        if (firebaseUser == null) {
+                            callback.onCallback("Signup failed. Please try again.");
+                            return;
+                        }
+                        createProfile(firebaseUser, fullName, username, email)
+                                .addOnSuccessListener(created -> {
+                                    if (created) {
+                                        callback.onCallback("Signup successful!");
+                                    } else {
+                                        firebaseUser.delete();
+                                        callback.onCallback("Username is already taken. Please choose another.");
+                                    }
+                                })
+                                .addOnFailureListener(e -> {
+                                    Log.e("FirebaseDB", "Error creating profile", e);
+                                    firebaseUser.delete();
+                                    callback.onCallback("Error creating profile. Please try again.");
+                                });
+                    })
+                    .addOnFailureListener(e -> {
+                        if (e.getMessage().contains("email")) {
+                            callback.onCallback("Email is already in use. Try another.");
+                        } else {
+                            callback.onCallback("Signup failed. " + e.getMessage());
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Write the username reservation, user profile and follow counters together
+     *
+     * @return Task resolving to false if the username was claimed in the meantime
+     */
+    private Task<Boolean> createProfile(FirebaseUser firebaseUser, String fullName, String username, String email) {
+        String userId = firebaseUser.getUid();
+        DocumentReference reservationRef = usernameRef(username);
+
+        // Create user profile in Firestore
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("id", userId);
+        userData.put("fullName", fullName);
+        userData.put("username", username);
+        userData.put("usernameLower", username.toLowerCase());
+        userData.put("email", email);
+
+        userData.put("locationPermission", false);
+        userData.put("photoPermission", false);
+        userData.put("cameraPermission", false);
+
+        // Start the follow counters at zero so profile headers never need a scan
+        Map<String, Object> counts = new HashMap<>();
+        counts.put(FollowCounts.FOLLOWER_COUNT, 0);
+        counts.put(FollowCounts.FOLLOWING_COUNT, 0);
+
+        return db.runTransaction(transaction -> {
+            if (transaction.get(reservationRef).exists()) {
+                return false;
+            }
+            transaction.set(reservationRef, reservationData(userId, email));
+            transaction.set(db.collection(USERS_COLLECTION).document(userId), userData);
+            transaction.set(followCountsRef(userId), counts);
+            return true;
+        });
+    }
+
+    /**
+     * @param callback Receives whether the name is reserved or held by an account
+     *                 created before reservations existed, or null if the check failed
+     */
+    private void isUsernameTaken(String usernameLower, FirebaseCallback<Boolean> callback) {
+        usernameRef(usernameLower).get()
+                .addOnSuccessListener(reservation -> {
+                    if (reservation.exists()) {
+                        callback.onCallback(true);
                         return;
                     }
-                    // Create user with email and password
-                    auth.createUserWithEmailAndPassword(email, password)
-                            .addOnSuccessListener(authResult -> {
-                                FirebaseUser firebaseUser = authResult.getUser();
-                                if (firebaseUser != null) {
-                                    // Create user profile in Firestore
-                                    Map<String, Object> userData = new HashMap<>();
-                                    userData.put("id", firebaseUser.getUid());
-                                    userData.put("fullName", fullName);
-                                    userData.put("username", username);
-                                    userData.put("usernameLower", username.toLowerCase());
-                                    userData.put("email", email);
-
-                                    userData.put("locationPermission", false);
-                                    userData.put("photoPermission", false);
-                                    userData.put("cameraPermission", false);
-
-                                    db.collection(USERS_COLLECTION)
-                                            .document(firebaseUser.getUid())
-                                            .set(userData)
-                                            .addOnSuccessListener(aVoid -> callback.onCallback("Signup successful!"))
-                                            .addOnFailureListener(e -> callback.onCallback("Error creating profile. Please try again."));
-                                } else {
-                                    callback.onCallback("Signup failed. Please try again.");
-                                }
-                            })
+                    // Accounts created before reservations existed only have the users document
+                    db.collection(USERS_COLLECTION)
+                            .whereEqualTo("usernameLower", usernameLower)
+                            .limit(1)
+                            .get()
+                            .addOnSuccessListener(queryDocumentSnapshots ->
+                                    callback.onCallback(!queryDocumentSnapshots.isEmpty()))
                             .addOnFailureListener(e -> {
-                                if (e.getMessage().contains("email")) {
-                                    callback.onCallback("Email is already in use. Try another.");
-                                } else {
-                                    callback.onCallback("Signup failed. " + e.getMessage());
-                                }
+                                Log.e("FirebaseDB", "Error checking username availability", e);
+                                callback.onCallback(null);
                             });
                 })
-                .addOnFailureListener(e -> callback.onCallback("Error checking username availability."));
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error checking username reservation", e);
+                    callback.onCallback(null);
+                });
     }
 
     /**
-     * Sign in a user
+     * Sign in a user. The email is resolved with a single get of the username
+     * reservation; accounts that predate reservations fall back to a query and are
+     * given a reservation once signed in.
      */
     public void login(String username, String password, FirebaseCallback<String> callback) {
-        db.collection(USERS_COLLECTION)
-                .whereEqualTo("usernameLower", username.toLowerCase())
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    if (queryDocumentSnapshots.isEmpty()) {
-                        callback.onCallback("No account found with this username.");
+        if (username.isEmpty() || username.contains("/")) {
+            callback.onCallback("No account found with this username.");
+            return;
+        }
+        String usernameLower = username.toLowerCase();
+
+        usernameRef(usernameLower).get()
+                .addOnSuccessListener(reservation -> {
+                    if (reservation.exists()) {
+                        signIn(reservation.getString("email"), password, null, callback);
                         return;
                     }
+                    db.collection(USERS_COLLECTION)
+                            .whereEqualTo("usernameLower", usernameLower)
+                            .limit(1)
+                            .get()
+                            .addOnSuccessListener(queryDocumentSnapshots -> {
+                                if (queryDocumentSnapshots.isEmpty()) {
+                                    callback.onCallback("No account found with this username.");
+                                    return;
+                                }
+                                DocumentSnapshot user = queryDocumentSnapshots.getDocuments().get(0);
+                                signIn(user.getString("email"), password, user, callback);
+                            })
+                            .addOnFailureListener(e -> callback.onCallback("Error checking account. Try again later."));
+                })
+                .addOnFailureListener(e -> callback.onCallback("Error checking account. Try again later."));
+    }
 
-                    String email = queryDocumentSnapshots.getDocuments().get(0).getString("email");
+    /**
+     * @param legacyUser User document found without a reservation, to backfill one after sign-in
+     */
+    private void signIn(String email, String password, DocumentSnapshot legacyUser, FirebaseCallback<String> callback) {
+        if (email == null) {
+            callback.onCallback("Error retrieving account email.");
+            return;
+        }
 
-                    if (email == null) {
-                        callback.onCallback("Error retrieving account email.");
-                        return;
+        auth.signInWithEmailAndPassword(email, password)
+                .addOnSuccessListener(authResult -> {
+                    if (legacyUser != null) {
+                        reserveLegacyUsername(legacyUser);
+                    }
+                    callback.onCallback("Login successful!");
+                })
+                .addOnFailureListener(e -> {
+                    if (e.getMessage().contains("password")) {
+                        callback.onCallback("Incorrect password. Try again.");
+                    } else {
+                        callback.onCallback("Login failed. Incorrect Password");
                     }
+                });
+    }
 
-                    auth.signInWithEmailAndPassword(email, password)
-                            .addOnSuccessListener(authResult -> callback.onCallback("Login successful!"))
-                            .addOnFailureListener(e -> {
-                                if (e.getMessage().contains("password")) {
-                                    callback.onCallback("Incorrect password. Try again.");
-                                } else {
-                                    callback.onCallback("Login failed. Incorrect Password");
-                                }
-                            });
+    private void reserveLegacyUsername(DocumentSnapshot user) {
+        String usernameLower = user.getString("usernameLower");
+        if (usernameLower == null) {
+            return;
+        }
+        DocumentReference reservationRef = usernameRef(usernameLower);
+        db.runTransaction(transaction -> {
+                    if (!transaction.get(reservationRef).exists()) {
+                        transaction.set(reservationRef, reservationData(user.getId(), user.getString("email")));
+                    }
+                    return null;
                 })
-                .addOnFailureListener(e -> callback.onCallback("Error checking account. Try again later."));
+                .addOnFailureListener(e -> Log.e("FirebaseDB", "Error reserving username", e));
+    }
+
+    private DocumentReference usernameRef(String username) {
+        return db.collection(USERNAMES_COLLECTION).document(username.toLowerCase());
+    }
+
+    private static Map<String, Object> reservationData(String userId, String email) {
+        Map<String, Object> reservation = new HashMap<>();
+        reservation.put("userId", userId);
+        reservation.put("email", email);
+        return reservation;
     }
 
     /**
@@ -209,6 +408,9 @@ public class FirebaseDB {
      */
     public void logout() {
         auth.signOut();
+        userSummaryCache.clear();
+        photoUrlResolver.clear();
+        getLocalMoodStore().clear();
     }
 
     // Mood Event Methods
@@ -216,82 +418,301 @@ public class FirebaseDB {
     /**
      * Add a mood event
      */
+    @Override
     public void addMoodEvent(MoodEvent moodEvent, FirebaseCallback<Boolean> callback) {
         // Generate a UUID if no ID exists
         if (moodEvent.getId() == null || moodEvent.getId().isEmpty()) {
             moodEvent.setId(UUID.randomUUID().toString());
         }
 
-        // Use set() with the provided ID
-        db.collection(MOODS_COLLECTION)
-                .document(moodEvent.getId())
-                .set(moodEvent)
-                .addOnSuccessListener(aVoid -> callback.onCallback(true))
+        // Let the server stamp this write
+        moodEvent.setServerUpdatedAt(null);
+
+        attachAuthors(Collections.singletonList(moodEvent), () ->
+                // Use set() with the provided ID
+                db.collection(MOODS_COLLECTION)
+                        .document(moodEvent.getId())
+                        .set(moodEvent)
+                        .addOnSuccessListener(aVoid -> callback.onCallback(true))
+                        .addOnFailureListener(e -> {
+                            Log.e("FirebaseDB", "Error adding mood event", e);
+                            callback.onCallback(false);
+                        }));
+    }
+
+    /**
+     * Copy each author's display data into events that lack it, at most one users read
+     * per distinct author, so feed rows never have to look the author up.
+     * Events whose author cannot be read are written without a snapshot.
+     */
+    private void attachAuthors(List<MoodEvent> events, Runnable onDone) {
+        Map<String, List<MoodEvent>> byAuthor = new HashMap<>();
+        for (MoodEvent event : events) {
+            if (event.getAuthor() == null && event.getUserID() != null) {
+                byAuthor.computeIfAbsent(event.getUserID(), k -> new ArrayList<>()).add(event);
+            }
+        }
+        if (byAuthor.isEmpty()) {
+            onDone.run();
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(byAuthor.size());
+        for (Map.Entry<String, List<MoodEvent>> entry : byAuthor.entrySet()) {
+            fetchUserSummary(entry.getKey(), summary -> {
+                AuthorSnapshot author = summary != null ? summary.toAuthorSnapshot() : null;
+                for (MoodEvent event : entry.getValue()) {
+                    event.setAuthor(author);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    onDone.run();
+                }
+            });
+        }
+    }
+
+
+    /**
+     * Get mood events matching a query. Visibility, emotional state and time window
+     * are evaluated by Firestore; only the trigger substring is checked here.
+     */
+    @Override
+    public void queryMoodEvents(
+            String userId,
+            MoodQuery moodQuery,
+            FirebaseCallback<List<MoodEvent>> callback) {
+
+        Query query = moodQuery.applyTo(db.collection(MOODS_COLLECTION)
+                .whereEqualTo("userID", userId));
+
+        query.get()
+                .addOnSuccessListener(queryDocumentSnapshots ->
+                        callback.onCallback(filterMoodEvents(queryDocumentSnapshots, moodQuery)))
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error adding mood event", e);
-                    callback.onCallback(false);
+                    Log.e("FirebaseDB", "Error getting mood events", e);
+                    callback.onCallback(new ArrayList<>());
                 });
     }
 
-
     /**
-     * Get mood events with filtering
+     * Get one page of a user's mood events, newest first, ties broken by id
      */
-    public void getMoodEvents(
+    @Override
+    public void getMoodEventsPage(
             String userId,
-            Date startDate,
-            EmotionalState emotionalState,
-            String searchText,
+            Timestamp startAfter,
+            String startAfterId,
+            int pageSize,
             FirebaseCallback<List<MoodEvent>> callback) {
 
         Query query = db.collection(MOODS_COLLECTION)
                 .whereEqualTo("userID", userId)
-                .orderBy("timestamp", Query.Direction.DESCENDING);
+                .orderBy("timestamp", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId());
 
-        // Apply date filter if startDate is provided
-        if (startDate != null) {
-            query = query.whereGreaterThan("timestamp", startDate);
+        // Resume after the last event of the previous page; the id keeps events that
+        // share its timestamp from being skipped
+        if (startAfter != null) {
+            query = query.startAfter(startAfter, startAfterId);
         }
 
-        query.get()
+        query.limit(pageSize)
+                .get()
                 .addOnSuccessListener(queryDocumentSnapshots -> {
                     List<MoodEvent> moodEvents = new ArrayList<>();
                     for (DocumentSnapshot doc : queryDocumentSnapshots) {
-                        MoodEvent moodEvent = doc.toObject(MoodEvent.class);
-
-                        // Apply emotional state filter
-                        if (emotionalState != null && moodEvent.getEmotionalState() != emotionalState) {
-                            continue;
-                        }
-
-                        // Apply text search filter
-                        if (searchText != null && !searchText.isEmpty()) {
-                            if (moodEvent.getTrigger() == null ||
-                                    !moodEvent.getTrigger().toLowerCase().contains(searchText.toLowerCase())) {
-                                continue;
-                            }
-                        }
-
-                        moodEvents.add(moodEvent);
+                        moodEvents.add(doc.toObject(MoodEvent.class));
                     }
                     callback.onCallback(moodEvents);
                 })
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error getting mood events", e);
+                    Log.e("FirebaseDB", "Error getting mood event page", e);
                     callback.onCallback(new ArrayList<>());
                 });
     }
 
+    /**
+     * Get a user's mood events written after a watermark, tombstones included
+     */
+    @Override
+    public void getMoodEventsChangedSince(String userId,
+                                          Timestamp since,
+                                          FirebaseCallback<List<MoodEvent>> callback) {
+        db.collection(MOODS_COLLECTION)
+                .whereEqualTo("userID", userId)
+                .whereGreaterThan("serverUpdatedAt", since)
+                .orderBy("serverUpdatedAt", Query.Direction.ASCENDING)
+                .get()
+                .addOnSuccessListener(queryDocumentSnapshots -> {
+                    List<MoodEvent> changed = new ArrayList<>();
+                    for (DocumentSnapshot doc : queryDocumentSnapshots) {
+                        changed.add(doc.toObject(MoodEvent.class));
+                    }
+                    callback.onCallback(changed);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error getting mood event changes", e);
+                    callback.onCallback(null);
+                });
+    }
+
+    /**
+     * Count a user's mood events with server-side aggregates, less their tombstones
+     */
+    @Override
+    public void countMoodEvents(String userId, FirebaseCallback<Long> callback) {
+        Query userEvents = db.collection(MOODS_COLLECTION).whereEqualTo("userID", userId);
+        Task<AggregateQuerySnapshot> all = userEvents.count().get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> tombstones = userEvents.whereEqualTo("deleted", true)
+                .count()
+                .get(AggregateSource.SERVER);
+
+        Tasks.whenAllSuccess(all, tombstones)
+                .addOnSuccessListener(results -> callback.onCallback(
+                        all.getResult().getCount() - tombstones.getResult().getCount()))
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error counting mood events", e);
+                    callback.onCallback(null);
+                });
+    }
+
+    /**
+     * Attach a snapshot listener to the newest limit events of a user
+     */
+    @Override
+    public ListenerRegistration listenMoodEvents(String userId,
+                                                 int limit,
+                                                 FirebaseCallback<List<MoodChange>> listener) {
+        Query query = new MoodQuery(null, null, null, null)
+                .applyTo(db.collection(MOODS_COLLECTION).whereEqualTo("userID", userId))
+                .limit(limit);
+        return addChangeListener(query, listener);
+    }
+
+    /**
+     * Attach one snapshot listener per followee, each limited to their newest public
+     * events, and re-resolve the followees whenever the follow edges change
+     */
+    @Override
+    public FollowingWindow listenLatestFollowingMoodEvents(String userId,
+                                                           int perUser,
+                                                           FirebaseCallback<List<MoodChange>> listener) {
+        MoodQuery publicOnly = MoodQuery.publicOnly(null, null, null);
+        return new FollowingWindow(new FollowingWindow.Source() {
+            @Override
+            public ListenerRegistration listenFollowees(FirebaseCallback<List<String>> followeesListener) {
+                return listenFollowingList(userId, followeesListener);
+            }
+
+            @Override
+            public ListenerRegistration listenFollowee(String followeeId,
+                                                       FirebaseCallback<List<MoodChange>> changeListener) {
+                Query query = publicOnly
+                        .applyTo(db.collection(MOODS_COLLECTION).whereEqualTo("userID", followeeId))
+                        .limit(perUser);
+                return addChangeListener(query, changeListener);
+            }
+
+            @Override
+            public void getLatest(List<String> followeeIds, FirebaseCallback<List<MoodEvent>> callback) {
+                getLatestMoodEventsOf(followeeIds, perUser, callback);
+            }
+        }, FollowingWindow.MAX_LIVE_FOLLOWEES, listener).start();
+    }
+
+    /**
+     * Report who a user follows, then again on every change to their follow edges.
+     * The first report goes through getFollowingList so a legacy array is migrated
+     * to edges before they are watched.
+     */
+    private ListenerRegistration listenFollowingList(String userId, FirebaseCallback<List<String>> listener) {
+        ListenerRegistration[] edges = {null};
+        boolean[] removed = {false};
+
+        getFollowingList(userId, following -> {
+            synchronized (edges) {
+                if (removed[0]) {
+                    return;
+                }
+                listener.onCallback(following);
+                edges[0] = followingEdges(userId).addSnapshotListener((snapshots, e) -> {
+                    if (e != null) {
+                        Log.e("FirebaseDB", "Error listening to following list", e);
+                        return;
+                    }
+                    if (snapshots == null || snapshots.getDocumentChanges().isEmpty()) {
+                        return;
+                    }
+                    List<String> followedIds = new ArrayList<>();
+                    for (DocumentSnapshot doc : snapshots) {
+                        followedIds.add(doc.getId());
+                    }
+                    listener.onCallback(followedIds);
+                });
+            }
+        });
+
+        return () -> {
+            synchronized (edges) {
+                removed[0] = true;
+                if (edges[0] != null) {
+                    edges[0].remove();
+                    edges[0] = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Forward only the document deltas of each snapshot
+     */
+    private ListenerRegistration addChangeListener(Query query, FirebaseCallback<List<MoodChange>> listener) {
+        return query.addSnapshotListener((snapshots, e) -> {
+            if (e != null) {
+                Log.e("FirebaseDB", "Error listening to mood events", e);
+                return;
+            }
+            if (snapshots == null || snapshots.getDocumentChanges().isEmpty()) {
+                return;
+            }
+            List<MoodChange> changes = new ArrayList<>();
+            for (DocumentChange change : snapshots.getDocumentChanges()) {
+                MoodEvent moodEvent = change.getDocument().toObject(MoodEvent.class);
+                if (moodEvent.isDeleted()) {
+                    // A tombstone entering the window was never shown; one written in place is a removal
+                    if (change.getType() != DocumentChange.Type.ADDED) {
+                        changes.add(new MoodChange(MoodChange.Type.REMOVED, moodEvent));
+                    }
+                    continue;
+                }
+                switch (change.getType()) {
+                    case ADDED:
+                        changes.add(new MoodChange(MoodChange.Type.ADDED, moodEvent));
+                        break;
+                    case MODIFIED:
+                        changes.add(new MoodChange(MoodChange.Type.MODIFIED, moodEvent));
+                        break;
+                    case REMOVED:
+                        changes.add(new MoodChange(MoodChange.Type.REMOVED, moodEvent));
+                        break;
+                }
+            }
+            listener.onCallback(changes);
+        });
+    }
+
     /**
      * Get mood event from known id
      */
+    @Override
     public void getMoodEventFromID (String id, FirebaseCallback<MoodEvent> callback) {
         DocumentReference docRef = db.collection(MOODS_COLLECTION).document(id);
         AtomicReference<MoodEvent> moodEvent = new AtomicReference<>(new MoodEvent());
 
         docRef.get().addOnSuccessListener(documentSnapshot -> {
-            if (documentSnapshot.exists()) {
-                moodEvent.set(documentSnapshot.toObject(MoodEvent.class));
+            MoodEvent found = documentSnapshot.exists() ? documentSnapshot.toObject(MoodEvent.class) : null;
+            if (found != null && !found.isDeleted()) {
+                moodEvent.set(found);
                 callback.onCallback(moodEvent.get());
             } else {
                 Log.d("Firestore", "No document found with the given id.");
@@ -307,8 +728,55 @@ public class FirebaseDB {
     /**
      * Update a mood event
      */
+    @Override
     public void updateMoodEvent(String eventId, MoodEvent updates, FirebaseCallback<Boolean> callback) {
-        // Convert MoodEvent to Map for update
+        Map<String, Object> updateData = buildUpdateData(updates);
+
+        db.collection(MOODS_COLLECTION).document(eventId)
+                .update(updateData)
+                .addOnSuccessListener(aVoid -> callback.onCallback(true))
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error updating mood event", e);
+                    // Offline edits are queued by PersonalMoodHistory, so a failure is reported as one
+                    callback.onCallback(false);
+                });
+    }
+
+    /**
+     * Read mood events by id with whereIn queries of WHERE_IN_LIMIT ids each
+     */
+    @Override
+    public void getMoodEventsByIds(Collection<String> ids, FirebaseCallback<Map<String, MoodEvent>> callback) {
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (List<String> chunk : MoodEventMerge.chunk(new ArrayList<>(new LinkedHashSet<>(ids)), WHERE_IN_LIMIT)) {
+            reads.add(db.collection(MOODS_COLLECTION)
+                    .whereIn(FieldPath.documentId(), chunk)
+                    .get());
+        }
+
+        Tasks.whenAllComplete(reads).addOnCompleteListener(task -> {
+            Map<String, MoodEvent> found = new HashMap<>();
+            for (Task<QuerySnapshot> read : reads) {
+                if (!read.isSuccessful()) {
+                    Log.e("FirebaseDB", "Error fetching mood events", read.getException());
+                    callback.onCallback(null);
+                    return;
+                }
+                for (DocumentSnapshot doc : read.getResult()) {
+                    MoodEvent event = doc.toObject(MoodEvent.class);
+                    if (event != null && !event.isDeleted()) {
+                        found.put(doc.getId(), event);
+                    }
+                }
+            }
+            callback.onCallback(found);
+        });
+    }
+
+    /**
+     * Convert MoodEvent to the field map written by an update
+     */
+    private Map<String, Object> buildUpdateData(MoodEvent updates) {
         Map<String, Object> updateData = new HashMap<>();
         updateData.put("emotionalState", updates.getEmotionalState());
         updateData.put("trigger", updates.getTrigger());
@@ -320,32 +788,46 @@ public class FirebaseDB {
         updateData.put("photoFilename", updates.getPhotoFilename());
         updateData.put("postType", updates.getPostType());
         updateData.put("isPrivate", updates.isPrivate());
-        
+        updateData.put("updatedAt", updates.getUpdatedAt());
+        updateData.put("version", updates.getVersion());
+        updateData.put("serverUpdatedAt", FieldValue.serverTimestamp());
+
         // Only update timestamp if we're online
         if (isOnline()) {
             updateData.put("timestamp", FieldValue.serverTimestamp());
         }
+        return updateData;
+    }
 
-        db.collection(MOODS_COLLECTION).document(eventId)
-                .update(updateData)
-                .addOnSuccessListener(aVoid -> callback.onCallback(true))
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error updating mood event", e);
-                    // If offline, still consider it a success as it will be synced when online
-                    if (!isOnline()) {
-                        callback.onCallback(true);
-                    } else {
-                        callback.onCallback(false);
-                    }
-                });
+    /**
+     * Fields written over a deleted event: the content is cleared, and the document
+     * stays behind as a tombstone until Firestore's TTL policy removes it after
+     * TOMBSTONE_TTL_MS. Its postType no longer matches public-only queries, so it
+     * never takes one of a followee's limited slots.
+     */
+    private Map<String, Object> buildTombstoneData() {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put("deleted", true);
+        tombstone.put("postType", MoodQuery.POST_TYPE_DELETED);
+        tombstone.put("serverUpdatedAt", FieldValue.serverTimestamp());
+        tombstone.put("updatedAt", System.currentTimeMillis());
+        tombstone.put(EXPIRE_AT_FIELD,
+                new Timestamp(new Date(System.currentTimeMillis() + TOMBSTONE_TTL_MS)));
+        for (String field : new String[]{"trigger", "socialSituation", "latitude", "longitude",
+                "placeName", "photoUrl", "photoFilename"}) {
+            tombstone.put(field, FieldValue.delete());
+        }
+        return tombstone;
     }
 
     /**
-     * Delete a mood event
+     * Delete a mood event by turning it into a tombstone. The tombstone is merged
+     * rather than updated, so deleting an event that is already gone still succeeds.
      */
+    @Override
     public void deleteMoodEvent(String eventId, FirebaseCallback<Boolean> callback) {
         db.collection(MOODS_COLLECTION).document(eventId)
-                .delete()
+                .set(buildTombstoneData(), SetOptions.merge())
                 .addOnSuccessListener(aVoid -> callback.onCallback(true))
                 .addOnFailureListener(e -> {
                     Log.e("FirebaseDB", "Error deleting mood event", e);
@@ -353,30 +835,109 @@ public class FirebaseDB {
                 });
     }
 
-    // Methods related to image uploading
+    /**
+     * Apply mood event writes in WriteBatches of at most MoodOperation.MAX_BATCH_SIZE.
+     * At most MAX_CONCURRENT_BATCHES batches are in flight at once; each succeeds or fails as a whole.
+     */
+    @Override
+    public void commitBatch(List<MoodOperation> operations,
+                            FirebaseCallback<List<MoodOperation.BatchResult>> callback) {
+        List<MoodEvent> added = new ArrayList<>();
+        for (MoodOperation operation : operations) {
+            if (operation.getType() == MoodOperation.Type.ADD) {
+                added.add(operation.getEvent());
+            }
+        }
+        attachAuthors(added, () -> commitBatches(operations, callback));
+    }
+
+    private void commitBatches(List<MoodOperation> operations,
+                               FirebaseCallback<List<MoodOperation.BatchResult>> callback) {
+        List<List<MoodOperation>> chunks = MoodEventMerge.chunk(operations, MoodOperation.MAX_BATCH_SIZE);
+        commitChunks(chunks, (batch, chunk) -> {
+            for (MoodOperation operation : chunk) {
+                MoodEvent event = operation.getEvent();
+                if (operation.getType() == MoodOperation.Type.ADD) {
+                    if (event.getId() == null || event.getId().isEmpty()) {
+                        event.setId(UUID.randomUUID().toString());
+                    }
+                    event.setServerUpdatedAt(null);
+                }
+                DocumentReference ref = db.collection(MOODS_COLLECTION).document(event.getId());
+                switch (operation.getType()) {
+                    case ADD:
+                        batch.set(ref, event);
+                        break;
+                    case UPDATE:
+                        batch.update(ref, buildUpdateData(event));
+                        break;
+                    case DELETE:
+                        // A missing document must not fail the batch and requeue it forever
+                        batch.set(ref, buildTombstoneData(), SetOptions.merge());
+                        break;
+                }
+            }
+        }, committed -> {
+            List<MoodOperation.BatchResult> results = new ArrayList<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                results.add(new MoodOperation.BatchResult(chunks.get(i), committed.get(i)));
+            }
+            callback.onCallback(results);
+        });
+    }
+
+    /**
+     * Adds the writes of one chunk to a batch
+     */
+    private interface BatchWriter<T> {
+        void write(WriteBatch batch, List<T> chunk);
+    }
+
+    /**
+     * Commit each chunk as one WriteBatch, keeping at most MAX_CONCURRENT_BATCHES in flight
+     *
+     * @param callback Receives whether each chunk committed, in chunk order
+     */
+    private <T> void commitChunks(List<List<T>> chunks,
+                                  BatchWriter<T> writer,
+                                  FirebaseCallback<List<Boolean>> callback) {
+        if (chunks.isEmpty()) {
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
 
-    private byte[] compressImage(Context context, Uri imageUri, int maxSize) {
-        try {
-            Bitmap bitmap = MediaStore.Images.Media.getBitmap(context.getContentResolver(), imageUri);
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            int quality = 100;
-            Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
-            do {
-                outputStream.reset();
-                bitmap.compress(format, quality, outputStream);
-                quality -= 5;
-            } while (outputStream.toByteArray().length > maxSize && quality > 10);
-
-            if (outputStream.toByteArray().length > maxSize) {
-                return null;
+        List<Boolean> results = new ArrayList<>(Collections.nCopies(chunks.size(), false));
+        AtomicInteger nextIndex = new AtomicInteger(0);
+        AtomicInteger remaining = new AtomicInteger(chunks.size());
+
+        Runnable[] launchNext = new Runnable[1];
+        launchNext[0] = () -> {
+            int index = nextIndex.getAndIncrement();
+            if (index >= chunks.size()) {
+                return;
             }
-            return outputStream.toByteArray();
-        } catch (IOException e) {
-            Log.e("FirebaseDB", "Error compressing image", e);
-            return null;
+            WriteBatch batch = db.batch();
+            writer.write(batch, chunks.get(index));
+            batch.commit().addOnCompleteListener(commit -> {
+                if (!commit.isSuccessful()) {
+                    Log.e("FirebaseDB", "Error committing write batch", commit.getException());
+                }
+                results.set(index, commit.isSuccessful());
+                if (remaining.decrementAndGet() == 0) {
+                    callback.onCallback(results);
+                } else {
+                    launchNext[0].run();
+                }
+            });
+        };
+
+        for (int i = 0; i < Math.min(MAX_CONCURRENT_BATCHES, chunks.size()); i++) {
+            launchNext[0].run();
         }
     }
 
+    // Methods related to image uploading
+
     private void uploadImageToFirebase(Context context, Uri imageUri, FirebaseCallback<String> callback) {
         if (imageUri == null) {
             callback.onCallback(null);
@@ -389,10 +950,8 @@ public class FirebaseDB {
         progressDialog.setCancelable(false);
         progressDialog.show();
 
-        try {
-            // Compress image to meet 64KB requirement
-            byte[] compressedImage = compressImage(context, imageUri, 64 * 1024);
-
+        // Compress image to meet 64KB requirement
+        getImageCompressionPipeline().compress(imageUri, compressedImage -> {
             if (compressedImage == null) {
                 progressDialog.dismiss(); // Hide loading indicator
                 Toast.makeText(context, "Image too large. Try a smaller image!", Toast.LENGTH_SHORT).show();
@@ -422,12 +981,7 @@ public class FirebaseDB {
                         Log.e("FirebaseDB", "Image upload failed", e);
                         callback.onCallback(null);
                     });
-
-        } catch (Exception e) {
-            progressDialog.dismiss(); // Hide loading indicator
-            Log.e("FirebaseDB", "Compression error", e);
-            callback.onCallback(null);
-        }
+        });
     }
 
     public void addMoodEventWithImage(Context context, MoodEvent moodEvent, Uri imageUri, FirebaseCallback<Boolean> callback) {
@@ -453,220 +1007,400 @@ public class FirebaseDB {
     /**
      * Send a follow request
      */
+    @Override
     public void sendFollowRequest(String fromUserId, String toUserId, FirebaseCallback<Boolean> callback) {
-        // Check if a pending request already exists
-        db.collection(FOLLOW_REQUESTS_COLLECTION)
-                .whereEqualTo("fromUserId", fromUserId)
-                .whereEqualTo("toUserId", toUserId)
-                .whereEqualTo("status", "pending")
-                .get()
-                .addOnSuccessListener(querySnapshot -> {
-                    if (!querySnapshot.isEmpty()) {
-                        // Request already exists
-                        callback.onCallback(false);
-                        return;
+        DocumentReference requestRef = db.collection(FOLLOW_REQUESTS_COLLECTION)
+                .document(SocialGraphRepository.followRequestId(fromUserId, toUserId));
+
+        // Create the request unless one is already pending; an answered one is replaced
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot existing = transaction.get(requestRef);
+                    if (existing.exists() && "pending".equals(existing.getString("status"))) {
+                        return false;
                     }
 
-                    // Create new follow request
                     Map<String, Object> followRequest = new HashMap<>();
                     followRequest.put("fromUserId", fromUserId);
                     followRequest.put("toUserId", toUserId);
                     followRequest.put("status", "pending");
                     followRequest.put("timestamp", System.currentTimeMillis());
+                    transaction.set(requestRef, followRequest);
+                    return true;
+                })
+                .addOnSuccessListener(callback::onCallback)
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error sending follow request", e);
+                    callback.onCallback(false);
+                });
+    }
 
-                    db.collection(FOLLOW_REQUESTS_COLLECTION)
-                            .add(followRequest)
-                            .addOnSuccessListener(documentReference -> callback.onCallback(true))
-                            .addOnFailureListener(e -> {
-                                Log.e("FirebaseDB", "Error sending follow request", e);
-                                callback.onCallback(false);
-                            });
+    @Override
+    public void getFollowRequestStatus(String fromUserId, String toUserId, FirebaseCallback<String> callback) {
+        db.collection(FOLLOW_REQUESTS_COLLECTION)
+                .document(SocialGraphRepository.followRequestId(fromUserId, toUserId))
+                .get()
+                .addOnSuccessListener(documentSnapshot -> callback.onCallback(documentSnapshot.getString("status")))
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error getting follow request", e);
+                    callback.onCallback(null);
+                });
+    }
+
+    /**
+     * Respond to a follow request. The status change, follow edge and counter
+     * increments commit together in one transaction, so a request can never be
+     * marked accepted without the follow existing, or the other way round.
+     */
+    @Override
+    public void respondToFollowRequest(String requestId, boolean accept, FirebaseCallback<Boolean> callback) {
+        DocumentReference requestRef = db.collection(FOLLOW_REQUESTS_COLLECTION).document(requestId);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot request = transaction.get(requestRef);
+                    // An accept replayed after the request was answered must not re-add the edge
+                    if (!request.exists() || !"pending".equals(request.getString("status"))) {
+                        return false;
+                    }
+
+                    String fromUserId = request.getString("fromUserId");
+                    String toUserId = request.getString("toUserId");
+                    if (fromUserId == null || toUserId == null) {
+                        return false;
+                    }
+
+                    // All reads have to happen before the first write
+                    if (accept) {
+                        addFollowEdge(transaction, fromUserId, toUserId);
+                    }
+                    transaction.update(requestRef, "status", accept ? "accepted" : "rejected");
+                    return true;
                 })
+                .addOnSuccessListener(callback::onCallback)
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error checking existing follow requests", e);
+                    Log.e("FirebaseDB", "Error responding to follow request", e);
                     callback.onCallback(false);
                 });
     }
 
     /**
-     * Respond to a follow request
+     * Create the follow edge and bump both follow counters within a transaction.
+     * Counters are only maintained for users whose follow_counts document exists;
+     * older accounts fall back to counting in getFollowCounts.
+     */
+    private void addFollowEdge(Transaction transaction, String followerId, String followedId)
+            throws FirebaseFirestoreException {
+        DocumentReference edgeRef = followingEdgeRef(followerId, followedId);
+        DocumentReference legacyRef = db.collection(FOLLOWING_COLLECTION).document(followerId);
+        DocumentReference followerCountsRef = followCountsRef(followerId);
+        DocumentReference followedCountsRef = followCountsRef(followedId);
+
+        DocumentSnapshot edge = transaction.get(edgeRef);
+        DocumentSnapshot legacy = transaction.get(legacyRef);
+        DocumentSnapshot followerCounts = transaction.get(followerCountsRef);
+        DocumentSnapshot followedCounts = transaction.get(followedCountsRef);
+
+        List<String> legacyFollowing = (List<String>) legacy.get("following");
+        if (edge.exists() || (legacyFollowing != null && legacyFollowing.contains(followedId))) {
+            // Already following, counters are already right
+            return;
+        }
+
+        Map<String, Object> edgeData = followingEdgeData(followerId, followedId);
+        edgeData.put("createdAt", FieldValue.serverTimestamp());
+        transaction.set(edgeRef, edgeData);
+
+        if (followerCounts.exists()) {
+            transaction.update(followerCountsRef, FollowCounts.FOLLOWING_COUNT, FieldValue.increment(1));
+        }
+        if (followedCounts.exists()) {
+            transaction.update(followedCountsRef, FollowCounts.FOLLOWER_COUNT, FieldValue.increment(1));
+        }
+    }
+
+    /**
+     * One document per follow: following/{followerId}/edges/{followedId}
+     */
+    private DocumentReference followingEdgeRef(String followerId, String followedId) {
+        return followingEdges(followerId).document(followedId);
+    }
+
+    private CollectionReference followingEdges(String followerId) {
+        return db.collection(FOLLOWING_COLLECTION).document(followerId).collection(EDGES_SUBCOLLECTION);
+    }
+
+    private static Map<String, Object> followingEdgeData(String followerId, String followedId) {
+        Map<String, Object> edgeData = new HashMap<>();
+        edgeData.put("followerId", followerId);
+        edgeData.put("followedId", followedId);
+        return edgeData;
+    }
+
+    private DocumentReference followCountsRef(String userId) {
+        return db.collection(FOLLOW_COUNTS_COLLECTION).document(userId);
+    }
+
+    /**
+     * Get mood events for followed users, newest first.
+     * The following list is split into whereIn-sized chunks whose queries run
+     * concurrently; each chunk comes back ordered by timestamp and the chunks are
+     * k-way merged, so cost stays flat as the following list grows.
+     */
+    @Override
+    public void queryFollowingMoodEvents(
+            String userId,
+            MoodQuery moodQuery,
+            FirebaseCallback<List<MoodEvent>> callback) {
+
+        getFollowingList(userId, following -> {
+            if (following.isEmpty()) {
+                callback.onCallback(new ArrayList<>());
+                return;
+            }
+
+            List<Task<QuerySnapshot>> chunkQueries = new ArrayList<>();
+            for (List<String> chunk : MoodEventMerge.chunk(following, WHERE_IN_LIMIT)) {
+                Query query = moodQuery.applyTo(db.collection(MOODS_COLLECTION)
+                        .whereIn("userID", chunk));
+                chunkQueries.add(query.get());
+            }
+
+            Tasks.whenAllComplete(chunkQueries)
+                    .addOnSuccessListener(completed -> {
+                        List<List<MoodEvent>> perChunk = new ArrayList<>();
+                        for (Task<QuerySnapshot> task : chunkQueries) {
+                            if (!task.isSuccessful()) {
+                                Log.e("FirebaseDB", "Error getting following mood events chunk", task.getException());
+                                continue;
+                            }
+                            perChunk.add(filterMoodEvents(task.getResult(), moodQuery));
+                        }
+                        callback.onCallback(MoodEventMerge.mergeNewestFirst(perChunk));
+                    })
+                    .addOnFailureListener(e -> {
+                        Log.e("FirebaseDB", "Error getting following mood events", e);
+                        callback.onCallback(new ArrayList<>());
+                    });
+        });
+    }
+
+    /**
+     * Get the newest public events of each followee with one limit(perUser) query
+     * per followee, at most MAX_CONCURRENT_QUERIES in flight at a time
+     */
+    @Override
+    public void getLatestFollowingMoodEvents(String userId,
+                                             int perUser,
+                                             FirebaseCallback<List<MoodEvent>> callback) {
+        getFollowingList(userId, following -> getLatestMoodEventsOf(following, perUser, callback));
+    }
+
+    /**
+     * Newest public events of each given user, newest first overall
      */
-    public void respondToFollowRequest(String requestId, boolean accept, FirebaseCallback<Boolean> callback) {
-        db.collection(FOLLOW_REQUESTS_COLLECTION).document(requestId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    if (!documentSnapshot.exists()) {
-                        callback.onCallback(false);
-                        return;
-                    }
-
-                    String fromUserId = documentSnapshot.getString("fromUserId");
-                    String toUserId = documentSnapshot.getString("toUserId");
+    private void getLatestMoodEventsOf(List<String> userIds,
+                                       int perUser,
+                                       FirebaseCallback<List<MoodEvent>> callback) {
+        if (userIds.isEmpty()) {
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
 
-                    if (fromUserId == null || toUserId == null) {
-                        callback.onCallback(false);
-                        return;
-                    }
+        MoodQuery publicOnly = MoodQuery.publicOnly(null, null, null);
+        List<Query> queries = new ArrayList<>();
+        for (String followeeId : userIds) {
+            queries.add(publicOnly.applyTo(db.collection(MOODS_COLLECTION)
+                    .whereEqualTo("userID", followeeId))
+                    .limit(perUser));
+        }
+        runBounded(queries, MAX_CONCURRENT_QUERIES, publicOnly,
+                perQuery -> callback.onCallback(MoodEventMerge.mergeNewestFirst(perQuery)));
+    }
 
-                    // Update request status
-                    Map<String, Object> updates = new HashMap<>();
-                    updates.put("status", accept ? "accepted" : "rejected");
+    /**
+     * Run queries keeping at most maxInFlight outstanding; results keep the input order.
+     * A failed query contributes an empty list.
+     */
+    private void runBounded(List<Query> queries,
+                            int maxInFlight,
+                            MoodQuery moodQuery,
+                            FirebaseCallback<List<List<MoodEvent>>> callback) {
+        List<List<MoodEvent>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        AtomicInteger nextIndex = new AtomicInteger(0);
+        AtomicInteger remaining = new AtomicInteger(queries.size());
+
+        Runnable[] launchNext = new Runnable[1];
+        launchNext[0] = () -> {
+            int index = nextIndex.getAndIncrement();
+            if (index >= queries.size()) {
+                return;
+            }
+            queries.get(index).get().addOnCompleteListener(task -> {
+                if (task.isSuccessful()) {
+                    results.set(index, filterMoodEvents(task.getResult(), moodQuery));
+                } else {
+                    Log.e("FirebaseDB", "Error running bounded query", task.getException());
+                    results.set(index, new ArrayList<>());
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    callback.onCallback(results);
+                } else {
+                    launchNext[0].run();
+                }
+            });
+        };
+
+        for (int i = 0; i < Math.min(maxInFlight, queries.size()); i++) {
+            launchNext[0].run();
+        }
+    }
 
-                    db.collection(FOLLOW_REQUESTS_COLLECTION).document(requestId)
-                            .update(updates)
-                            .addOnSuccessListener(aVoid -> {
-                                if (accept) {
-                                    // Add to following collection
-                                    addToFollowing(fromUserId, toUserId, callback);
-                                } else {
-                                    callback.onCallback(true);
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e("FirebaseDB", "Error updating follow request", e);
-                                callback.onCallback(false);
-                            });
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error retrieving follow request", e);
-                    callback.onCallback(false);
-                });
+    /**
+     * Deserialize a query result, keeping its order, dropping tombstones and applying
+     * the residual predicate
+     */
+    private List<MoodEvent> filterMoodEvents(QuerySnapshot snapshot, MoodQuery moodQuery) {
+        List<MoodEvent> moodEvents = new ArrayList<>();
+        for (DocumentSnapshot doc : snapshot) {
+            MoodEvent moodEvent = doc.toObject(MoodEvent.class);
+            if (moodEvent != null && !moodEvent.isDeleted() && moodQuery.matchesResidual(moodEvent)) {
+                moodEvents.add(moodEvent);
+            }
+        }
+        return moodEvents;
     }
 
     /**
-     * Add user to following list
+     * Get list of users the current user is following.
+     * Until a user's legacy following array has been moved to edge documents it is
+     * read alongside the edges and migrated in the background.
      */
-    private void addToFollowing(String followerId, String followedId, FirebaseCallback<Boolean> callback) {
-        DocumentReference followingRef = db.collection(FOLLOWING_COLLECTION).document(followerId);
+    @Override
+    public void getFollowingList(String userId, FirebaseCallback<List<String>> callback) {
+        Task<QuerySnapshot> edgesTask = followingEdges(userId).get();
+        Task<DocumentSnapshot> legacyTask;
+        if (migratedFollowing.contains(userId)) {
+            legacyTask = Tasks.forResult(null);
+        } else {
+            legacyTask = db.collection(FOLLOWING_COLLECTION).document(userId).get();
+        }
 
-        // Use arrayUnion to atomically add to the list
-        followingRef.update("following", FieldValue.arrayUnion(followedId))
-                .addOnSuccessListener(aVoid -> callback.onCallback(true))
-                .addOnFailureListener(e -> {
-                    // Handle case where document doesn't exist yet
-                    if (e instanceof FirebaseFirestoreException &&
-                            ((FirebaseFirestoreException) e).getCode() == FirebaseFirestoreException.Code.NOT_FOUND) {
-
-                        // Create new document with initial list
-                        Map<String, Object> newFollowing = new HashMap<>();
-                        newFollowing.put("following", Collections.singletonList(followedId));
-
-                        followingRef.set(newFollowing)
-                                .addOnSuccessListener(aVoid2 -> callback.onCallback(true))
-                                .addOnFailureListener(e2 -> {
-                                    Log.e("FirebaseDB", "Error creating following document", e2);
-                                    callback.onCallback(false);
-                                });
+        Tasks.whenAllComplete(edgesTask, legacyTask)
+                .addOnSuccessListener(completed -> {
+                    Set<String> following = new LinkedHashSet<>();
+                    if (edgesTask.isSuccessful()) {
+                        for (DocumentSnapshot doc : edgesTask.getResult()) {
+                            following.add(doc.getId());
+                        }
                     } else {
-                        Log.e("FirebaseDB", "Error updating following list", e);
-                        callback.onCallback(false);
+                        Log.e("FirebaseDB", "Error getting following list", edgesTask.getException());
+                    }
+
+                    if (legacyTask.isSuccessful() && legacyTask.getResult() != null) {
+                        List<String> legacy = (List<String>) legacyTask.getResult().get("following");
+                        if (legacy != null && !legacy.isEmpty()) {
+                            following.addAll(legacy);
+                            migrateFollowing(userId, legacy);
+                        } else {
+                            migratedFollowing.add(userId);
+                        }
                     }
+                    callback.onCallback(new ArrayList<>(following));
                 });
     }
 
     /**
-     * Get mood events for followed users
+     * Get one page of the users the given user is following, ordered by user id.
+     * Only covers edge documents; legacy arrays are folded in by getFollowingList.
+     *
+     * @param startAfter Last user id of the previous page, or null for the first page
+     * @param callback Receives the page; fewer than pageSize ids means there are no more pages
      */
-    public void getFollowingMoodEvents(
-            String userId,
-            Date startDate,
-            EmotionalState emotionalState,
-            String searchText,
-            FirebaseCallback<List<MoodEvent>> callback) {
-
-        db.collection(FOLLOWING_COLLECTION).document(userId).get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    List<String> following = (List<String>) documentSnapshot.get("following");
-
-                    if (following == null || following.isEmpty()) {
-                        callback.onCallback(new ArrayList<>());
-                        return;
-                    }
-
-                    Query query = db.collection(MOODS_COLLECTION)
-                            .whereIn("userID" , following);
-                    if (startDate != null) {
-                        query = query.whereGreaterThan("timestamp", startDate);
+    @Override
+    public void getFollowingPage(String userId,
+                                 String startAfter,
+                                 int pageSize,
+                                 FirebaseCallback<List<String>> callback) {
+        Query query = followingEdges(userId).orderBy(FieldPath.documentId());
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+        query.limit(pageSize).get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<String> page = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot) {
+                        page.add(doc.getId());
                     }
-                    query.get()
-                            .addOnSuccessListener(queryDocumentSnapshots -> {
-                                List<MoodEvent> moodEvents = new ArrayList<>();
-                                String k = "g";
-
-                                for (DocumentSnapshot doc : queryDocumentSnapshots) {
-                                    k = "k";
-                                    MoodEvent moodEvent = doc.toObject(MoodEvent.class);
-
-                                    // Apply emotional state filter
-                                    if (emotionalState != null && moodEvent.getEmotionalState() != emotionalState) {
-                                        continue;
-                                    }
-
-                                    // Apply text search filter
-                                    if (searchText != null && !searchText.isEmpty()) {
-                                        if (moodEvent.getTrigger() == null ||!moodEvent.getTrigger().toLowerCase().contains(searchText.toLowerCase())) {
-                                            continue;
-                                        }
-                                    }
-
-                                    moodEvents.add(moodEvent);
-                                }
-
-                                callback.onCallback(moodEvents);
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e("FirebaseDB", "Error getting following mood events", e);
-                                callback.onCallback(new ArrayList<>());
-                            });
+                    callback.onCallback(page);
                 })
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error getting following list", e);
+                    Log.e("FirebaseDB", "Error getting following page", e);
                     callback.onCallback(new ArrayList<>());
                 });
-
     }
 
     /**
-     * Get list of users the current user is following
+     * Move a legacy following array to edge documents. Edges are written first and
+     * idempotently; only then are the moved ids removed from the array, so a crash
+     * part way leaves both layouts agreeing and the next read retries.
      */
-    public void getFollowingList(String userId, FirebaseCallback<List<String>> callback) {
-        db.collection(FOLLOWING_COLLECTION).document(userId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    List<String> following = (List<String>) documentSnapshot.get("following");
-                    callback.onCallback(following != null ? following : new ArrayList<>());
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error getting following list", e);
-                    callback.onCallback(new ArrayList<>());
-                });
+    private void migrateFollowing(String userId, List<String> legacy) {
+        List<Task<Void>> commits = new ArrayList<>();
+        for (List<String> chunk : MoodEventMerge.chunk(legacy, MoodOperation.MAX_BATCH_SIZE)) {
+            WriteBatch batch = db.batch();
+            for (String followedId : chunk) {
+                batch.set(followingEdgeRef(userId, followedId),
+                        followingEdgeData(userId, followedId), SetOptions.merge());
+            }
+            commits.add(batch.commit());
+        }
+
+        Tasks.whenAll(commits)
+                .addOnSuccessListener(aVoid -> db.collection(FOLLOWING_COLLECTION).document(userId)
+                        .update("following", FieldValue.arrayRemove(legacy.toArray()))
+                        .addOnSuccessListener(aVoid2 -> migratedFollowing.add(userId))
+                        .addOnFailureListener(e -> Log.e("FirebaseDB", "Error clearing legacy following list", e)))
+                .addOnFailureListener(e -> Log.e("FirebaseDB", "Error migrating following list", e));
     }
 
     /**
-     * Unfollow a user
+     * Unfollow a user by deleting the edge, or removing it from a legacy array
      */
+    @Override
     public void unfollowUser(String followerId, String followedId, FirebaseCallback<Boolean> callback) {
-        db.collection(FOLLOWING_COLLECTION).document(followerId)
-                .get()
-                .addOnSuccessListener(documentSnapshot -> {
-                    List<String> following = (List<String>) documentSnapshot.get("following");
-                    if (following == null) {
-                        callback.onCallback(false);
-                        return;
+        DocumentReference edgeRef = followingEdgeRef(followerId, followedId);
+        DocumentReference legacyRef = db.collection(FOLLOWING_COLLECTION).document(followerId);
+        DocumentReference followerCountsRef = followCountsRef(followerId);
+        DocumentReference followedCountsRef = followCountsRef(followedId);
+
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot edge = transaction.get(edgeRef);
+                    DocumentSnapshot legacy = transaction.get(legacyRef);
+                    DocumentSnapshot followerCounts = transaction.get(followerCountsRef);
+                    DocumentSnapshot followedCounts = transaction.get(followedCountsRef);
+
+                    List<String> legacyFollowing = (List<String>) legacy.get("following");
+                    boolean inLegacy = legacyFollowing != null && legacyFollowing.contains(followedId);
+                    if (!edge.exists() && !inLegacy) {
+                        return true;
                     }
 
-                    following.remove(followedId);
-
-                    db.collection(FOLLOWING_COLLECTION).document(followerId)
-                            .update("following", following)
-                            .addOnSuccessListener(aVoid -> callback.onCallback(true))
-                            .addOnFailureListener(e -> {
-                                Log.e("FirebaseDB", "Error updating following list", e);
-                                callback.onCallback(false);
-                            });
+                    if (edge.exists()) {
+                        transaction.delete(edgeRef);
+                    }
+                    if (inLegacy) {
+                        transaction.update(legacyRef, "following", FieldValue.arrayRemove(followedId));
+                    }
+                    if (followerCounts.exists()) {
+                        transaction.update(followerCountsRef, FollowCounts.FOLLOWING_COUNT, FieldValue.increment(-1));
+                    }
+                    if (followedCounts.exists()) {
+                        transaction.update(followedCountsRef, FollowCounts.FOLLOWER_COUNT, FieldValue.increment(-1));
+                    }
+                    return true;
                 })
+                .addOnSuccessListener(callback::onCallback)
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error retrieving following list", e);
+                    Log.e("FirebaseDB", "Error updating following list", e);
                     callback.onCallback(false);
                 });
     }
@@ -674,6 +1408,7 @@ public class FirebaseDB {
     /**
      * Get pending follow requests for a user
      */
+    @Override
     public void getPendingFollowRequests(String userId, FirebaseCallback<List<Map<String, Object>>> callback) {
         db.collection(FOLLOW_REQUESTS_COLLECTION)
                 .whereEqualTo("toUserId", userId)
@@ -699,6 +1434,7 @@ public class FirebaseDB {
     /**
      * Fetch user data by user ID
      */
+    @Override
     public void fetchUserById(String userId, FirebaseCallback<Map<String, Object>> callback) {
         db.collection(USERS_COLLECTION).document(userId)
                 .get()
@@ -723,25 +1459,321 @@ public class FirebaseDB {
     }
 
     /**
-     * Get list of users who follow the specified user
+     * Fetch a user's display fields through the session cache.
+     * Concurrent requests for the same user share one read.
+     */
+    @Override
+    public void fetchUserSummary(String userId, FirebaseCallback<UserSummary> callback) {
+        userSummaryCache.get(userId, callback);
+    }
+
+    /**
+     * Fetch display fields for many users at once. Cached users are served from the
+     * session cache; the rest are read WHERE_IN_LIMIT at a time with documentId()
+     * whereIn queries issued in parallel, so 300 users cost about 10 reads.
+     */
+    @Override
+    public void fetchUsersByIds(Collection<String> userIds, FirebaseCallback<Map<String, UserSummary>> callback) {
+        Map<String, UserSummary> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            UserSummary cached = userSummaryCache.peek(userId);
+            if (cached != null) {
+                found.put(userId, cached);
+            } else {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            callback.onCallback(found);
+            return;
+        }
+
+        List<Task<QuerySnapshot>> reads = new ArrayList<>();
+        for (List<String> chunk : MoodEventMerge.chunk(missing, WHERE_IN_LIMIT)) {
+            reads.add(db.collection(USERS_COLLECTION)
+                    .whereIn(FieldPath.documentId(), chunk)
+                    .get());
+        }
+
+        Tasks.whenAllComplete(reads).addOnCompleteListener(task -> {
+            for (Task<QuerySnapshot> read : reads) {
+                if (!read.isSuccessful()) {
+                    Log.e("FirebaseDB", "Error fetching users", read.getException());
+                    continue;
+                }
+                for (DocumentSnapshot doc : read.getResult()) {
+                    UserSummary summary = UserSummary.fromUserData(doc.getId(), doc.getData());
+                    if (summary != null) {
+                        userSummaryCache.put(summary);
+                        found.put(doc.getId(), summary);
+                    }
+                }
+            }
+            callback.onCallback(found);
+        });
+    }
+
+    /**
+     * Journal of mood writes queued offline by userId, kept in app-private storage.
+     * One instance per user, so histories rebuilt for the same user share it.
+     */
+    public synchronized MoodOperationJournal getPendingJournal(String userId) {
+        MoodOperationJournal journal = pendingJournals.get(userId);
+        if (journal == null) {
+            File dir = new File(context.getFilesDir(), PENDING_JOURNAL_DIR);
+            journal = new MoodOperationJournal(new File(dir, userId + ".journal"), pendingWriter, mainThread);
+            pendingJournals.put(userId, journal);
+        }
+        return journal;
+    }
+
+    /**
+     * Mood photos staged for upload by userId, kept in app-private storage.
+     * One instance per user, like the journals.
+     */
+    public synchronized PhotoUploadQueue getPhotoUploadQueue(String userId) {
+        PhotoUploadQueue queue = photoUploadQueues.get(userId);
+        if (queue == null) {
+            File dir = new File(new File(context.getFilesDir(), PENDING_UPLOADS_DIR), userId);
+            queue = new PhotoUploadQueue(dir, this, pendingWriter, mainThread);
+            photoUploadQueues.put(userId, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * Upload a staged photo from disk as a resumable, chunked session
+     *
+     * @param sessionUri Session of an earlier attempt to carry on from, or null
+     * @param onSession Receives the new session URI once Storage opens it, or null
+     *                  if sessionUri was rejected and the next attempt must start over
+     * @param callback Receives the photo's download URL once Storage has confirmed
+     *                 the upload, or null if it failed
+     */
+    @Override
+    public void uploadPhoto(String storagePath, File data, String sessionUri,
+                            FirebaseCallback<String> onSession,
+                            FirebaseCallback<String> callback) {
+        StorageMetadata metadata = new StorageMetadata.Builder()
+                .setContentType("image/jpeg")
+                .build();
+        StorageReference ref = getReference(storagePath);
+        UploadTask task = sessionUri != null
+                ? ref.putFile(Uri.fromFile(data), metadata, Uri.parse(sessionUri))
+                : ref.putFile(Uri.fromFile(data), metadata);
+
+        AtomicBoolean sessionSaved = new AtomicBoolean(sessionUri != null);
+        task.addOnProgressListener(snapshot -> {
+                    Uri session = snapshot.getUploadSessionUri();
+                    if (session != null && !sessionSaved.getAndSet(true)) {
+                        onSession.onCallback(session.toString());
+                    }
+                })
+                .addOnSuccessListener(taskSnapshot -> fetchDownloadUrl(storagePath, url -> {
+                    if (url != null) {
+                        photoUrlResolver.put(storagePath, url);
+                    }
+                    callback.onCallback(url);
+                }))
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error uploading photo " + storagePath, e);
+                    // Network trouble keeps the session; anything else (e.g. it expired) drops it
+                    if (sessionUri != null && !(e instanceof StorageException
+                            && ((StorageException) e).getIsRecoverableException())) {
+                        onSession.onCallback(null);
+                    }
+                    callback.onCallback(null);
+                });
+    }
+
+    @Override
+    public void deletePhoto(String storagePath) {
+        getReference(storagePath).delete()
+                .addOnFailureListener(e -> Log.e("FirebaseDB", "Error deleting photo " + storagePath, e));
+    }
+
+    /**
+     * @return Download URLs of mood photos, looked up once and backfilled onto events
+     */
+    public PhotoUrlResolver getPhotoUrlResolver() {
+        return photoUrlResolver;
+    }
+
+    private void fetchDownloadUrl(String storagePath, FirebaseCallback<String> callback) {
+        getReference(storagePath).getDownloadUrl()
+                .addOnSuccessListener(uri -> callback.onCallback(uri.toString()))
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error getting download URL of " + storagePath, e);
+                    callback.onCallback(null);
+                });
+    }
+
+    /**
+     * Store a looked-up photo URL on one of the signed-in user's older events, unless
+     * its photo has changed since. Other users' events are left to their authors.
+     */
+    private void backfillPhotoUrl(MoodEvent event, String photoUrl) {
+        String userId = getCurrentUserId();
+        if (userId == null || !userId.equals(event.getUserID()) || event.getId() == null) {
+            return;
+        }
+        String photoFilename = event.getPhotoFilename();
+        DocumentReference eventRef = db.collection(MOODS_COLLECTION).document(event.getId());
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot current = transaction.get(eventRef);
+                    String currentUrl = current.getString("photoUrl");
+                    if (current.exists() && photoFilename.equals(current.getString("photoFilename"))
+                            && (currentUrl == null || currentUrl.isEmpty())) {
+                        transaction.update(eventRef, "photoUrl", photoUrl);
+                    }
+                    return null;
+                })
+                .addOnFailureListener(e -> Log.e("FirebaseDB", "Error backfilling photo URL of " + event.getId(), e));
+    }
+
+    /**
+     * Shared off-main-thread compressor for picked photos, created on first use
+     */
+    public synchronized ImageCompressionPipeline getImageCompressionPipeline() {
+        if (imageCompressionPipeline == null) {
+            imageCompressionPipeline = new ImageCompressionPipeline(context.getContentResolver());
+        }
+        return imageCompressionPipeline;
+    }
+
+    /**
+     * On-device copy of the signed-in user's histories and profile, opened on first use
+     */
+    public synchronized LocalMoodStore getLocalMoodStore() {
+        if (localMoodStore == null) {
+            localMoodStore = new LocalMoodStore(context);
+        }
+        return localMoodStore;
+    }
+
+    /**
+     * @return The shared cache behind fetchUserSummary, for its hit/miss counters
+     */
+    public UserSummaryCache getUserSummaryCache() {
+        return userSummaryCache;
+    }
+
+    /**
+     * Get list of users who follow the specified user, from edge documents across
+     * all users plus any follower still on a legacy following array
      */
+    @Override
     public void getFollowersOfUser(String userId, FirebaseCallback<List<String>> callback) {
-        db.collection(FOLLOWING_COLLECTION)
+        Task<QuerySnapshot> edgesTask = followerEdges(userId).get();
+        Task<QuerySnapshot> legacyTask = db.collection(FOLLOWING_COLLECTION)
                 .whereArrayContains("following", userId)
-                .get()
-                .addOnSuccessListener(queryDocumentSnapshots -> {
-                    List<String> followerIds = new ArrayList<>();
-                    for (DocumentSnapshot doc : queryDocumentSnapshots) {
-                        followerIds.add(doc.getId());
+                .get();
+
+        Tasks.whenAllComplete(edgesTask, legacyTask)
+                .addOnSuccessListener(completed -> {
+                    Set<String> followerIds = new LinkedHashSet<>();
+                    if (edgesTask.isSuccessful()) {
+                        for (DocumentSnapshot doc : edgesTask.getResult()) {
+                            followerIds.add(doc.getString("followerId"));
+                        }
+                    } else {
+                        Log.e("FirebaseDB", "Error getting followers", edgesTask.getException());
+                    }
+                    if (legacyTask.isSuccessful()) {
+                        for (DocumentSnapshot doc : legacyTask.getResult()) {
+                            followerIds.add(doc.getId());
+                        }
+                    } else {
+                        Log.e("FirebaseDB", "Error getting legacy followers", legacyTask.getException());
                     }
-                    callback.onCallback(followerIds);
+                    followerIds.remove(null);
+                    callback.onCallback(new ArrayList<>(followerIds));
+                });
+    }
+
+    /**
+     * Get one page of the users following the given user, ordered by user id.
+     * Only covers edge documents.
+     *
+     * @param startAfter Last user id of the previous page, or null for the first page
+     */
+    @Override
+    public void getFollowersPage(String userId,
+                                 String startAfter,
+                                 int pageSize,
+                                 FirebaseCallback<List<String>> callback) {
+        Query query = followerEdges(userId).orderBy("followerId");
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+        query.limit(pageSize).get()
+                .addOnSuccessListener(querySnapshot -> {
+                    List<String> page = new ArrayList<>();
+                    for (DocumentSnapshot doc : querySnapshot) {
+                        page.add(doc.getString("followerId"));
+                    }
+                    callback.onCallback(page);
                 })
                 .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Error getting followers", e);
+                    Log.e("FirebaseDB", "Error getting followers page", e);
                     callback.onCallback(new ArrayList<>());
                 });
     }
 
+    private Query followerEdges(String userId) {
+        return db.collectionGroup(EDGES_SUBCOLLECTION).whereEqualTo("followedId", userId);
+    }
+
+    /**
+     * Get follower and following totals from the user's follow_counts document.
+     * Accounts created before the counters existed have no such document; for those
+     * both layouts of the follow graph are counted with aggregate queries.
+     */
+    @Override
+    public void getFollowCounts(String userId, FirebaseCallback<FollowCounts> callback) {
+        followCountsRef(userId).get()
+                .addOnSuccessListener(documentSnapshot -> {
+                    FollowCounts counts = FollowCounts.fromData(documentSnapshot.getData());
+                    if (counts != null) {
+                        callback.onCallback(counts);
+                    } else {
+                        countFollows(userId, callback);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error getting follow counts", e);
+                    countFollows(userId, callback);
+                });
+    }
+
+    private void countFollows(String userId, FirebaseCallback<FollowCounts> callback) {
+        Task<AggregateQuerySnapshot> followersTask = followerEdges(userId)
+                .count()
+                .get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> legacyFollowersTask = db.collection(FOLLOWING_COLLECTION)
+                .whereArrayContains("following", userId)
+                .count()
+                .get(AggregateSource.SERVER);
+        Task<AggregateQuerySnapshot> followingTask = followingEdges(userId)
+                .count()
+                .get(AggregateSource.SERVER);
+        Task<DocumentSnapshot> legacyFollowingTask = db.collection(FOLLOWING_COLLECTION).document(userId).get();
+
+        Tasks.whenAll(followersTask, legacyFollowersTask, followingTask, legacyFollowingTask)
+                .addOnSuccessListener(aVoid -> {
+                    List<String> legacyFollowing = (List<String>) legacyFollowingTask.getResult().get("following");
+                    callback.onCallback(new FollowCounts(
+                            followersTask.getResult().getCount() + legacyFollowersTask.getResult().getCount(),
+                            followingTask.getResult().getCount()
+                                    + (legacyFollowing != null ? legacyFollowing.size() : 0)));
+                })
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error counting follows", e);
+                    callback.onCallback(null);
+                });
+    }
+
     /**
      * Update user profile information
      *
@@ -786,11 +1818,77 @@ public class FirebaseDB {
             return;
         }
 
-        // Update the user document in Firestore
+        // Marks author snapshots copied into mood events as stale
+        updates.put("profileVersion", FieldValue.increment(1));
+
+        DocumentReference newReservationRef = updates.containsKey("username") ? usernameRef(username) : null;
+        if (newReservationRef == null) {
+            commitProfileUpdate(userId, email, updates, null, callback);
+            return;
+        }
+
+        // Accounts created before reservations existed only have the users document.
+        // A transaction can't run queries, so look for one first and reserve its name.
         db.collection(USERS_COLLECTION)
-                .document(userId)
-                .update(updates)
-                .addOnSuccessListener(aVoid -> {
+                .whereEqualTo("usernameLower", newReservationRef.getId())
+                .limit(2)
+                .get()
+                .addOnSuccessListener(holders -> {
+                    for (DocumentSnapshot holder : holders) {
+                        if (!holder.getId().equals(userId)) {
+                            reserveLegacyUsername(holder);
+                            Log.e("FirebaseDB", "Username is already taken");
+                            callback.onCallback(false);
+                            return;
+                        }
+                    }
+                    commitProfileUpdate(userId, email, updates, newReservationRef, callback);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e("FirebaseDB", "Error checking username availability", e);
+                    callback.onCallback(false);
+                });
+    }
+
+    /**
+     * Update the user document and move the username reservation together
+     *
+     * @param newReservationRef Reservation of the new username, or null if it isn't changing
+     */
+    private void commitProfileUpdate(String userId,
+                                     String email,
+                                     Map<String, Object> updates,
+                                     DocumentReference newReservationRef,
+                                     FirebaseCallback<Boolean> callback) {
+        DocumentReference userRef = db.collection(USERS_COLLECTION).document(userId);
+        db.runTransaction(transaction -> {
+                    DocumentSnapshot user = transaction.get(userRef);
+                    DocumentSnapshot newReservation = newReservationRef != null
+                            ? transaction.get(newReservationRef) : null;
+
+                    if (newReservation != null && newReservation.exists()
+                            && !userId.equals(newReservation.getString("userId"))) {
+                        throw new FirebaseFirestoreException("Username is already taken",
+                                FirebaseFirestoreException.Code.ALREADY_EXISTS);
+                    }
+
+                    String oldUsernameLower = user.getString("usernameLower");
+                    String newEmail = updates.containsKey("email") ? email : user.getString("email");
+                    if (newReservationRef != null) {
+                        if (oldUsernameLower != null && !oldUsernameLower.equals(newReservationRef.getId())) {
+                            transaction.delete(usernameRef(oldUsernameLower));
+                        }
+                        transaction.set(newReservationRef, reservationData(userId, newEmail));
+                    } else if (updates.containsKey("email") && oldUsernameLower != null) {
+                        transaction.set(usernameRef(oldUsernameLower), reservationData(userId, newEmail));
+                    }
+                    transaction.update(userRef, updates);
+                    return null;
+                })
+                .addOnSuccessListener(result -> {
+                    userSummaryCache.invalidate(userId);
+                    refreshAuthorSnapshots(userId);
+
                     // Optional: Update email in Firebase Authentication if email changed
                     FirebaseUser currentUser = auth.getCurrentUser();
                     if (currentUser != null && updates.containsKey("email")) {
@@ -810,6 +1908,63 @@ public class FirebaseDB {
                 });
     }
 
+    /**
+     * Rewrite the author snapshot of every mood event by userId that is older than
+     * their current profileVersion. Runs in the background after a profile update,
+     * one page of AUTHOR_REFRESH_PAGE_SIZE events at a time, so a long history is
+     * never read or held at once; events it misses keep the old snapshot until the
+     * next update.
+     */
+    private void refreshAuthorSnapshots(String userId) {
+        fetchUserById(userId, userData -> {
+            AuthorSnapshot current = AuthorSnapshot.fromUserData(userData);
+            if (current != null) {
+                refreshAuthorSnapshotPage(userId, current, null);
+            }
+        });
+    }
+
+    /**
+     * Rewrite the stale snapshots in the page after startAfter, then move on to the next
+     * page once its writes have committed
+     */
+    private void refreshAuthorSnapshotPage(String userId, AuthorSnapshot current, DocumentSnapshot startAfter) {
+        Query query = db.collection(MOODS_COLLECTION)
+                .whereEqualTo("userID", userId)
+                .orderBy(FieldPath.documentId());
+        if (startAfter != null) {
+            query = query.startAfter(startAfter);
+        }
+        query.limit(AUTHOR_REFRESH_PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(snapshot -> {
+                    List<DocumentReference> stale = new ArrayList<>();
+                    for (DocumentSnapshot doc : snapshot) {
+                        if (Boolean.TRUE.equals(doc.getBoolean("deleted"))) {
+                            continue;
+                        }
+                        Long version = doc.getLong("author.version");
+                        if (version == null || version < current.getVersion()) {
+                            stale.add(doc.getReference());
+                        }
+                    }
+                    List<DocumentSnapshot> docs = snapshot.getDocuments();
+                    commitChunks(MoodEventMerge.chunk(stale, MoodOperation.MAX_BATCH_SIZE),
+                            (batch, chunk) -> {
+                                for (DocumentReference ref : chunk) {
+                                    batch.update(ref, "author", current,
+                                            "serverUpdatedAt", FieldValue.serverTimestamp());
+                                }
+                            },
+                            committed -> {
+                                if (docs.size() >= AUTHOR_REFRESH_PAGE_SIZE) {
+                                    refreshAuthorSnapshotPage(userId, current, docs.get(docs.size() - 1));
+                                }
+                            });
+                })
+                .addOnFailureListener(e -> Log.e("FirebaseDB", "Error finding stale author snapshots", e));
+    }
+
     /**
      * Update a user's permission in Firestore.
      *
@@ -862,6 +2017,7 @@ public class FirebaseDB {
     }
 
     // Add to FirebaseDB class
+    @Override
     public void getSentFollowRequests(String userId, FirebaseCallback<List<Map<String, Object>>> callback) {
         db.collection(FOLLOW_REQUESTS_COLLECTION)
                 .whereEqualTo("fromUserId", userId)
@@ -882,6 +2038,7 @@ public class FirebaseDB {
                 });
     }
 
+    @Override
     public void searchUsersByUsername(String query, FirebaseCallback<List<Map<String, Object>>> callback) {
         String queryLower = query.toLowerCase();
         db.collection(USERS_COLLECTION)
@@ -903,6 +2060,7 @@ public class FirebaseDB {
                 });
     }
 
+    @Override
     public void addCommentToMoodEvent(String moodEventId, Comment comment, FirebaseCallback<Comment> callback) {
         DocumentReference newCommentRef = db.collection(MOODS_COLLECTION)
                 .document(moodEventId)
@@ -929,6 +2087,7 @@ public class FirebaseDB {
                     callback.onCallback(null);
                 });
     }
+    @Override
     public void deleteCommentFromMoodEvent(String moodEventId, String commentId, FirebaseCallback<Boolean> callback) {
         db.collection(MOODS_COLLECTION)
                 .document(moodEventId)
@@ -942,6 +2101,7 @@ public class FirebaseDB {
                 });
     }
 
+    @Override
     public void fetchCommentsForMoodEvent(String moodEventId, FirebaseCallback<List<Comment>> callback) {
         db.collection(MOODS_COLLECTION)
                 .document(moodEventId)
@@ -968,23 +2128,6 @@ public class FirebaseDB {
                     callback.onCallback(Collections.emptyList());
                 });
     }
-    public void uploadProfileImage(Uri imageUri, String userId, FirebaseCallback<String> callback) {
-        StorageReference storageRef = storage.getReference()
-                .child("profileImages/" + userId + "_" + System.currentTimeMillis());
-
-        storageRef.putFile(imageUri)
-                .addOnSuccessListener(taskSnapshot ->
-                        storageRef.getDownloadUrl().addOnSuccessListener(uri -> {
-                            Log.d("FirebaseDB", "Image uploaded. Download URL: " + uri);
-                            callback.onCallback(uri.toString());
-                        })
-                )
-                .addOnFailureListener(e -> {
-                    Log.e("FirebaseDB", "Image upload failed", e);
-                    callback.onCallback(null);
-                });
-    }
-
     public StorageReference getReference(String path) {
         return storage.getReference().child(path);
     }
@@ -0,0 +1,44 @@
+package com.example.team_16.database;
+
+import java.util.Map;
+
+/**
+ * Follower and following totals of one user, as kept in its follow_counts document
+ */
+public final class FollowCounts {
+
+    public static final String FOLLOWER_COUNT = "followerCount";
+    public static final String FOLLOWING_COUNT = "followingCount";
+
+    private final long followers;
+    private final long following;
+
+    public FollowCounts(long followers, long following) {
+        this.followers = followers;
+        this.following = following;
+    }
+
+    /**
+     * @param data Fields of a follow_counts document, or null
+     * @return The counts, or null if either counter is missing
+     */
+    public static FollowCounts fromData(Map<String, Object> data) {
+        if (data == null) {
+            return null;
+        }
+        Object followers = data.get(FOLLOWER_COUNT);
+        Object following = data.get(FOLLOWING_COUNT);
+        if (!(followers instanceof Number) || !(following instanceof Number)) {
+            return null;
+        }
+        return new FollowCounts(((Number) followers).longValue(), ((Number) following).longValue());
+    }
+
+    public long getFollowers() {
+        return followers;
+    }
+
+    public long getFollowing() {
+        return following;
+    }
+}
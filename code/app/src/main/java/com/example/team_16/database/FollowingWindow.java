@@ -0,0 +1,246 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live window over the newest public events of each followed user that tracks
+ * the follow graph.
+ *
+ * Whenever the followees change, listeners are attached for new followees and
+ * removed for dropped ones, whose events are reported as REMOVED. Up to
+ * maxLiveFollowees each followee has its own snapshot listener. Past that, the
+ * window is read once with the bounded one-shot query each time the follow graph
+ * changes, and isLive() is false, so the owner refreshes it when it wants new posts.
+ */
+public class FollowingWindow implements ListenerRegistration {
+
+    /**
+     * Where the follow graph and the followees' events come from
+     */
+    public interface Source {
+        /**
+         * Report the followee ids now and again after every follow, unfollow or
+         * accepted request
+         */
+        ListenerRegistration listenFollowees(FirebaseDB.FirebaseCallback<List<String>> listener);
+
+        /**
+         * Keep the newest public events of one followee live
+         */
+        ListenerRegistration listenFollowee(String followeeId,
+                                            FirebaseDB.FirebaseCallback<List<MoodChange>> listener);
+
+        /**
+         * Read the newest public events of each followee once
+         */
+        void getLatest(List<String> followeeIds, FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+    }
+
+    // Each followee listener holds a watch target open; past this many, poll instead
+    public static final int MAX_LIVE_FOLLOWEES = 50;
+
+    private final Source source;
+    private final int maxLiveFollowees;
+    private final FirebaseDB.FirebaseCallback<List<MoodChange>> listener;
+
+    private ListenerRegistration graphRegistration;
+    private Set<String> followees = new LinkedHashSet<>();
+    private final Map<String, ListenerRegistration> followeeRegistrations = new HashMap<>();
+    // Events reported so far, per followee, so dropping a followee can remove them
+    private final Map<String, Map<String, MoodEvent>> delivered = new HashMap<>();
+    private boolean live = true;
+    private boolean removed;
+    private int fetchGeneration;
+
+    public FollowingWindow(Source source,
+                           int maxLiveFollowees,
+                           FirebaseDB.FirebaseCallback<List<MoodChange>> listener) {
+        this.source = source;
+        this.maxLiveFollowees = maxLiveFollowees;
+        this.listener = listener;
+    }
+
+    /**
+     * Start watching the follow graph
+     *
+     * @return this, as the registration that stops everything
+     */
+    public FollowingWindow start() {
+        ListenerRegistration registration = source.listenFollowees(this::setFollowees);
+        synchronized (this) {
+            if (!removed) {
+                graphRegistration = registration;
+                return this;
+            }
+        }
+        registration.remove();
+        return this;
+    }
+
+    /**
+     * @return true while every followee has a snapshot listener; false when there
+     * are too many followees and the window is only read on follow graph changes
+     */
+    public synchronized boolean isLive() {
+        return !removed && live;
+    }
+
+    @Override
+    public void remove() {
+        List<ListenerRegistration> registrations = new ArrayList<>();
+        synchronized (this) {
+            removed = true;
+            if (graphRegistration != null) {
+                registrations.add(graphRegistration);
+                graphRegistration = null;
+            }
+            registrations.addAll(followeeRegistrations.values());
+            followeeRegistrations.clear();
+            delivered.clear();
+        }
+        for (ListenerRegistration registration : registrations) {
+            registration.remove();
+        }
+    }
+
+    private void setFollowees(List<String> followeeIds) {
+        List<MoodChange> removals = new ArrayList<>();
+        List<ListenerRegistration> detached = new ArrayList<>();
+        List<String> toListen = new ArrayList<>();
+        List<String> toFetch = null;
+        int generation;
+        synchronized (this) {
+            if (removed || followeeIds == null) {
+                return;
+            }
+            Set<String> next = new LinkedHashSet<>(followeeIds);
+            boolean nextLive = next.size() <= maxLiveFollowees;
+
+            Iterator<Map.Entry<String, Map<String, MoodEvent>>> events = delivered.entrySet().iterator();
+            while (events.hasNext()) {
+                Map.Entry<String, Map<String, MoodEvent>> entry = events.next();
+                if (!next.contains(entry.getKey())) {
+                    for (MoodEvent event : entry.getValue().values()) {
+                        removals.add(new MoodChange(MoodChange.Type.REMOVED, event));
+                    }
+                    events.remove();
+                }
+            }
+            Iterator<Map.Entry<String, ListenerRegistration>> registrations =
+                    followeeRegistrations.entrySet().iterator();
+            while (registrations.hasNext()) {
+                Map.Entry<String, ListenerRegistration> entry = registrations.next();
+                if (!nextLive || !next.contains(entry.getKey())) {
+                    detached.add(entry.getValue());
+                    registrations.remove();
+                }
+            }
+
+            followees = next;
+            live = nextLive;
+            // Drops the result of any one-shot read still in flight
+            generation = ++fetchGeneration;
+            if (nextLive) {
+                for (String followeeId : next) {
+                    if (!followeeRegistrations.containsKey(followeeId)) {
+                        toListen.add(followeeId);
+                    }
+                }
+            } else {
+                toFetch = new ArrayList<>(next);
+            }
+        }
+
+        for (ListenerRegistration registration : detached) {
+            registration.remove();
+        }
+        if (!removals.isEmpty()) {
+            listener.onCallback(removals);
+        }
+        for (String followeeId : toListen) {
+            attach(followeeId);
+        }
+        if (toFetch != null) {
+            source.getLatest(toFetch, latest -> onLatest(generation, latest));
+        }
+    }
+
+    private void attach(String followeeId) {
+        ListenerRegistration registration = source.listenFollowee(followeeId,
+                changes -> onFolloweeChanges(followeeId, changes));
+        synchronized (this) {
+            if (!removed && live && followees.contains(followeeId)
+                    && !followeeRegistrations.containsKey(followeeId)) {
+                followeeRegistrations.put(followeeId, registration);
+                return;
+            }
+        }
+        registration.remove();
+    }
+
+    private void onFolloweeChanges(String followeeId, List<MoodChange> changes) {
+        synchronized (this) {
+            if (removed || !live || !followees.contains(followeeId)) {
+                return;
+            }
+            Map<String, MoodEvent> events = delivered.computeIfAbsent(followeeId, k -> new HashMap<>());
+            for (MoodChange change : changes) {
+                if (change.getType() == MoodChange.Type.REMOVED) {
+                    events.remove(change.getEvent().getId());
+                } else {
+                    events.put(change.getEvent().getId(), change.getEvent());
+                }
+            }
+        }
+        listener.onCallback(changes);
+    }
+
+    /**
+     * Report a one-shot read as the difference from what was reported before
+     */
+    private void onLatest(int generation, List<MoodEvent> latest) {
+        List<MoodChange> changes = new ArrayList<>();
+        synchronized (this) {
+            if (removed || generation != fetchGeneration) {
+                return;
+            }
+            Map<String, Map<String, MoodEvent>> next = new HashMap<>();
+            for (MoodEvent event : latest) {
+                if (followees.contains(event.getUserID())) {
+                    next.computeIfAbsent(event.getUserID(), k -> new HashMap<>()).put(event.getId(), event);
+                }
+            }
+            for (Map.Entry<String, Map<String, MoodEvent>> entry : delivered.entrySet()) {
+                Map<String, MoodEvent> kept = next.get(entry.getKey());
+                for (MoodEvent event : entry.getValue().values()) {
+                    if (kept == null || !kept.containsKey(event.getId())) {
+                        changes.add(new MoodChange(MoodChange.Type.REMOVED, event));
+                    }
+                }
+            }
+            for (MoodEvent event : latest) {
+                if (!followees.contains(event.getUserID())) {
+                    continue;
+                }
+                Map<String, MoodEvent> previous = delivered.get(event.getUserID());
+                changes.add(new MoodChange(previous != null && previous.containsKey(event.getId())
+                        ? MoodChange.Type.MODIFIED
+                        : MoodChange.Type.ADDED, event));
+            }
+            delivered.clear();
+            delivered.putAll(next);
+        }
+        if (!changes.isEmpty()) {
+            listener.onCallback(changes);
+        }
+    }
+}
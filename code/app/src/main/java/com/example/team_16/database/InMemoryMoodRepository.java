@@ -0,0 +1,892 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.AuthorSnapshot;
+import com.example.team_16.models.Comment;
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Heap-backed MoodRepository/SocialGraphRepository used for JVM benchmarks and
+ * Robolectric load tests without a Firestore project.
+ *
+ * Events are indexed per user in timestamp order, so personal and following
+ * queries only touch the users involved rather than the whole store. All
+ * callbacks are invoked synchronously on the calling thread.
+ */
+public class InMemoryMoodRepository implements MoodRepository, SocialGraphRepository {
+
+    /**
+     * Newest first, ties broken by id so distinct events never collapse
+     */
+    private static final Comparator<MoodEvent> NEWEST_FIRST = (a, b) -> {
+        int cmp = Long.compare(timeOf(b), timeOf(a));
+        if (cmp != 0) {
+            return cmp;
+        }
+        return a.getId().compareTo(b.getId());
+    };
+
+    private final Map<String, MoodEvent> eventsById = new HashMap<>();
+    private final Map<String, NavigableSet<MoodEvent>> eventsByUser = new HashMap<>();
+    private final Map<String, List<Comment>> commentsByEvent = new HashMap<>();
+
+    // Deleted events, kept so getMoodEventsChangedSince reports the deletion
+    private final Map<String, MoodEvent> tombstonesById = new HashMap<>();
+
+    // Last serverUpdatedAt handed out, in milliseconds; strictly increasing like a commit clock
+    private long lastServerTime;
+
+    private final Map<String, Map<String, Object>> users = new HashMap<>();
+    private final Map<String, Set<String>> following = new HashMap<>();
+    private final Map<String, Map<String, Object>> followRequests = new HashMap<>();
+
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private final Map<String, List<FirebaseDB.FirebaseCallback<List<String>>>> followingWatchers = new HashMap<>();
+
+    private volatile boolean online = true;
+
+    /**
+     * A live query: the newest limit events of each user that match query
+     */
+    private static final class Subscription {
+        final List<String> userIds;
+        final MoodQuery query;
+        final int limit;
+        final FirebaseDB.FirebaseCallback<List<MoodChange>> listener;
+        Map<String, MoodEvent> window = new LinkedHashMap<>();
+
+        Subscription(List<String> userIds, MoodQuery query, int limit,
+                     FirebaseDB.FirebaseCallback<List<MoodChange>> listener) {
+            this.userIds = userIds;
+            this.query = query;
+            this.limit = limit;
+            this.listener = listener;
+        }
+    }
+
+    // Seeding helpers
+
+    /**
+     * Register a user record, as the users collection would hold it
+     */
+    public synchronized void putUser(String userId, String username, String fullName, String profileImageUrl) {
+        Map<String, Object> userData = new HashMap<>();
+        userData.put("id", userId);
+        userData.put("username", username);
+        userData.put("usernameLower", username != null ? username.toLowerCase() : null);
+        userData.put("fullName", fullName);
+        userData.put("profileImageUrl", profileImageUrl);
+        userData.put("locationPermission", false);
+        userData.put("photoPermission", false);
+        userData.put("cameraPermission", false);
+        users.put(userId, userData);
+    }
+
+    /**
+     * Directly create a follow edge, bypassing the request flow
+     */
+    public void putFollowing(String followerId, String followedId) {
+        synchronized (this) {
+            following.computeIfAbsent(followerId, k -> new LinkedHashSet<>()).add(followedId);
+        }
+        notifyFollowingChanged(followerId);
+    }
+
+    /**
+     * Simulate connectivity changes
+     */
+    public void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    /**
+     * @return Total number of stored mood events
+     */
+    public synchronized int size() {
+        return eventsById.size();
+    }
+
+    // MoodRepository
+
+    @Override
+    public boolean isOnline() {
+        return online;
+    }
+
+    @Override
+    public void addMoodEvent(MoodEvent moodEvent, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        if (moodEvent.getId() == null || moodEvent.getId().isEmpty()) {
+            moodEvent.setId(UUID.randomUUID().toString());
+        }
+        if (moodEvent.getTimestamp() == null) {
+            moodEvent.setTimestamp(Timestamp.now());
+        }
+        synchronized (this) {
+            if (moodEvent.getAuthor() == null) {
+                moodEvent.setAuthor(AuthorSnapshot.fromUserData(users.get(moodEvent.getUserID())));
+            }
+            moodEvent.setDeleted(false);
+            moodEvent.setServerUpdatedAt(nextServerTime());
+            tombstonesById.remove(moodEvent.getId());
+            removeEvent(moodEvent.getId());
+            eventsById.put(moodEvent.getId(), moodEvent);
+            eventsByUser.computeIfAbsent(moodEvent.getUserID(), k -> new TreeSet<>(NEWEST_FIRST))
+                    .add(moodEvent);
+        }
+        dispatchChanges(moodEvent.getId());
+        callback.onCallback(true);
+    }
+
+    @Override
+    public void queryMoodEvents(String userId,
+                                MoodQuery query,
+                                FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        List<MoodEvent> moodEvents = new ArrayList<>();
+        synchronized (this) {
+            collect(eventsByUser.get(userId), query, moodEvents);
+        }
+        callback.onCallback(moodEvents);
+    }
+
+    @Override
+    public void getMoodEventsPage(String userId,
+                                  Timestamp startAfter,
+                                  String startAfterId,
+                                  int pageSize,
+                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        List<MoodEvent> page = new ArrayList<>();
+        synchronized (this) {
+            NavigableSet<MoodEvent> userEvents = eventsByUser.get(userId);
+            if (userEvents != null) {
+                // Jump straight to the cursor instead of scanning earlier pages
+                NavigableSet<MoodEvent> remaining = startAfter != null
+                        ? userEvents.tailSet(cursorAt(startAfter, startAfterId), false)
+                        : userEvents;
+                for (MoodEvent moodEvent : remaining) {
+                    if (page.size() >= pageSize) {
+                        break;
+                    }
+                    page.add(moodEvent);
+                }
+            }
+        }
+        callback.onCallback(page);
+    }
+
+    @Override
+    public void getMoodEventsChangedSince(String userId,
+                                          Timestamp since,
+                                          FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        List<MoodEvent> changed = new ArrayList<>();
+        synchronized (this) {
+            NavigableSet<MoodEvent> userEvents = eventsByUser.get(userId);
+            if (userEvents != null) {
+                for (MoodEvent moodEvent : userEvents) {
+                    if (changedAfter(moodEvent, since)) {
+                        changed.add(moodEvent);
+                    }
+                }
+            }
+            for (MoodEvent tombstone : tombstonesById.values()) {
+                if (userId.equals(tombstone.getUserID()) && changedAfter(tombstone, since)) {
+                    changed.add(tombstone);
+                }
+            }
+        }
+        changed.sort(Comparator.comparing(MoodEvent::getServerUpdatedAt));
+        callback.onCallback(changed);
+    }
+
+    @Override
+    public void countMoodEvents(String userId, FirebaseDB.FirebaseCallback<Long> callback) {
+        long count;
+        synchronized (this) {
+            NavigableSet<MoodEvent> userEvents = eventsByUser.get(userId);
+            count = userEvents != null ? userEvents.size() : 0;
+        }
+        callback.onCallback(count);
+    }
+
+    @Override
+    public void queryFollowingMoodEvents(String userId,
+                                         MoodQuery query,
+                                         FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        List<List<MoodEvent>> perUser = new ArrayList<>();
+        synchronized (this) {
+            Set<String> followed = following.get(userId);
+            if (followed != null) {
+                for (String followedId : followed) {
+                    List<MoodEvent> userEvents = new ArrayList<>();
+                    collect(eventsByUser.get(followedId), query, userEvents);
+                    perUser.add(userEvents);
+                }
+            }
+        }
+        callback.onCallback(MoodEventMerge.mergeNewestFirst(perUser));
+    }
+
+    @Override
+    public void getLatestFollowingMoodEvents(String userId,
+                                             int perUser,
+                                             FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        List<MoodEvent> latest;
+        synchronized (this) {
+            Set<String> followed = following.get(userId);
+            latest = latestOf(followed != null ? followed : Collections.emptySet(), perUser);
+        }
+        callback.onCallback(latest);
+    }
+
+    @Override
+    public ListenerRegistration listenMoodEvents(String userId,
+                                                 int limit,
+                                                 FirebaseDB.FirebaseCallback<List<MoodChange>> listener) {
+        return subscribe(new Subscription(Collections.singletonList(userId),
+                new MoodQuery(null, null, null, null), limit, listener));
+    }
+
+    @Override
+    public FollowingWindow listenLatestFollowingMoodEvents(String userId,
+                                                           int perUser,
+                                                           FirebaseDB.FirebaseCallback<List<MoodChange>> listener) {
+        return listenLatestFollowingMoodEvents(userId, perUser, FollowingWindow.MAX_LIVE_FOLLOWEES, listener);
+    }
+
+    /**
+     * listenLatestFollowingMoodEvents with a different cap on live followees
+     */
+    public FollowingWindow listenLatestFollowingMoodEvents(String userId,
+                                                           int perUser,
+                                                           int maxLiveFollowees,
+                                                           FirebaseDB.FirebaseCallback<List<MoodChange>> listener) {
+        MoodQuery publicOnly = MoodQuery.publicOnly(null, null, null);
+        return new FollowingWindow(new FollowingWindow.Source() {
+            @Override
+            public ListenerRegistration listenFollowees(FirebaseDB.FirebaseCallback<List<String>> followeesListener) {
+                return watchFollowing(userId, followeesListener);
+            }
+
+            @Override
+            public ListenerRegistration listenFollowee(String followeeId,
+                                                       FirebaseDB.FirebaseCallback<List<MoodChange>> changeListener) {
+                return subscribe(new Subscription(Collections.singletonList(followeeId),
+                        publicOnly, perUser, changeListener));
+            }
+
+            @Override
+            public void getLatest(List<String> followeeIds,
+                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                List<MoodEvent> latest;
+                synchronized (InMemoryMoodRepository.this) {
+                    latest = latestOf(followeeIds, perUser);
+                }
+                callback.onCallback(latest);
+            }
+        }, maxLiveFollowees, listener).start();
+    }
+
+    private ListenerRegistration watchFollowing(String userId, FirebaseDB.FirebaseCallback<List<String>> listener) {
+        List<String> current;
+        synchronized (this) {
+            followingWatchers.computeIfAbsent(userId, k -> new ArrayList<>()).add(listener);
+            Set<String> followed = following.get(userId);
+            current = followed != null ? new ArrayList<>(followed) : new ArrayList<>();
+        }
+        listener.onCallback(current);
+        return () -> {
+            synchronized (InMemoryMoodRepository.this) {
+                List<FirebaseDB.FirebaseCallback<List<String>>> watchers = followingWatchers.get(userId);
+                if (watchers != null) {
+                    watchers.remove(listener);
+                }
+            }
+        };
+    }
+
+    private ListenerRegistration subscribe(Subscription subscription) {
+        List<MoodChange> initial = new ArrayList<>();
+        synchronized (this) {
+            subscription.window = windowOf(subscription);
+            for (MoodEvent moodEvent : subscription.window.values()) {
+                initial.add(new MoodChange(MoodChange.Type.ADDED, moodEvent));
+            }
+            subscriptions.add(subscription);
+        }
+        if (!initial.isEmpty()) {
+            subscription.listener.onCallback(initial);
+        }
+        return () -> {
+            synchronized (InMemoryMoodRepository.this) {
+                subscriptions.remove(subscription);
+            }
+        };
+    }
+
+    @Override
+    public void getMoodEventFromID(String id, FirebaseDB.FirebaseCallback<MoodEvent> callback) {
+        MoodEvent moodEvent;
+        synchronized (this) {
+            moodEvent = eventsById.get(id);
+        }
+        callback.onCallback(moodEvent != null ? moodEvent : new MoodEvent());
+    }
+
+    @Override
+    public void getMoodEventsByIds(Collection<String> ids, FirebaseDB.FirebaseCallback<Map<String, MoodEvent>> callback) {
+        Map<String, MoodEvent> found = new HashMap<>();
+        synchronized (this) {
+            for (String id : ids) {
+                MoodEvent event = eventsById.get(id);
+                if (event != null) {
+                    found.put(id, event.copy());
+                }
+            }
+        }
+        callback.onCallback(found);
+    }
+
+    @Override
+    public void updateMoodEvent(String eventId, MoodEvent updates, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        boolean updated;
+        synchronized (this) {
+            MoodEvent existing = eventsById.get(eventId);
+            updated = existing != null;
+            if (updated) {
+                removeEvent(eventId);
+                existing.setEmotionalState(updates.getEmotionalState());
+                existing.setTrigger(updates.getTrigger());
+                existing.setSocialSituation(updates.getSocialSituation());
+                existing.setLatitude(updates.getLatitude());
+                existing.setLongitude(updates.getLongitude());
+                existing.setPlaceName(updates.getPlaceName());
+                existing.setPhotoUrl(updates.getPhotoUrl());
+                existing.setPhotoFilename(updates.getPhotoFilename());
+                existing.setPostType(updates.getPostType());
+                existing.setUpdatedAt(updates.getUpdatedAt());
+                existing.setVersion(updates.getVersion());
+                existing.setTimestamp(Timestamp.now());
+                existing.setServerUpdatedAt(nextServerTime());
+                eventsById.put(eventId, existing);
+                eventsByUser.computeIfAbsent(existing.getUserID(), k -> new TreeSet<>(NEWEST_FIRST))
+                        .add(existing);
+            }
+        }
+        if (updated) {
+            dispatchChanges(eventId);
+        }
+        callback.onCallback(updated);
+    }
+
+    @Override
+    public void deleteMoodEvent(String eventId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        synchronized (this) {
+            MoodEvent existing = eventsById.get(eventId);
+            if (existing != null) {
+                // Keeps what a Firestore tombstone keeps; content fields are deleted there
+                MoodEvent tombstone = existing.copy();
+                tombstone.setTrigger(null);
+                tombstone.setSocialSituation(null);
+                tombstone.setLatitude(null);
+                tombstone.setLongitude(null);
+                tombstone.setPlaceName(null);
+                tombstone.setPhotoUrl(null);
+                tombstone.setPhotoFilename(null);
+                tombstone.setPostType(MoodQuery.POST_TYPE_DELETED);
+                tombstone.setDeleted(true);
+                tombstone.setServerUpdatedAt(nextServerTime());
+                tombstonesById.put(eventId, tombstone);
+            }
+            removeEvent(eventId);
+            commentsByEvent.remove(eventId);
+        }
+        dispatchChanges(eventId);
+        // The tombstone is merged, so a missing document is not an error
+        callback.onCallback(true);
+    }
+
+    @Override
+    public void commitBatch(List<MoodOperation> operations,
+                            FirebaseDB.FirebaseCallback<List<MoodOperation.BatchResult>> callback) {
+        List<MoodOperation.BatchResult> results = new ArrayList<>();
+        for (List<MoodOperation> chunk : MoodEventMerge.chunk(operations, MoodOperation.MAX_BATCH_SIZE)) {
+            boolean applied;
+            synchronized (this) {
+                applied = canApply(chunk);
+                if (applied) {
+                    for (MoodOperation operation : chunk) {
+                        apply(operation);
+                    }
+                }
+            }
+            results.add(new MoodOperation.BatchResult(chunk, applied));
+        }
+        callback.onCallback(results);
+    }
+
+    /**
+     * Like a Firestore WriteBatch, a batch fails as a whole if any update targets a
+     * missing event. Tombstones are merged, so they never fail.
+     */
+    private boolean canApply(List<MoodOperation> chunk) {
+        Set<String> added = new HashSet<>();
+        Set<String> deleted = new HashSet<>();
+        for (MoodOperation operation : chunk) {
+            String id = operation.getEventId();
+            switch (operation.getType()) {
+                case ADD:
+                    added.add(id);
+                    deleted.remove(id);
+                    break;
+                case UPDATE:
+                    if (deleted.contains(id) || (!added.contains(id) && !eventsById.containsKey(id))) {
+                        return false;
+                    }
+                    break;
+                case DELETE:
+                    deleted.add(id);
+                    added.remove(id);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    private void apply(MoodOperation operation) {
+        switch (operation.getType()) {
+            case ADD:
+                addMoodEvent(operation.getEvent(), success -> {});
+                break;
+            case UPDATE:
+                updateMoodEvent(operation.getEventId(), operation.getEvent(), success -> {});
+                break;
+            case DELETE:
+                deleteMoodEvent(operation.getEventId(), success -> {});
+                break;
+        }
+    }
+
+    @Override
+    public void addCommentToMoodEvent(String moodEventId, Comment comment, FirebaseDB.FirebaseCallback<Comment> callback) {
+        comment.setId(UUID.randomUUID().toString());
+        comment.setTimestamp(System.currentTimeMillis());
+        synchronized (this) {
+            commentsByEvent.computeIfAbsent(moodEventId, k -> new ArrayList<>()).add(comment);
+        }
+        callback.onCallback(comment);
+    }
+
+    @Override
+    public void deleteCommentFromMoodEvent(String moodEventId, String commentId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        synchronized (this) {
+            List<Comment> comments = commentsByEvent.get(moodEventId);
+            if (comments != null) {
+                comments.removeIf(c -> commentId.equals(c.getId()));
+            }
+        }
+        callback.onCallback(true);
+    }
+
+    @Override
+    public void fetchCommentsForMoodEvent(String moodEventId, FirebaseDB.FirebaseCallback<List<Comment>> callback) {
+        List<Comment> comments;
+        synchronized (this) {
+            List<Comment> stored = commentsByEvent.get(moodEventId);
+            comments = stored != null ? new ArrayList<>(stored) : new ArrayList<>();
+        }
+        comments.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+        callback.onCallback(comments);
+    }
+
+    // SocialGraphRepository
+
+    @Override
+    public void fetchUserById(String userId, FirebaseDB.FirebaseCallback<Map<String, Object>> callback) {
+        Map<String, Object> userData;
+        synchronized (this) {
+            Map<String, Object> stored = users.get(userId);
+            userData = stored != null ? new HashMap<>(stored) : null;
+        }
+        callback.onCallback(userData);
+    }
+
+    @Override
+    public void fetchUserSummary(String userId, FirebaseDB.FirebaseCallback<UserSummary> callback) {
+        UserSummary summary;
+        synchronized (this) {
+            summary = UserSummary.fromUserData(userId, users.get(userId));
+        }
+        callback.onCallback(summary);
+    }
+
+    @Override
+    public void fetchUsersByIds(Collection<String> userIds,
+                                FirebaseDB.FirebaseCallback<Map<String, UserSummary>> callback) {
+        Map<String, UserSummary> found = new HashMap<>();
+        synchronized (this) {
+            for (String userId : userIds) {
+                UserSummary summary = UserSummary.fromUserData(userId, users.get(userId));
+                if (summary != null) {
+                    found.put(userId, summary);
+                }
+            }
+        }
+        callback.onCallback(found);
+    }
+
+    @Override
+    public void searchUsersByUsername(String query, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback) {
+        String queryLower = query.toLowerCase();
+        List<Map<String, Object>> results = new ArrayList<>();
+        synchronized (this) {
+            for (Map<String, Object> userData : users.values()) {
+                Object usernameLower = userData.get("usernameLower");
+                if (usernameLower instanceof String && ((String) usernameLower).startsWith(queryLower)) {
+                    results.add(new HashMap<>(userData));
+                }
+            }
+        }
+        callback.onCallback(results);
+    }
+
+    @Override
+    public void sendFollowRequest(String fromUserId, String toUserId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        boolean created = false;
+        synchronized (this) {
+            String requestId = SocialGraphRepository.followRequestId(fromUserId, toUserId);
+            Map<String, Object> existing = followRequests.get(requestId);
+            if (existing == null || !"pending".equals(existing.get("status"))) {
+                Map<String, Object> followRequest = new HashMap<>();
+                followRequest.put("fromUserId", fromUserId);
+                followRequest.put("toUserId", toUserId);
+                followRequest.put("status", "pending");
+                followRequest.put("timestamp", System.currentTimeMillis());
+                followRequests.put(requestId, followRequest);
+                created = true;
+            }
+        }
+        callback.onCallback(created);
+    }
+
+    @Override
+    public void getFollowRequestStatus(String fromUserId, String toUserId, FirebaseDB.FirebaseCallback<String> callback) {
+        String status;
+        synchronized (this) {
+            Map<String, Object> request = followRequests.get(SocialGraphRepository.followRequestId(fromUserId, toUserId));
+            status = request != null ? (String) request.get("status") : null;
+        }
+        callback.onCallback(status);
+    }
+
+    @Override
+    public void respondToFollowRequest(String requestId, boolean accept, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        Map<String, Object> request;
+        synchronized (this) {
+            request = followRequests.get(requestId);
+            // Only a pending request can be answered, as in FirebaseDB's transaction
+            if (request != null && !"pending".equals(request.get("status"))) {
+                request = null;
+            }
+            if (request != null) {
+                request.put("status", accept ? "accepted" : "rejected");
+            }
+        }
+        if (request != null && accept) {
+            putFollowing((String) request.get("fromUserId"), (String) request.get("toUserId"));
+        }
+        callback.onCallback(request != null);
+    }
+
+    @Override
+    public void getPendingFollowRequests(String userId, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback) {
+        callback.onCallback(requestsMatching("toUserId", userId));
+    }
+
+    @Override
+    public void getSentFollowRequests(String userId, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback) {
+        callback.onCallback(requestsMatching("fromUserId", userId));
+    }
+
+    @Override
+    public void getFollowingList(String userId, FirebaseDB.FirebaseCallback<List<String>> callback) {
+        List<String> result;
+        synchronized (this) {
+            Set<String> followed = following.get(userId);
+            result = followed != null ? new ArrayList<>(followed) : new ArrayList<>();
+        }
+        callback.onCallback(result);
+    }
+
+    @Override
+    public void getFollowersOfUser(String userId, FirebaseDB.FirebaseCallback<List<String>> callback) {
+        List<String> followerIds = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, Set<String>> entry : following.entrySet()) {
+                if (entry.getValue().contains(userId)) {
+                    followerIds.add(entry.getKey());
+                }
+            }
+        }
+        callback.onCallback(followerIds);
+    }
+
+    @Override
+    public void getFollowingPage(String userId,
+                                 String startAfter,
+                                 int pageSize,
+                                 FirebaseDB.FirebaseCallback<List<String>> callback) {
+        List<String> followed;
+        synchronized (this) {
+            Set<String> stored = following.get(userId);
+            followed = stored != null ? new ArrayList<>(stored) : new ArrayList<>();
+        }
+        callback.onCallback(pageOf(followed, startAfter, pageSize));
+    }
+
+    @Override
+    public void getFollowersPage(String userId,
+                                 String startAfter,
+                                 int pageSize,
+                                 FirebaseDB.FirebaseCallback<List<String>> callback) {
+        getFollowersOfUser(userId, followerIds -> callback.onCallback(pageOf(followerIds, startAfter, pageSize)));
+    }
+
+    /**
+     * Sort ids and cut the page that follows startAfter, as an orderBy/startAfter/limit query would
+     */
+    private static List<String> pageOf(List<String> ids, String startAfter, int pageSize) {
+        Collections.sort(ids);
+        List<String> page = new ArrayList<>();
+        for (String id : ids) {
+            if (page.size() >= pageSize) {
+                break;
+            }
+            if (startAfter == null || id.compareTo(startAfter) > 0) {
+                page.add(id);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void getFollowCounts(String userId, FirebaseDB.FirebaseCallback<FollowCounts> callback) {
+        FollowCounts counts;
+        synchronized (this) {
+            long followers = 0;
+            for (Set<String> followed : following.values()) {
+                if (followed.contains(userId)) {
+                    followers++;
+                }
+            }
+            Set<String> followed = following.get(userId);
+            counts = new FollowCounts(followers, followed != null ? followed.size() : 0);
+        }
+        callback.onCallback(counts);
+    }
+
+    @Override
+    public void unfollowUser(String followerId, String followedId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        boolean removed;
+        synchronized (this) {
+            Set<String> followed = following.get(followerId);
+            removed = followed != null;
+            if (removed) {
+                followed.remove(followedId);
+            }
+        }
+        if (removed) {
+            notifyFollowingChanged(followerId);
+        }
+        callback.onCallback(removed);
+    }
+
+    // Helpers (callers hold the monitor)
+
+    private Timestamp nextServerTime() {
+        lastServerTime = Math.max(lastServerTime + 1, System.currentTimeMillis());
+        return new Timestamp(new Date(lastServerTime));
+    }
+
+    private static boolean changedAfter(MoodEvent moodEvent, Timestamp since) {
+        return moodEvent.getServerUpdatedAt() != null
+                && (since == null || moodEvent.getServerUpdatedAt().compareTo(since) > 0);
+    }
+
+    private static long timeOf(MoodEvent event) {
+        Timestamp timestamp = event.getTimestamp();
+        return timestamp != null ? timestamp.toDate().getTime() : 0L;
+    }
+
+    /**
+     * Probe that sorts where the event with this timestamp and id does, or after
+     * every event at the timestamp if the id is null
+     */
+    private static MoodEvent cursorAt(Timestamp timestamp, String id) {
+        MoodEvent probe = new MoodEvent();
+        probe.setId(id != null ? id : "\uffff");
+        probe.setTimestamp(timestamp);
+        return probe;
+    }
+
+    /**
+     * Newest public events of each user, newest first overall
+     */
+    private List<MoodEvent> latestOf(Collection<String> userIds, int perUser) {
+        MoodQuery publicOnly = MoodQuery.publicOnly(null, null, null);
+        List<List<MoodEvent>> perUserEvents = new ArrayList<>();
+        for (String followedId : userIds) {
+            NavigableSet<MoodEvent> source = eventsByUser.get(followedId);
+            if (source == null) {
+                continue;
+            }
+            List<MoodEvent> latest = new ArrayList<>(perUser);
+            int taken = 0;
+            for (MoodEvent moodEvent : source) {
+                if (taken >= perUser) {
+                    break;
+                }
+                // As in a limited Firestore query, the residual is checked after the limit
+                if (publicOnly.matchesPushedDown(moodEvent)) {
+                    taken++;
+                    if (publicOnly.matchesResidual(moodEvent)) {
+                        latest.add(moodEvent);
+                    }
+                }
+            }
+            perUserEvents.add(latest);
+        }
+        return MoodEventMerge.mergeNewestFirst(perUserEvents);
+    }
+
+    private Map<String, MoodEvent> windowOf(Subscription subscription) {
+        Map<String, MoodEvent> window = new LinkedHashMap<>();
+        for (String userId : subscription.userIds) {
+            NavigableSet<MoodEvent> source = eventsByUser.get(userId);
+            if (source == null) {
+                continue;
+            }
+            int taken = 0;
+            for (MoodEvent moodEvent : source) {
+                if (taken >= subscription.limit) {
+                    break;
+                }
+                if (subscription.query.matchesPushedDown(moodEvent)) {
+                    taken++;
+                    if (subscription.query.matchesResidual(moodEvent)) {
+                        window.put(moodEvent.getId(), moodEvent);
+                    }
+                }
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Recompute every live window after a write and deliver the differences,
+     * outside the lock, as a snapshot listener would
+     */
+    private void dispatchChanges(String touchedId) {
+        List<Runnable> deliveries = new ArrayList<>();
+        synchronized (this) {
+            for (Subscription subscription : subscriptions) {
+                Map<String, MoodEvent> next = windowOf(subscription);
+                List<MoodChange> changes = new ArrayList<>();
+                for (Map.Entry<String, MoodEvent> entry : subscription.window.entrySet()) {
+                    if (!next.containsKey(entry.getKey())) {
+                        changes.add(new MoodChange(MoodChange.Type.REMOVED, entry.getValue()));
+                    }
+                }
+                for (Map.Entry<String, MoodEvent> entry : next.entrySet()) {
+                    if (!subscription.window.containsKey(entry.getKey())) {
+                        changes.add(new MoodChange(MoodChange.Type.ADDED, entry.getValue()));
+                    } else if (entry.getKey().equals(touchedId)) {
+                        changes.add(new MoodChange(MoodChange.Type.MODIFIED, entry.getValue()));
+                    }
+                }
+                subscription.window = next;
+                if (!changes.isEmpty()) {
+                    deliveries.add(() -> subscription.listener.onCallback(changes));
+                }
+            }
+        }
+        for (Runnable delivery : deliveries) {
+            delivery.run();
+        }
+    }
+
+    /**
+     * Tell the follow graph watchers of followerId, outside the lock
+     */
+    private void notifyFollowingChanged(String followerId) {
+        List<FirebaseDB.FirebaseCallback<List<String>>> watchers;
+        List<String> current;
+        synchronized (this) {
+            List<FirebaseDB.FirebaseCallback<List<String>>> registered = followingWatchers.get(followerId);
+            if (registered == null || registered.isEmpty()) {
+                return;
+            }
+            watchers = new ArrayList<>(registered);
+            Set<String> followed = following.get(followerId);
+            current = followed != null ? new ArrayList<>(followed) : new ArrayList<>();
+        }
+        for (FirebaseDB.FirebaseCallback<List<String>> watcher : watchers) {
+            watcher.onCallback(current);
+        }
+    }
+
+    private void removeEvent(String eventId) {
+        MoodEvent existing = eventsById.remove(eventId);
+        if (existing != null) {
+            NavigableSet<MoodEvent> userEvents = eventsByUser.get(existing.getUserID());
+            if (userEvents != null) {
+                userEvents.remove(existing);
+            }
+        }
+    }
+
+    private static void collect(NavigableSet<MoodEvent> source, MoodQuery query, List<MoodEvent> out) {
+        if (source == null) {
+            return;
+        }
+        Date startDate = query.getStartDate();
+        long startMillis = startDate != null ? startDate.getTime() : Long.MIN_VALUE;
+        for (MoodEvent moodEvent : source) {
+            // Sorted newest first, so everything after this is older too
+            if (timeOf(moodEvent) <= startMillis) {
+                break;
+            }
+            if (query.matches(moodEvent)) {
+                out.add(moodEvent);
+            }
+        }
+    }
+
+    private synchronized List<Map<String, Object>> requestsMatching(String field, String userId) {
+        List<Map<String, Object>> requests = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : followRequests.entrySet()) {
+            Map<String, Object> request = entry.getValue();
+            if (userId.equals(request.get(field)) && "pending".equals(request.get("status"))) {
+                Map<String, Object> requestData = new HashMap<>(request);
+                requestData.put("requestId", entry.getKey());
+                requests.add(requestData);
+            }
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.team_16.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.team_16.models.EmotionalState;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+import com.example.team_16.utils.Geohash;
+import com.google.firebase.Timestamp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * SQLite-backed MoodEventCache, plus the signed-in user's profile fields, so the
+ * app can show the last known state straight after process death.
+ *
+ * Each event is stored once as a serialized blob, next to indexed copies of the
+ * columns FilterFragment filters on: (userID, timestamp), emotionalState and a
+ * geohash of its location. Histories are sets of event ids read back newest
+ * first, so an event shown in both the personal and following history is stored
+ * once, and adding or removing one event writes only its own rows.
+ *
+ * Everything runs on a single thread, writes included, so a read always sees the
+ * writes queued before it. Writes are encoded on the caller's thread and return
+ * without waiting; reads hand their result to the delivery executor, the main
+ * thread in production.
+ */
+public class LocalMoodStore extends SQLiteOpenHelper implements MoodEventCache {
+
+    private static final String TAG = "LocalMoodStore";
+
+    private static final String DATABASE_NAME = "mood_events.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String EVENTS_TABLE = "mood_events";
+    private static final String MEMBERS_TABLE = "history_members";
+    private static final String WATERMARKS_TABLE = "history_watermarks";
+    private static final String PROFILES_TABLE = "profiles";
+
+    private static final String[] PROFILE_FIELDS = {"username", "fullName", "email", "profileImageUrl"};
+
+    private final Executor worker;
+    private final Executor delivery;
+
+    public LocalMoodStore(Context context) {
+        this(context, DATABASE_NAME, Executors.newSingleThreadExecutor(),
+                new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * @param name Database file name, or null for an in-memory database
+     * @param worker Runs every statement in submission order; tests pass a direct executor
+     * @param delivery Runs read callbacks
+     */
+    public LocalMoodStore(Context context, String name, Executor worker, Executor delivery) {
+        super(context, name, null, DATABASE_VERSION);
+        this.worker = worker;
+        this.delivery = delivery;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + EVENTS_TABLE + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "userID TEXT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "emotionalState TEXT, "
+                + "postType TEXT, "
+                + "trigger_lower TEXT, "
+                + "geohash TEXT, "
+                + "event BLOB NOT NULL)");
+        db.execSQL("CREATE INDEX idx_events_user_time ON " + EVENTS_TABLE + " (userID, timestamp DESC)");
+        db.execSQL("CREATE INDEX idx_events_state ON " + EVENTS_TABLE + " (emotionalState)");
+        db.execSQL("CREATE INDEX idx_events_geohash ON " + EVENTS_TABLE + " (geohash)");
+
+        db.execSQL("CREATE TABLE " + MEMBERS_TABLE + " ("
+                + "history TEXT NOT NULL, "
+                + "event_id TEXT NOT NULL, "
+                + "PRIMARY KEY (history, event_id))");
+        db.execSQL("CREATE INDEX idx_members_event ON " + MEMBERS_TABLE + " (event_id)");
+
+        db.execSQL("CREATE TABLE " + WATERMARKS_TABLE + " ("
+                + "history TEXT PRIMARY KEY, "
+                + "seconds INTEGER NOT NULL, "
+                + "nanos INTEGER NOT NULL, "
+                + "checked_at INTEGER NOT NULL)");
+
+        db.execSQL("CREATE TABLE " + PROFILES_TABLE + " ("
+                + "id TEXT PRIMARY KEY, "
+                + "username TEXT, "
+                + "fullName TEXT, "
+                + "email TEXT, "
+                + "profileImageUrl TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only a cache; the server has everything
+        db.execSQL("DROP TABLE IF EXISTS " + EVENTS_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + MEMBERS_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + WATERMARKS_TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + PROFILES_TABLE);
+        onCreate(db);
+    }
+
+    @Override
+    public void getHistory(String historyKey, FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        read(() -> {
+            try (Cursor cursor = getReadableDatabase().rawQuery(
+                    "SELECT e.event FROM " + MEMBERS_TABLE + " m JOIN " + EVENTS_TABLE + " e"
+                            + " ON e.id = m.event_id WHERE m.history = ? ORDER BY e.timestamp DESC, e.id",
+                    new String[]{historyKey})) {
+                return decodeAll(cursor);
+            }
+        }, events -> callback.onCallback(events != null ? events : new ArrayList<>()));
+    }
+
+    @Override
+    public void getWatermark(String historyKey, FirebaseDB.FirebaseCallback<Watermark> callback) {
+        read(() -> {
+            try (Cursor cursor = getReadableDatabase().query(WATERMARKS_TABLE,
+                    new String[]{"seconds", "nanos", "checked_at"}, "history = ?",
+                    new String[]{historyKey}, null, null, null)) {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                return new Watermark(new Timestamp(cursor.getLong(0), cursor.getInt(1)), cursor.getLong(2));
+            }
+        }, callback);
+    }
+
+    @Override
+    public void updateHistory(String historyKey, List<MoodEvent> upserted, Collection<String> removedIds,
+                              Watermark watermark) {
+        List<ContentValues> rows = new ArrayList<>(upserted.size());
+        for (MoodEvent event : upserted) {
+            ContentValues row = toRow(event);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        List<String> removed = new ArrayList<>(removedIds);
+        worker.execute(() -> writeHistory(historyKey, rows, removed, watermark));
+    }
+
+    private void writeHistory(String historyKey, List<ContentValues> rows, List<String> removedIds,
+                              Watermark watermark) {
+        try {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                try (SQLiteStatement member = db.compileStatement("INSERT OR IGNORE INTO "
+                        + MEMBERS_TABLE + " (history, event_id) VALUES (?, ?)")) {
+                    for (ContentValues row : rows) {
+                        db.insertWithOnConflict(EVENTS_TABLE, null, row, SQLiteDatabase.CONFLICT_REPLACE);
+                        member.bindString(1, historyKey);
+                        member.bindString(2, row.getAsString("id"));
+                        member.executeInsert();
+                    }
+                }
+                try (SQLiteStatement member = db.compileStatement("DELETE FROM " + MEMBERS_TABLE
+                        + " WHERE history = ? AND event_id = ?");
+                     SQLiteStatement orphan = db.compileStatement("DELETE FROM " + EVENTS_TABLE
+                             + " WHERE id = ? AND NOT EXISTS (SELECT 1 FROM " + MEMBERS_TABLE
+                             + " WHERE event_id = ?)")) {
+                    for (String id : removedIds) {
+                        member.bindString(1, historyKey);
+                        member.bindString(2, id);
+                        member.executeUpdateDelete();
+                        // Only if no other history still shows it
+                        orphan.bindString(1, id);
+                        orphan.bindString(2, id);
+                        orphan.executeUpdateDelete();
+                    }
+                }
+
+                if (watermark != null && watermark.value != null) {
+                    ContentValues mark = new ContentValues();
+                    mark.put("history", historyKey);
+                    mark.put("seconds", watermark.value.getSeconds());
+                    mark.put("nanos", watermark.value.getNanoseconds());
+                    mark.put("checked_at", watermark.checkedAt);
+                    db.insertWithOnConflict(WATERMARKS_TABLE, null, mark, SQLiteDatabase.CONFLICT_REPLACE);
+                } else {
+                    db.delete(WATERMARKS_TABLE, "history = ?", new String[]{historyKey});
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error writing history " + historyKey, e);
+        }
+    }
+
+    @Override
+    public void query(List<String> historyKeys, MoodQuery query, List<String> geohashCells,
+                      FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        if (historyKeys.isEmpty() || (geohashCells != null && geohashCells.isEmpty())) {
+            callback.onCallback(new ArrayList<>());
+            return;
+        }
+        StringBuilder sql = new StringBuilder("SELECT DISTINCT e.event, e.timestamp FROM ")
+                .append(EVENTS_TABLE).append(" e JOIN ").append(MEMBERS_TABLE)
+                .append(" m ON m.event_id = e.id WHERE m.history IN (");
+        List<String> args = new ArrayList<>(historyKeys);
+        for (int i = 0; i < historyKeys.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(")");
+
+        if (query != null) {
+            if (query.getPostType() != null) {
+                sql.append(" AND e.postType = ? COLLATE NOCASE");
+                args.add(query.getPostType());
+            }
+            if (query.getEmotionalState() != null && query.getEmotionalState().getName() != null) {
+                sql.append(" AND e.emotionalState = ?");
+                args.add(query.getEmotionalState().getName());
+            }
+            if (query.getStartDate() != null) {
+                sql.append(" AND e.timestamp > ?");
+                args.add(String.valueOf(query.getStartDate().getTime()));
+            }
+            if (query.getSearchText() != null) {
+                sql.append(" AND instr(e.trigger_lower, ?) > 0");
+                args.add(query.getSearchText());
+            }
+        }
+        if (geohashCells != null) {
+            // Prefix ranges, so the geohash index serves the lookup; '{' sorts after every base32 digit
+            sql.append(" AND (");
+            for (int i = 0; i < geohashCells.size(); i++) {
+                sql.append(i == 0 ? "" : " OR ").append("(e.geohash >= ? AND e.geohash < ?)");
+                args.add(geohashCells.get(i));
+                args.add(geohashCells.get(i) + "{");
+            }
+            sql.append(")");
+        }
+        sql.append(" ORDER BY e.timestamp DESC");
+
+        read(() -> {
+            try (Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]))) {
+                return decodeAll(cursor);
+            }
+        }, events -> callback.onCallback(events != null ? events : new ArrayList<>()));
+    }
+
+    @Override
+    public void clear() {
+        worker.execute(() -> {
+            try {
+                SQLiteDatabase db = getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    db.delete(MEMBERS_TABLE, null, null);
+                    db.delete(EVENTS_TABLE, null, null);
+                    db.delete(WATERMARKS_TABLE, null, null);
+                    db.delete(PROFILES_TABLE, null, null);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error clearing local store", e);
+            }
+        });
+    }
+
+    /**
+     * Remember a user's profile fields, as read from their user document
+     */
+    public void putProfile(String userId, Map<String, Object> userData) {
+        ContentValues row = new ContentValues();
+        row.put("id", userId);
+        for (String field : PROFILE_FIELDS) {
+            Object value = userData.get(field);
+            row.put(field, value instanceof String ? (String) value : null);
+        }
+        worker.execute(() -> {
+            try {
+                getWritableDatabase().insertWithOnConflict(PROFILES_TABLE, null, row,
+                        SQLiteDatabase.CONFLICT_REPLACE);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error saving profile " + userId, e);
+            }
+        });
+    }
+
+    /**
+     * @param callback Receives the profile fields last saved for userId, keyed like the
+     *                 user document, or null
+     */
+    public void getProfile(String userId, FirebaseDB.FirebaseCallback<Map<String, Object>> callback) {
+        read(() -> {
+            try (Cursor cursor = getReadableDatabase().query(PROFILES_TABLE, PROFILE_FIELDS,
+                    "id = ?", new String[]{userId}, null, null, null)) {
+                if (!cursor.moveToFirst()) {
+                    return null;
+                }
+                Map<String, Object> userData = new HashMap<>();
+                for (int i = 0; i < PROFILE_FIELDS.length; i++) {
+                    userData.put(PROFILE_FIELDS[i], cursor.isNull(i) ? null : cursor.getString(i));
+                }
+                return userData;
+            }
+        }, callback);
+    }
+
+    /**
+     * Run a read on the worker thread, after every write queued so far, and hand
+     * the result to the delivery executor
+     *
+     * @param callback Receives the result, or null if it failed
+     */
+    private <T> void read(Callable<T> reader, FirebaseDB.FirebaseCallback<T> callback) {
+        worker.execute(() -> {
+            T result = null;
+            try {
+                result = reader.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Error reading local store", e);
+            }
+            T delivered = result;
+            delivery.execute(() -> callback.onCallback(delivered));
+        });
+    }
+
+    private static ContentValues toRow(MoodEvent event) {
+        if (event.getId() == null) {
+            return null;
+        }
+        byte[] blob;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(event);
+            }
+            blob = bytes.toByteArray();
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding event " + event.getId(), e);
+            return null;
+        }
+
+        ContentValues row = new ContentValues();
+        row.put("id", event.getId());
+        row.put("userID", event.getUserID());
+        // Pending server timestamps sort first, as they do in MoodHistory
+        row.put("timestamp", event.getTimestamp() != null
+                ? event.getTimestamp().toDate().getTime() : Long.MAX_VALUE);
+        row.put("emotionalState", event.getEmotionalState() != null ? event.getEmotionalState().getName() : null);
+        row.put("postType", event.getPostType());
+        row.put("trigger_lower", event.getTrigger() != null ? event.getTrigger().toLowerCase() : null);
+        row.put("geohash", event.hasLocation()
+                ? Geohash.encode(event.getLatitude(), event.getLongitude(), Geohash.MAX_PRECISION) : null);
+        row.put("event", blob);
+        return row;
+    }
+
+    private static List<MoodEvent> decodeAll(Cursor cursor) {
+        List<MoodEvent> events = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(cursor.getBlob(0)))) {
+                MoodEvent event = (MoodEvent) in.readObject();
+                // Back to the shared registry instance, which MoodEvent.equals compares by reference
+                EmotionalState state = event.getEmotionalState();
+                if (state != null && EmotionalStateRegistry.getByName(state.getName()) != null) {
+                    event.setEmotionalState(EmotionalStateRegistry.getByName(state.getName()));
+                }
+                events.add(event);
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                Log.e(TAG, "Skipping unreadable cached event", e);
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+
+/**
+ * One delta from a live mood event query. Repositories report changes without
+ * positions; MoodHistory re-issues them with the indices at which it applied
+ * each change, so adapters can dispatch them in order.
+ */
+public final class MoodChange {
+
+    public enum Type {
+        ADDED,
+        MODIFIED,
+        REMOVED
+    }
+
+    private final Type type;
+    private final MoodEvent event;
+    private final int oldIndex;
+    private final int newIndex;
+
+    public MoodChange(Type type, MoodEvent event) {
+        this(type, event, -1, -1);
+    }
+
+    /**
+     * @param oldIndex Position before the change, or -1 for ADDED
+     * @param newIndex Position after the change, or -1 for REMOVED
+     */
+    public MoodChange(Type type, MoodEvent event, int oldIndex, int newIndex) {
+        this.type = type;
+        this.event = event;
+        this.oldIndex = oldIndex;
+        this.newIndex = newIndex;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public MoodEvent getEvent() {
+        return event;
+    }
+
+    public int getOldIndex() {
+        return oldIndex;
+    }
+
+    public int getNewIndex() {
+        return newIndex;
+    }
+}
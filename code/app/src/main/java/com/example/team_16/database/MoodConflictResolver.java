@@ -0,0 +1,113 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Reconciles queued offline writes with the server copy of the event when they are flushed.
+ *
+ * Each queued UPDATE or DELETE remembers the copy it was based on. If the server
+ * version still matches that base, nobody else wrote in between and the queued write
+ * goes out unchanged. Otherwise an UPDATE is merged field by field against the base:
+ * a field changed on only one side keeps that change, and a field changed on both
+ * sides goes to whichever write has the later updatedAt. A DELETE loses to an edit
+ * made elsewhere after it.
+ */
+public final class MoodConflictResolver {
+
+    private MoodConflictResolver() {
+    }
+
+    /**
+     * @param operation Queued write
+     * @param server Current server copy of the event, or null if it does not exist
+     * @return The write to commit, or null if the server copy should be left as it is
+     */
+    public static MoodOperation resolve(MoodOperation operation, MoodEvent server) {
+        switch (operation.getType()) {
+            case ADD:
+                return operation;
+            case DELETE:
+                if (server == null) {
+                    // Already gone
+                    return null;
+                }
+                if (changedSince(operation.getBase(), server)
+                        && server.getUpdatedAt() > operation.getEvent().getUpdatedAt()) {
+                    // Edited elsewhere after we deleted it
+                    return null;
+                }
+                return operation;
+            case UPDATE:
+            default:
+                if (server == null) {
+                    // Deleted elsewhere; editing it would fail anyway
+                    return null;
+                }
+                MoodEvent merged = merge(operation.getBase(), operation.getEvent(), server);
+                return merged != null ? MoodOperation.update(merged, operation.getBase()) : null;
+        }
+    }
+
+    /**
+     * Three-way merge of a local edit with the server copy
+     *
+     * @param base Copy the local edit started from, or null if unknown
+     * @return The event to write, or null if the server copy wins outright
+     */
+    public static MoodEvent merge(MoodEvent base, MoodEvent local, MoodEvent server) {
+        if (!changedSince(base, server)) {
+            return local;
+        }
+        boolean localWins = local.getUpdatedAt() >= server.getUpdatedAt();
+        if (base == null) {
+            // Without a base there is no telling which fields changed, so the newer write wins
+            return localWins ? local : null;
+        }
+
+        MoodEvent merged = new MoodEvent();
+        merged.setId(server.getId());
+        merged.setUserID(server.getUserID());
+        merged.setTimestamp(server.getTimestamp());
+        merged.setAuthor(server.getAuthor());
+        mergeField(base, local, server, merged, localWins, MoodEvent::getEmotionalState, MoodEvent::setEmotionalState);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getTrigger, MoodEvent::setTrigger);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getSocialSituation, MoodEvent::setSocialSituation);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getLatitude, MoodEvent::setLatitude);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getLongitude, MoodEvent::setLongitude);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getPlaceName, MoodEvent::setPlaceName);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getPhotoUrl, MoodEvent::setPhotoUrl);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getPhotoFilename, MoodEvent::setPhotoFilename);
+        mergeField(base, local, server, merged, localWins, MoodEvent::getPostType, MoodEvent::setPostType);
+        merged.setUpdatedAt(Math.max(local.getUpdatedAt(), server.getUpdatedAt()));
+        merged.setVersion(Math.max(local.getVersion(), server.getVersion()) + 1);
+        return merged;
+    }
+
+    /**
+     * @return true if the server copy may have been written since base was read
+     */
+    private static boolean changedSince(MoodEvent base, MoodEvent server) {
+        return base == null || server.getVersion() != base.getVersion();
+    }
+
+    private static <T> void mergeField(MoodEvent base, MoodEvent local, MoodEvent server, MoodEvent merged,
+                                       boolean localWins,
+                                       Function<MoodEvent, T> getter,
+                                       BiConsumer<MoodEvent, T> setter) {
+        T baseValue = getter.apply(base);
+        T localValue = getter.apply(local);
+        T serverValue = getter.apply(server);
+
+        boolean localChanged = !Objects.equals(baseValue, localValue);
+        boolean serverChanged = !Objects.equals(baseValue, serverValue);
+        if (localChanged && (!serverChanged || localWins)) {
+            setter.accept(merged, localValue);
+        } else {
+            setter.accept(merged, serverValue);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.Timestamp;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * On-device copy of the mood histories last seen, so screens can render before
+ * the network answers. A history is named by a key such as "personal:" + userId
+ * and holds events newest first. Reads answer through a callback, so they never
+ * block the caller. Implemented by LocalMoodStore in production.
+ */
+public interface MoodEventCache {
+
+    /**
+     * Delta refresh position saved with a personal history
+     */
+    final class Watermark {
+        public final Timestamp value;
+        public final long checkedAt;
+
+        public Watermark(Timestamp value, long checkedAt) {
+            this.value = value;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    /**
+     * @param callback Receives the cached events of a history, newest first; empty if none
+     */
+    void getHistory(String historyKey, FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * @param callback Receives the watermark saved with a history, or null if none
+     */
+    void getWatermark(String historyKey, FirebaseDB.FirebaseCallback<Watermark> callback);
+
+    /**
+     * Store the given events in a history, replacing older copies, and drop removedIds
+     * from it, saving the watermark with them as one atomic write. Events not named
+     * are left as they are.
+     *
+     * @param watermark Delta refresh position, or null for histories without one
+     */
+    void updateHistory(String historyKey, List<MoodEvent> upserted, Collection<String> removedIds,
+                       Watermark watermark);
+
+    /**
+     * Find the events of the given histories matching a query
+     *
+     * @param query Time, emotional state, post type and trigger filters
+     * @param geohashCells Only return events located in one of these cells, or null for any
+     * @param callback Receives the matching events, newest first
+     */
+    void query(List<String> historyKeys, MoodQuery query, List<String> geohashCells,
+               FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Forget every history, e.g. on logout
+     */
+    void clear();
+}
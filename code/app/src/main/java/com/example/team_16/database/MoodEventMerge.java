@@ -0,0 +1,76 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Helpers for splitting fan-out queries and merging their results back into
+ * a single newest-first stream.
+ */
+public final class MoodEventMerge {
+
+    private MoodEventMerge() {
+    }
+
+    /**
+     * Split ids into consecutive chunks of at most chunkSize
+     */
+    public static <T> List<List<T>> chunk(Collection<T> ids, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        List<T> current = new ArrayList<>(chunkSize);
+        for (T id : ids) {
+            current.add(id);
+            if (current.size() == chunkSize) {
+                chunks.add(current);
+                current = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * K-way merge of lists that are each already sorted newest first.
+     * Events without a timestamp (pending server writes) sort first.
+     *
+     * @param sortedLists Per-query results, each ordered by timestamp descending
+     * @return One list ordered by timestamp descending
+     */
+    public static List<MoodEvent> mergeNewestFirst(List<List<MoodEvent>> sortedLists) {
+        int total = 0;
+        // Each heap entry is {list index, position within that list}
+        PriorityQueue<int[]> heap = new PriorityQueue<>(Math.max(1, sortedLists.size()), (a, b) ->
+                Long.compare(timeOf(sortedLists.get(b[0]).get(b[1])), timeOf(sortedLists.get(a[0]).get(a[1]))));
+        for (int i = 0; i < sortedLists.size(); i++) {
+            List<MoodEvent> list = sortedLists.get(i);
+            total += list.size();
+            if (!list.isEmpty()) {
+                heap.add(new int[]{i, 0});
+            }
+        }
+
+        List<MoodEvent> merged = new ArrayList<>(total);
+        while (!heap.isEmpty()) {
+            int[] head = heap.poll();
+            List<MoodEvent> list = sortedLists.get(head[0]);
+            merged.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                head[1]++;
+                heap.add(head);
+            }
+        }
+        return merged;
+    }
+
+    private static long timeOf(MoodEvent event) {
+        Timestamp timestamp = event.getTimestamp();
+        return timestamp != null ? timestamp.toDate().getTime() : Long.MAX_VALUE;
+    }
+}
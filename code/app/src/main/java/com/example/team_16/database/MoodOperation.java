@@ -0,0 +1,156 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single mood event write, grouped with others into batches by
+ * MoodRepository.commitBatch.
+ */
+public final class MoodOperation {
+
+    // Firestore rejects WriteBatches with more writes than this
+    public static final int MAX_BATCH_SIZE = 500;
+
+    public enum Type {
+        ADD,
+        UPDATE,
+        DELETE
+    }
+
+    private final Type type;
+    private final MoodEvent event;
+    private final MoodEvent base;
+
+    public MoodOperation(Type type, MoodEvent event) {
+        this(type, event, null);
+    }
+
+    /**
+     * @param base Server copy the write was made against, for conflict resolution; null if unknown
+     */
+    public MoodOperation(Type type, MoodEvent event, MoodEvent base) {
+        this.type = type;
+        this.event = event;
+        this.base = base;
+    }
+
+    public static MoodOperation add(MoodEvent event) {
+        return new MoodOperation(Type.ADD, event);
+    }
+
+    public static MoodOperation update(MoodEvent event) {
+        return new MoodOperation(Type.UPDATE, event);
+    }
+
+    public static MoodOperation update(MoodEvent event, MoodEvent base) {
+        return new MoodOperation(Type.UPDATE, event, base);
+    }
+
+    public static MoodOperation delete(MoodEvent event) {
+        return new MoodOperation(Type.DELETE, event);
+    }
+
+    public static MoodOperation delete(MoodEvent event, MoodEvent base) {
+        return new MoodOperation(Type.DELETE, event, base);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public MoodEvent getEvent() {
+        return event;
+    }
+
+    public String getEventId() {
+        return event.getId();
+    }
+
+    public MoodEvent getBase() {
+        return base;
+    }
+
+    /**
+     * Collapse two operations on the same event into the single write with the same
+     * end result. Every operation carries the full event, so the later one's data wins.
+     * The merged write keeps the earliest known base, the last copy the server saw.
+     *
+     * @param earlier Operation queued first, or null
+     * @param later Operation queued after it
+     * @return The combined operation, or null if the two cancel out
+     */
+    public static MoodOperation merge(MoodOperation earlier, MoodOperation later) {
+        if (earlier == null) {
+            return later;
+        }
+        MoodEvent base = earlier.getType() == Type.ADD ? null
+                : earlier.getBase() != null ? earlier.getBase() : later.getBase();
+        switch (later.getType()) {
+            case ADD:
+                // An add writes the whole document whatever was there before
+                return later;
+            case UPDATE:
+                if (earlier.getType() == Type.DELETE) {
+                    // Updating a deleted event would fail anyway
+                    return earlier;
+                }
+                return new MoodOperation(earlier.getType(), later.getEvent(), base);
+            case DELETE:
+            default:
+                // Never reached the server, so there is nothing to delete
+                return earlier.getType() == Type.ADD ? null : new MoodOperation(Type.DELETE, later.getEvent(), base);
+        }
+    }
+
+    /**
+     * Fold operations into a queue keyed by event id, in the order events were first touched
+     *
+     * @param queue Pending operations, at most one per event id; updated in place
+     */
+    public static void enqueue(Map<String, MoodOperation> queue, MoodOperation operation) {
+        MoodOperation merged = merge(queue.get(operation.getEventId()), operation);
+        if (merged == null) {
+            queue.remove(operation.getEventId());
+        } else {
+            queue.put(operation.getEventId(), merged);
+        }
+    }
+
+    /**
+     * @return One operation per event id with the same end result as applying operations in order
+     */
+    public static List<MoodOperation> coalesce(List<MoodOperation> operations) {
+        Map<String, MoodOperation> queue = new LinkedHashMap<>();
+        for (MoodOperation operation : operations) {
+            enqueue(queue, operation);
+        }
+        return new ArrayList<>(queue.values());
+    }
+
+    /**
+     * Outcome of one committed batch. Batches are atomic, so every operation
+     * in a failed batch was not applied.
+     */
+    public static final class BatchResult {
+        private final List<MoodOperation> operations;
+        private final boolean successful;
+
+        public BatchResult(List<MoodOperation> operations, boolean successful) {
+            this.operations = operations;
+            this.successful = successful;
+        }
+
+        public List<MoodOperation> getOperations() {
+            return operations;
+        }
+
+        public boolean isSuccessful() {
+            return successful;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.team_16.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.team_16.models.MoodEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of queued MoodOperations, so offline changes survive process death.
+ *
+ * Each record is [int length][int crc32][byte type][serialized event and base], where
+ * length and crc cover everything after them. Records are encoded on the caller's thread
+ * and written and fsync'd on a single writer thread, so append costs the caller only
+ * the encoding. A crash mid-write leaves a torn last record, which replay detects by
+ * its length or checksum and cuts off. Replay reads on the writer thread too and hands
+ * the operations to the delivery executor.
+ */
+public class MoodOperationJournal {
+
+    private static final String TAG = "MoodOperationJournal";
+
+    // Anything larger is a corrupt length field rather than a real event
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final File file;
+    private final Executor writer;
+    private final Executor delivery;
+
+    // Only touched on the writer thread, which holds the monitor
+    private FileOutputStream out;
+
+    public MoodOperationJournal(File file) {
+        this(file, Executors.newSingleThreadExecutor(), new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * @param writer Runs writes in submission order and delivers replays; tests pass a
+     *               direct executor
+     */
+    public MoodOperationJournal(File file, Executor writer) {
+        this(file, writer, writer);
+    }
+
+    /**
+     * @param writer Runs reads and writes in submission order
+     * @param delivery Runs replay callbacks
+     */
+    public MoodOperationJournal(File file, Executor writer, Executor delivery) {
+        this.file = file;
+        this.writer = writer;
+        this.delivery = delivery;
+    }
+
+    /**
+     * Replay on the writer thread. Appends made after this call land after the records
+     * it reads, so none are delivered twice or missed.
+     */
+    public void replay(FirebaseDB.FirebaseCallback<List<MoodOperation>> callback) {
+        writer.execute(() -> {
+            List<MoodOperation> operations = replay();
+            delivery.execute(() -> callback.onCallback(operations));
+        });
+    }
+
+    /**
+     * Read back every intact operation in the order it was appended, truncating any
+     * torn record left at the end by a crash
+     */
+    public synchronized List<MoodOperation> replay() {
+        List<MoodOperation> operations = new ArrayList<>();
+        if (!file.exists()) {
+            return operations;
+        }
+
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 1 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                int crc = in.readInt();
+                byte[] record = new byte[length];
+                in.readFully(record);
+                if (crc != checksum(record)) {
+                    break;
+                }
+                operations.add(decode(record));
+                validLength += 8 + length;
+            }
+        } catch (EOFException e) {
+            // Torn record at the tail
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            Log.e(TAG, "Error replaying journal, keeping intact prefix", e);
+        }
+
+        if (validLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+            } catch (IOException e) {
+                Log.e(TAG, "Error truncating torn journal record", e);
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Append one operation. Returns once it is encoded; the write happens on the writer thread.
+     */
+    public void append(MoodOperation operation) {
+        byte[] record;
+        try {
+            record = encode(operation);
+        } catch (IOException e) {
+            Log.e(TAG, "Error encoding journal record", e);
+            return;
+        }
+        writer.execute(() -> write(record));
+    }
+
+    /**
+     * Replace the journal with just the given operations, e.g. whatever is still
+     * pending after a sync. The new file is written beside the old one and renamed
+     * over it, so a crash leaves either the old or the new journal intact.
+     */
+    public void compact(List<MoodOperation> remaining) {
+        List<byte[]> records = new ArrayList<>();
+        for (MoodOperation operation : remaining) {
+            try {
+                records.add(encode(operation));
+            } catch (IOException e) {
+                Log.e(TAG, "Error encoding journal record", e);
+            }
+        }
+        writer.execute(() -> rewrite(records));
+    }
+
+    private synchronized void write(byte[] record) {
+        try {
+            if (out == null) {
+                File parent = file.getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+                out = new FileOutputStream(file, true);
+            }
+            out.write(record);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error appending to journal", e);
+            closeQuietly();
+        }
+    }
+
+    private synchronized void rewrite(List<byte[]> records) {
+        closeQuietly();
+        if (records.isEmpty()) {
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "Error deleting compacted journal");
+            }
+            return;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream tempOut = new FileOutputStream(temp)) {
+            for (byte[] record : records) {
+                tempOut.write(record);
+            }
+            tempOut.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing compacted journal", e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.e(TAG, "Error replacing journal with compacted copy");
+            temp.delete();
+        }
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.e(TAG, "Error closing journal", e);
+            }
+            out = null;
+        }
+    }
+
+    private static byte[] encode(MoodOperation operation) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        body.write(operation.getType().ordinal());
+        try (ObjectOutputStream objects = new ObjectOutputStream(body)) {
+            objects.writeObject(operation.getEvent());
+            objects.writeObject(operation.getBase());
+        }
+        byte[] payload = body.toByteArray();
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(payload.length + 8);
+        DataOutputStream header = new DataOutputStream(framed);
+        header.writeInt(payload.length);
+        header.writeInt(checksum(payload));
+        header.write(payload);
+        return framed.toByteArray();
+    }
+
+    private static MoodOperation decode(byte[] record) throws IOException, ClassNotFoundException {
+        MoodOperation.Type type = MoodOperation.Type.values()[record[0]];
+        try (ObjectInputStream objects = new ObjectInputStream(
+                new ByteArrayInputStream(record, 1, record.length - 1))) {
+            MoodEvent event = (MoodEvent) objects.readObject();
+            MoodEvent base = (MoodEvent) objects.readObject();
+            return new MoodOperation(type, event, base);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
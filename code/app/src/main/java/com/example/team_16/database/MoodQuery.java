@@ -0,0 +1,126 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.EmotionalState;
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.firestore.Query;
+
+import java.util.Date;
+
+/**
+ * Filter specification for mood event queries, split into the predicates that
+ * Firestore can evaluate server-side and the residual that must run on the client.
+ *
+ * Pushed down: postType, emotionalState.name, timestamp lower bound (plus the
+ * timestamp ordering). Residual: trigger substring, since Firestore has no
+ * contains operator, and tombstones, since events stored before tombstones
+ * existed have no deleted field to filter on. A tombstone's postType is
+ * POST_TYPE_DELETED, so public-only queries drop it server-side all the same.
+ * Every combination is backed by a composite index in firestore.indexes.json.
+ */
+public final class MoodQuery {
+
+    public static final String POST_TYPE_PUBLIC = "Public";
+    public static final String POST_TYPE_DELETED = "Deleted";
+
+    private final String postType;
+    private final Date startDate;
+    private final EmotionalState emotionalState;
+    private final String searchText;
+
+    /**
+     * @param postType Only return events with this postType, or null for any
+     * @param startDate Only return events newer than this, or null for all time
+     * @param emotionalState Only return events with this emotional state, or null for any
+     * @param searchText Only return events whose trigger contains this text (case-insensitive), or null
+     */
+    public MoodQuery(String postType, Date startDate, EmotionalState emotionalState, String searchText) {
+        this.postType = postType;
+        this.startDate = startDate;
+        this.emotionalState = emotionalState;
+        this.searchText = searchText != null && !searchText.isEmpty() ? searchText.toLowerCase() : null;
+    }
+
+    /**
+     * Query for events visible to followers
+     */
+    public static MoodQuery publicOnly(Date startDate, EmotionalState emotionalState, String searchText) {
+        return new MoodQuery(POST_TYPE_PUBLIC, startDate, emotionalState, searchText);
+    }
+
+    public String getPostType() {
+        return postType;
+    }
+
+    public Date getStartDate() {
+        return startDate;
+    }
+
+    public EmotionalState getEmotionalState() {
+        return emotionalState;
+    }
+
+    public String getSearchText() {
+        return searchText;
+    }
+
+    /**
+     * Add the server-side predicates and newest-first ordering to a base query
+     * that already constrains userID
+     */
+    public Query applyTo(Query query) {
+        if (postType != null) {
+            query = query.whereEqualTo("postType", postType);
+        }
+        if (emotionalState != null && emotionalState.getName() != null) {
+            query = query.whereEqualTo("emotionalState.name", emotionalState.getName());
+        }
+        if (startDate != null) {
+            query = query.whereGreaterThan("timestamp", startDate);
+        }
+        return query.orderBy("timestamp", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * @return true if a residual predicate must still be checked on the client
+     */
+    public boolean hasResidual() {
+        return searchText != null;
+    }
+
+    /**
+     * Client-side predicate for whatever applyTo could not push down
+     */
+    public boolean matchesResidual(MoodEvent event) {
+        if (event.isDeleted()) {
+            return false;
+        }
+        if (searchText == null) {
+            return true;
+        }
+        return event.getTrigger() != null && event.getTrigger().toLowerCase().contains(searchText);
+    }
+
+    /**
+     * Full predicate, for backends that evaluate everything locally
+     */
+    public boolean matches(MoodEvent event) {
+        return matchesPushedDown(event) && matchesResidual(event);
+    }
+
+    /**
+     * The predicates applyTo hands to Firestore, i.e. what counts toward a limit
+     */
+    public boolean matchesPushedDown(MoodEvent event) {
+        if (postType != null && !postType.equalsIgnoreCase(event.getPostType())) {
+            return false;
+        }
+        if (emotionalState != null && !emotionalState.equals(event.getEmotionalState())) {
+            return false;
+        }
+        if (startDate != null && (event.getTimestamp() == null
+                || !event.getTimestamp().toDate().after(startDate))) {
+            return false;
+        }
+        return true;
+    }
+}
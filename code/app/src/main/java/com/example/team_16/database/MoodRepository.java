@@ -0,0 +1,179 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.Comment;
+import com.example.team_16.models.EmotionalState;
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ListenerRegistration;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage-agnostic access to mood events and their comments.
+ * FirebaseDB is the production implementation; InMemoryMoodRepository
+ * backs offline benchmarks and load tests.
+ */
+public interface MoodRepository {
+
+    /**
+     * Tombstones of deleted events are kept at least this long. A history that has not
+     * fetched changes for longer may have missed deletions and must reload in full.
+     */
+    long TOMBSTONE_TTL_MS = 30L * 24 * 60 * 60 * 1000;
+
+    /**
+     * Check if the backing store is currently reachable
+     */
+    boolean isOnline();
+
+    /**
+     * Add a mood event
+     */
+    void addMoodEvent(MoodEvent moodEvent, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    /**
+     * Get a user's mood events matching a query, newest first
+     */
+    void queryMoodEvents(String userId,
+                         MoodQuery query,
+                         FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Get a user's mood events with filtering, newest first
+     */
+    default void getMoodEvents(String userId,
+                               Date startDate,
+                               EmotionalState emotionalState,
+                               String searchText,
+                               FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        queryMoodEvents(userId, new MoodQuery(null, startDate, emotionalState, searchText), callback);
+    }
+
+    /**
+     * Get one page of a user's mood events, newest first. Tombstones are included so
+     * page sizes stay exact; callers drop events whose isDeleted is set.
+     *
+     * @param userId Owner of the events
+     * @param startAfter Timestamp of the last event of the previous page, or null for the first page
+     * @param startAfterId Id of the last event of the previous page; events with the same
+     *                     timestamp are ordered by id
+     * @param pageSize Maximum number of events to return
+     * @param callback Receives the page; fewer than pageSize events means there are no more pages
+     */
+    void getMoodEventsPage(String userId,
+                           Timestamp startAfter,
+                           String startAfterId,
+                           int pageSize,
+                           FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Get a user's mood events written after a watermark, oldest change first,
+     * including tombstones of deleted events. Costs one read per change, so a
+     * refresh with nothing new is close to free.
+     *
+     * @param since serverUpdatedAt of the newest change already seen
+     * @param callback Receives the changed events, or null if they could not be read
+     */
+    void getMoodEventsChangedSince(String userId,
+                                   Timestamp since,
+                                   FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Count a user's mood events without downloading them
+     */
+    void countMoodEvents(String userId, FirebaseDB.FirebaseCallback<Long> callback);
+
+    /**
+     * Get mood events matching a query for the users followed by userId, newest first
+     */
+    void queryFollowingMoodEvents(String userId,
+                                  MoodQuery query,
+                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Get the newest public events of each user followed by userId, merged newest first.
+     * Cost scales with followees x perUser rather than with everything they ever posted.
+     *
+     * @param perUser Maximum number of events to take from each followee
+     */
+    void getLatestFollowingMoodEvents(String userId,
+                                      int perUser,
+                                      FirebaseDB.FirebaseCallback<List<MoodEvent>> callback);
+
+    /**
+     * Keep the newest events of one user live. The listener first receives the
+     * current window as ADDED changes, then only the deltas. Events that slide
+     * past the limit when newer ones arrive are reported as REMOVED.
+     *
+     * @param limit Size of the live window
+     * @return Registration to remove when the history is no longer needed
+     */
+    ListenerRegistration listenMoodEvents(String userId,
+                                          int limit,
+                                          FirebaseDB.FirebaseCallback<List<MoodChange>> listener);
+
+    /**
+     * Live version of getLatestFollowingMoodEvents. Follows, unfollows and accepted
+     * requests are picked up as they happen: new followees' events are reported as
+     * ADDED, dropped followees' as REMOVED. With more than
+     * FollowingWindow.MAX_LIVE_FOLLOWEES followees the window is only re-read when
+     * the follow graph changes; see FollowingWindow.isLive().
+     *
+     * @return Registration to remove when the history is no longer needed
+     */
+    FollowingWindow listenLatestFollowingMoodEvents(String userId,
+                                                    int perUser,
+                                                    FirebaseDB.FirebaseCallback<List<MoodChange>> listener);
+
+    /**
+     * Get mood events for the users followed by userId
+     */
+    default void getFollowingMoodEvents(String userId,
+                                        Date startDate,
+                                        EmotionalState emotionalState,
+                                        String searchText,
+                                        FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        queryFollowingMoodEvents(userId, new MoodQuery(null, startDate, emotionalState, searchText), callback);
+    }
+
+    /**
+     * Get mood event from known id
+     */
+    void getMoodEventFromID(String id, FirebaseDB.FirebaseCallback<MoodEvent> callback);
+
+    /**
+     * Get the current copies of several mood events in as few reads as possible
+     *
+     * @param callback Receives events keyed by id, without ids that do not exist,
+     *                 or null if they could not all be read
+     */
+    void getMoodEventsByIds(Collection<String> ids, FirebaseDB.FirebaseCallback<Map<String, MoodEvent>> callback);
+
+    /**
+     * Update a mood event
+     */
+    void updateMoodEvent(String eventId, MoodEvent updates, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    /**
+     * Delete a mood event, leaving a tombstone that delta refreshes pick up
+     */
+    void deleteMoodEvent(String eventId, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    /**
+     * Apply adds, updates and deletes in atomic batches of at most MoodOperation.MAX_BATCH_SIZE
+     *
+     * @param operations Writes to apply, in order
+     * @param callback Receives one result per batch, in submission order
+     */
+    void commitBatch(List<MoodOperation> operations,
+                     FirebaseDB.FirebaseCallback<List<MoodOperation.BatchResult>> callback);
+
+    void addCommentToMoodEvent(String moodEventId, Comment comment, FirebaseDB.FirebaseCallback<Comment> callback);
+
+    void deleteCommentFromMoodEvent(String moodEventId, String commentId, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    void fetchCommentsForMoodEvent(String moodEventId, FirebaseDB.FirebaseCallback<List<Comment>> callback);
+}
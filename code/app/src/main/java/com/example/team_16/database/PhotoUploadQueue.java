@@ -0,0 +1,378 @@
+package com.example.team_16.database;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Photos waiting to be uploaded, kept in app storage so they survive going
+ * offline and process death.
+ *
+ * Each photo is staged as [id].jpg with an [id].properties file naming its mood
+ * event and storage path; both are written beside their final name and renamed
+ * into place, and the properties go last, so a crash never leaves a half-staged
+ * photo that looks complete. A SyncScheduler drives uploads, at most
+ * MAX_CONCURRENT_UPLOADS at a time. Uploads run as resumable sessions whose URI
+ * is saved in the properties too, so an interrupted upload carries on from the
+ * last byte Storage committed instead of starting over. Once an upload is
+ * confirmed the listener commits the photo to its event, and then the staged
+ * files are removed. Whatever was staged before a restart is read back on an io
+ * executor rather than the caller's thread.
+ */
+public class PhotoUploadQueue implements SyncScheduler.SyncTarget {
+
+    /**
+     * Where staged photos go, e.g. FirebaseDB
+     */
+    public interface Uploader {
+        /**
+         * @param sessionUri Resumable session to continue, or null to start a new one
+         * @param onSession Receives the session URI once one is open, or null if
+         *                  sessionUri can no longer be resumed
+         * @param callback Receives the photo's download URL once the upload is
+         *                 confirmed, or null if it failed
+         */
+        void uploadPhoto(String storagePath, File data, String sessionUri,
+                         FirebaseDB.FirebaseCallback<String> onSession,
+                         FirebaseDB.FirebaseCallback<String> callback);
+
+        void deletePhoto(String storagePath);
+    }
+
+    /**
+     * Told about each confirmed upload, so the event can be pointed at it
+     */
+    public interface UploadListener {
+        void onPhotoUploaded(String eventId, String storagePath, String downloadUrl);
+    }
+
+    private static final String TAG = "PhotoUploadQueue";
+
+    // Photos in flight at once; more only split a weak uplink further
+    static final int MAX_CONCURRENT_UPLOADS = 2;
+
+    private static final String DATA_SUFFIX = ".jpg";
+    private static final String META_SUFFIX = ".properties";
+
+    private static final class PendingUpload {
+        final String id;
+        final String eventId;
+        final String storagePath;
+        final long stagedAt;
+        String sessionUri;
+
+        PendingUpload(String id, String eventId, String storagePath, long stagedAt, String sessionUri) {
+            this.id = id;
+            this.eventId = eventId;
+            this.storagePath = storagePath;
+            this.stagedAt = stagedAt;
+            this.sessionUri = sessionUri;
+        }
+    }
+
+    private final File dir;
+    private final Uploader uploader;
+
+    // Staged uploads by id, oldest first
+    private final Map<String, PendingUpload> pending = new LinkedHashMap<>();
+    private UploadListener listener;
+    private Runnable onUploadQueued;
+
+    /**
+     * Load whatever was staged in dir before the last shutdown, before returning
+     */
+    public PhotoUploadQueue(File dir, Uploader uploader) {
+        this(dir, uploader, Runnable::run, Runnable::run);
+    }
+
+    /**
+     * @param io Reads back what was staged in dir before the last shutdown
+     * @param delivery Adds the restored photos to the queue
+     */
+    public PhotoUploadQueue(File dir, Uploader uploader, Executor io, Executor delivery) {
+        this.dir = dir;
+        this.uploader = uploader;
+        io.execute(() -> {
+            List<PendingUpload> restored = restore();
+            delivery.execute(() -> onRestored(restored));
+        });
+    }
+
+    public synchronized void setUploadListener(UploadListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param onUploadQueued Run after each staged photo, e.g. to request a sync
+     */
+    public synchronized void setOnUploadQueued(Runnable onUploadQueued) {
+        this.onUploadQueued = onUploadQueued;
+    }
+
+    /**
+     * Stage compressed photo bytes for upload
+     *
+     * @param eventId Mood event the photo belongs to
+     * @param storagePath Where the photo will live in Firebase Storage
+     * @return false if the photo could not be written to app storage
+     */
+    public boolean enqueue(String eventId, String storagePath, byte[] data) {
+        String id = UUID.randomUUID().toString();
+        PendingUpload upload = new PendingUpload(id, eventId, storagePath, System.currentTimeMillis(), null);
+
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            writeAtomically(dataFile(id), out -> out.write(data));
+            writeMeta(upload);
+        } catch (IOException e) {
+            Log.e(TAG, "Error staging photo for " + eventId, e);
+            dataFile(id).delete();
+            return false;
+        }
+
+        Runnable queued;
+        synchronized (this) {
+            pending.put(id, upload);
+            queued = onUploadQueued;
+        }
+        if (queued != null) {
+            queued.run();
+        }
+        return true;
+    }
+
+    /**
+     * Drop staged photos of an event, e.g. because it was deleted or its photo
+     * removed. An upload already in flight is deleted from storage once it lands.
+     */
+    public synchronized void cancel(String eventId) {
+        List<String> cancelled = new ArrayList<>();
+        for (PendingUpload upload : pending.values()) {
+            if (upload.eventId.equals(eventId)) {
+                cancelled.add(upload.id);
+            }
+        }
+        for (String id : cancelled) {
+            pending.remove(id);
+            deleteStaged(id);
+        }
+    }
+
+    @Override
+    public synchronized boolean hasPendingChanges() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Upload every staged photo, at most MAX_CONCURRENT_UPLOADS at a time
+     *
+     * @param callback Receives true if all of them were uploaded
+     */
+    @Override
+    public void syncPendingChanges(FirebaseDB.FirebaseCallback<Boolean> callback) {
+        List<PendingUpload> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+        }
+        if (batch.isEmpty()) {
+            callback.onCallback(true);
+            return;
+        }
+
+        AtomicInteger nextIndex = new AtomicInteger(0);
+        AtomicInteger remaining = new AtomicInteger(batch.size());
+        AtomicBoolean allUploaded = new AtomicBoolean(true);
+
+        Runnable[] launchNext = new Runnable[1];
+        launchNext[0] = () -> {
+            int index = nextIndex.getAndIncrement();
+            if (index >= batch.size()) {
+                return;
+            }
+            PendingUpload upload = batch.get(index);
+            String sessionUri;
+            synchronized (this) {
+                sessionUri = upload.sessionUri;
+            }
+            uploader.uploadPhoto(upload.storagePath, dataFile(upload.id), sessionUri,
+                    session -> saveSession(upload, session), downloadUrl -> {
+                        if (downloadUrl != null) {
+                            onUploaded(upload, downloadUrl);
+                        } else {
+                            allUploaded.set(false);
+                        }
+                        if (remaining.decrementAndGet() == 0) {
+                            callback.onCallback(allUploaded.get());
+                        } else {
+                            launchNext[0].run();
+                        }
+                    });
+        };
+
+        for (int i = 0; i < Math.min(MAX_CONCURRENT_UPLOADS, batch.size()); i++) {
+            launchNext[0].run();
+        }
+    }
+
+    /**
+     * Remember an upload's session so a retry after a drop or restart resumes it
+     */
+    private synchronized void saveSession(PendingUpload upload, String sessionUri) {
+        if (pending.get(upload.id) != upload) {
+            // Cancelled or already committed; don't bring its properties back
+            return;
+        }
+        upload.sessionUri = sessionUri;
+        try {
+            writeMeta(upload);
+        } catch (IOException e) {
+            // Still uploads, just from the start next time
+            Log.e(TAG, "Error saving upload session for " + upload.eventId, e);
+        }
+    }
+
+    private void onUploaded(PendingUpload upload, String downloadUrl) {
+        UploadListener current;
+        synchronized (this) {
+            if (pending.remove(upload.id) == null) {
+                // Cancelled while in flight; nothing refers to it
+                uploader.deletePhoto(upload.storagePath);
+                return;
+            }
+            current = listener;
+        }
+        if (current != null) {
+            current.onPhotoUploaded(upload.eventId, upload.storagePath, downloadUrl);
+        }
+        // Only now, so a crash before the event was pointed at the photo uploads it again
+        deleteStaged(upload.id);
+    }
+
+    private List<PendingUpload> restore() {
+        List<PendingUpload> restored = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return restored;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".tmp")) {
+                // Interrupted write
+                file.delete();
+            } else if (name.endsWith(META_SUFFIX)) {
+                String id = name.substring(0, name.length() - META_SUFFIX.length());
+                PendingUpload upload = readMeta(id);
+                if (upload != null && dataFile(id).exists()) {
+                    restored.add(upload);
+                } else {
+                    deleteStaged(id);
+                }
+            } else if (name.endsWith(DATA_SUFFIX)) {
+                String id = name.substring(0, name.length() - DATA_SUFFIX.length());
+                if (!metaFile(id).exists()) {
+                    file.delete();
+                }
+            }
+        }
+        Collections.sort(restored, (a, b) -> Long.compare(a.stagedAt, b.stagedAt));
+        return restored;
+    }
+
+    private void onRestored(List<PendingUpload> restored) {
+        if (restored.isEmpty()) {
+            return;
+        }
+        Runnable queued;
+        synchronized (this) {
+            // Restored photos were staged first, so they stay ahead of anything staged since
+            Map<String, PendingUpload> merged = new LinkedHashMap<>();
+            for (PendingUpload upload : restored) {
+                merged.put(upload.id, upload);
+            }
+            merged.putAll(pending);
+            pending.clear();
+            pending.putAll(merged);
+            queued = onUploadQueued;
+        }
+        if (queued != null) {
+            queued.run();
+        }
+    }
+
+    private PendingUpload readMeta(String id) {
+        Properties meta = new Properties();
+        try (FileInputStream in = new FileInputStream(metaFile(id))) {
+            meta.load(in);
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading staged photo " + id, e);
+            return null;
+        }
+        String eventId = meta.getProperty("eventId");
+        String storagePath = meta.getProperty("storagePath");
+        if (eventId == null || storagePath == null) {
+            return null;
+        }
+        long stagedAt;
+        try {
+            stagedAt = Long.parseLong(meta.getProperty("stagedAt", "0"));
+        } catch (NumberFormatException e) {
+            stagedAt = 0;
+        }
+        return new PendingUpload(id, eventId, storagePath, stagedAt, meta.getProperty("sessionUri"));
+    }
+
+    private void writeMeta(PendingUpload upload) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("eventId", upload.eventId);
+        meta.setProperty("storagePath", upload.storagePath);
+        meta.setProperty("stagedAt", String.valueOf(upload.stagedAt));
+        if (upload.sessionUri != null) {
+            meta.setProperty("sessionUri", upload.sessionUri);
+        }
+        writeAtomically(metaFile(upload.id), out -> meta.store(out, null));
+    }
+
+    private interface Writer {
+        void write(FileOutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(File target, Writer writer) throws IOException {
+        File temp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            writer.write(out);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + target);
+        }
+    }
+
+    private void deleteStaged(String id) {
+        metaFile(id).delete();
+        dataFile(id).delete();
+    }
+
+    private File dataFile(String id) {
+        return new File(dir, id + DATA_SUFFIX);
+    }
+
+    private File metaFile(String id) {
+        return new File(dir, id + META_SUFFIX);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.MoodEvent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Download URLs of mood photos, for events stored before photoUrl was written at
+ * upload time.
+ *
+ * An event that already has a photoUrl is answered from it. Otherwise its
+ * photoFilename is looked up at most once per session: results go in an LRU map,
+ * concurrent requests for the same file share one lookup, and no more than
+ * MAX_CONCURRENT_LOOKUPS run at a time. Each resolved URL is set on the event and
+ * handed to the backfill, so it is stored and never looked up again.
+ */
+public class PhotoUrlResolver {
+
+    /**
+     * Looks up a file's download URL; must call back exactly once, with null on failure
+     */
+    public interface Lookup {
+        void getDownloadUrl(String photoFilename, FirebaseDB.FirebaseCallback<String> callback);
+    }
+
+    /**
+     * Stores a resolved URL on an event, e.g. in Firestore
+     */
+    public interface Backfill {
+        void savePhotoUrl(MoodEvent event, String photoUrl);
+    }
+
+    // Lookups in flight at once, so a fast fling doesn't flood Storage
+    static final int MAX_CONCURRENT_LOOKUPS = 4;
+
+    private static final class Request {
+        final MoodEvent event;
+        final FirebaseDB.FirebaseCallback<String> callback;
+
+        Request(MoodEvent event, FirebaseDB.FirebaseCallback<String> callback) {
+            this.event = event;
+            this.callback = callback;
+        }
+    }
+
+    private final Lookup lookup;
+    private final Backfill backfill;
+    private final LinkedHashMap<String, String> urls;
+    private final Map<String, List<Request>> inFlight = new HashMap<>();
+    private final Queue<String> waiting = new ArrayDeque<>();
+    private int running;
+
+    public PhotoUrlResolver(Lookup lookup, Backfill backfill, int maxEntries) {
+        this.lookup = lookup;
+        this.backfill = backfill;
+        // Access order turns insertion-ordered eviction into least-recently-used
+        this.urls = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the download URL of an event's photo
+     *
+     * @param callback Receives the URL, or null if the event has no photo or the lookup failed
+     */
+    public void resolve(MoodEvent event, FirebaseDB.FirebaseCallback<String> callback) {
+        String stored = event.getPhotoUrl();
+        if (stored != null && !stored.isEmpty()) {
+            callback.onCallback(stored);
+            return;
+        }
+        String filename = event.getPhotoFilename();
+        if (filename == null || filename.isEmpty()) {
+            callback.onCallback(null);
+            return;
+        }
+
+        String cached;
+        synchronized (this) {
+            cached = urls.get(filename);
+            if (cached == null) {
+                List<Request> requests = inFlight.get(filename);
+                if (requests != null) {
+                    requests.add(new Request(event, callback));
+                    return;
+                }
+                requests = new ArrayList<>();
+                requests.add(new Request(event, callback));
+                inFlight.put(filename, requests);
+                waiting.add(filename);
+            }
+        }
+
+        if (cached != null) {
+            event.setPhotoUrl(cached);
+            callback.onCallback(cached);
+            return;
+        }
+        launchNext();
+    }
+
+    /**
+     * Remember a URL that is already known, e.g. from an upload
+     */
+    public synchronized void put(String photoFilename, String photoUrl) {
+        urls.put(photoFilename, photoUrl);
+    }
+
+    /**
+     * Forget every URL, e.g. on logout
+     */
+    public synchronized void clear() {
+        urls.clear();
+    }
+
+    private void launchNext() {
+        String filename;
+        synchronized (this) {
+            if (running >= MAX_CONCURRENT_LOOKUPS || waiting.isEmpty()) {
+                return;
+            }
+            running++;
+            filename = waiting.poll();
+        }
+        lookup.getDownloadUrl(filename, url -> complete(filename, url));
+    }
+
+    private void complete(String filename, String url) {
+        List<Request> requests;
+        synchronized (this) {
+            running--;
+            requests = inFlight.remove(filename);
+            if (url != null) {
+                urls.put(filename, url);
+            }
+        }
+        if (requests != null) {
+            for (Request request : requests) {
+                if (url != null) {
+                    request.event.setPhotoUrl(url);
+                }
+                request.callback.onCallback(url);
+            }
+            if (url != null) {
+                backfill.savePhotoUrl(requests.get(0).event, url);
+            }
+        }
+        launchNext();
+    }
+}
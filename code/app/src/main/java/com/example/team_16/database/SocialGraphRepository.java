@@ -0,0 +1,115 @@
+package com.example.team_16.database;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage-agnostic access to user records and the follow graph.
+ * FirebaseDB is the production implementation; InMemoryMoodRepository
+ * backs offline benchmarks and load tests.
+ */
+public interface SocialGraphRepository {
+
+    /**
+     * Follow requests are keyed by sender and recipient, so there is at most one
+     * request document per pair and it can be read without a query
+     */
+    static String followRequestId(String fromUserId, String toUserId) {
+        return fromUserId + "_" + toUserId;
+    }
+
+    /**
+     * Fetch user data by user ID
+     */
+    void fetchUserById(String userId, FirebaseDB.FirebaseCallback<Map<String, Object>> callback);
+
+    /**
+     * Fetch the display fields of a user, served from a cache where the backend has one
+     *
+     * @param callback Receives the summary, or null if the user could not be read
+     */
+    void fetchUserSummary(String userId, FirebaseDB.FirebaseCallback<UserSummary> callback);
+
+    /**
+     * Fetch the display fields of many users in as few reads as possible
+     *
+     * @param callback Receives summaries keyed by user id; users that could not be read are absent
+     */
+    void fetchUsersByIds(Collection<String> userIds, FirebaseDB.FirebaseCallback<Map<String, UserSummary>> callback);
+
+    void searchUsersByUsername(String query, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback);
+
+    /**
+     * Send a follow request
+     */
+    void sendFollowRequest(String fromUserId, String toUserId, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    /**
+     * Get the status of the request fromUserId sent to toUserId with a single document read
+     *
+     * @param callback Receives "pending", "accepted" or "rejected", or null if no request exists
+     */
+    void getFollowRequestStatus(String fromUserId, String toUserId, FirebaseDB.FirebaseCallback<String> callback);
+
+    /**
+     * Respond to a follow request
+     */
+    void respondToFollowRequest(String requestId, boolean accept, FirebaseDB.FirebaseCallback<Boolean> callback);
+
+    /**
+     * Get pending follow requests addressed to a user
+     */
+    void getPendingFollowRequests(String userId, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback);
+
+    /**
+     * Get pending follow requests sent by a user
+     */
+    void getSentFollowRequests(String userId, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback);
+
+    /**
+     * Get list of users the given user is following
+     */
+    void getFollowingList(String userId, FirebaseDB.FirebaseCallback<List<String>> callback);
+
+    /**
+     * Get one page of the users the given user is following, ordered by user id
+     *
+     * @param startAfter Last user id of the previous page, or null for the first page
+     * @param pageSize Maximum number of ids to return
+     * @param callback Receives the page; fewer than pageSize ids means there are no more pages
+     */
+    void getFollowingPage(String userId,
+                          String startAfter,
+                          int pageSize,
+                          FirebaseDB.FirebaseCallback<List<String>> callback);
+
+    /**
+     * Get list of users who follow the given user
+     */
+    void getFollowersOfUser(String userId, FirebaseDB.FirebaseCallback<List<String>> callback);
+
+    /**
+     * Get one page of the users who follow the given user, ordered by user id
+     *
+     * @param startAfter Last user id of the previous page, or null for the first page
+     * @param pageSize Maximum number of ids to return
+     * @param callback Receives the page; fewer than pageSize ids means there are no more pages
+     */
+    void getFollowersPage(String userId,
+                          String startAfter,
+                          int pageSize,
+                          FirebaseDB.FirebaseCallback<List<String>> callback);
+
+    /**
+     * Get how many users follow the given user and how many it follows, without listing them
+     *
+     * @param callback Receives the counts, or null if they could not be read
+     */
+    void getFollowCounts(String userId, FirebaseDB.FirebaseCallback<FollowCounts> callback);
+
+    /**
+     * Unfollow a user
+     */
+    void unfollowUser(String followerId, String followedId, FirebaseDB.FirebaseCallback<Boolean> callback);
+}
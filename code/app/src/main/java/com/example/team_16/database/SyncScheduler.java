@@ -0,0 +1,170 @@
+package com.example.team_16.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.team_16.utils.ConnectivitySource;
+import com.example.team_16.utils.ConnectivityUtil;
+
+import java.util.Random;
+
+/**
+ * Flushes queued offline writes in the background.
+ *
+ * Sync requests are debounced, so a burst of offline edits goes out as one flush
+ * rather than one per edit. Only one flush runs at a time. A failed flush is retried
+ * with exponential backoff and jitter, so many devices coming back online together
+ * do not all retry in step. Nothing is attempted while offline; the flush waits
+ * for the network to come back instead of polling.
+ */
+public class SyncScheduler implements ConnectivityUtil.ConnectivityCallback {
+
+    /**
+     * The queue being flushed, e.g. a PersonalMoodHistory
+     */
+    public interface SyncTarget {
+        boolean hasPendingChanges();
+
+        void syncPendingChanges(FirebaseDB.FirebaseCallback<Boolean> callback);
+    }
+
+    /**
+     * Runs delayed tasks; every task must run on the same thread
+     */
+    public interface Timer {
+        void schedule(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+    }
+
+    // Quiet period after the last request before flushing
+    static final long DEBOUNCE_MS = 2000;
+
+    // Retry delay after the first failure, doubled per further failure up to the cap
+    static final long BASE_BACKOFF_MS = 1000;
+    static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    private final ConnectivitySource connectivity;
+    private final SyncTarget target;
+    private final Timer timer;
+    private final Random random;
+    private final Runnable flushTask = this::flush;
+
+    private int failedAttempts;
+    private boolean inFlight;
+    private boolean started;
+
+    public SyncScheduler(ConnectivitySource connectivity, SyncTarget target) {
+        this(connectivity, target, mainThreadTimer(), new Random());
+    }
+
+    /**
+     * @param timer Where flushes run; tests pass a manual timer
+     * @param random Source of backoff jitter
+     */
+    public SyncScheduler(ConnectivitySource connectivity, SyncTarget target, Timer timer, Random random) {
+        this.connectivity = connectivity;
+        this.target = target;
+        this.timer = timer;
+        this.random = random;
+    }
+
+    /**
+     * Timer backed by the main looper, so flushes run on the same thread as UI writes
+     */
+    public static Timer mainThreadTimer() {
+        Handler handler = new Handler(Looper.getMainLooper());
+        return new Timer() {
+            @Override
+            public void schedule(Runnable task, long delayMs) {
+                handler.postDelayed(task, delayMs);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                handler.removeCallbacks(task);
+            }
+        };
+    }
+
+    /**
+     * Start listening for connectivity changes, and flush anything left over from
+     * the last session
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        connectivity.addCallback(this);
+        requestSync();
+    }
+
+    public synchronized void stop() {
+        started = false;
+        connectivity.removeCallback(this);
+        timer.cancel(flushTask);
+    }
+
+    /**
+     * Flush after the debounce period, restarting the period if a flush is already waiting
+     */
+    public synchronized void requestSync() {
+        if (!started || failedAttempts > 0) {
+            // A pending backoff retry will pick up the new change too
+            return;
+        }
+        schedule(DEBOUNCE_MS);
+    }
+
+    @Override
+    public synchronized void onNetworkAvailable() {
+        // Back online is a fresh start, not another failure
+        failedAttempts = 0;
+        requestSync();
+    }
+
+    @Override
+    public synchronized void onNetworkLost() {
+        timer.cancel(flushTask);
+    }
+
+    private synchronized void flush() {
+        if (!started || inFlight || !connectivity.isNetworkAvailable() || !target.hasPendingChanges()) {
+            return;
+        }
+        inFlight = true;
+        target.syncPendingChanges(this::onFlushed);
+    }
+
+    private synchronized void onFlushed(Boolean success) {
+        inFlight = false;
+        if (Boolean.TRUE.equals(success)) {
+            failedAttempts = 0;
+            // Changes queued while the flush was in flight
+            if (target.hasPendingChanges()) {
+                requestSync();
+            }
+        } else if (started && connectivity.isNetworkAvailable()) {
+            failedAttempts++;
+            schedule(backoffDelay(failedAttempts));
+        }
+    }
+
+    /**
+     * Half the capped exponential delay plus a random share of the other half
+     */
+    long backoffDelay(int attempt) {
+        long delay = MAX_BACKOFF_MS;
+        if (attempt <= 20) {
+            delay = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (attempt - 1));
+        }
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    private void schedule(long delayMs) {
+        timer.cancel(flushTask);
+        timer.schedule(flushTask, delayMs);
+    }
+}
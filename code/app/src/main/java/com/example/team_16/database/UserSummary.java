@@ -0,0 +1,71 @@
+package com.example.team_16.database;
+
+import com.example.team_16.models.AuthorSnapshot;
+
+import java.util.Map;
+
+/**
+ * Display fields of a users document: what lists, rows and markers need to show
+ * a person, without the permissions and email of the full record.
+ */
+public final class UserSummary {
+
+    private final String id;
+    private final String username;
+    private final String fullName;
+    private final String profileImageUrl;
+    private final long profileVersion;
+
+    public UserSummary(String id, String username, String fullName, String profileImageUrl, long profileVersion) {
+        this.id = id;
+        this.username = username;
+        this.fullName = fullName;
+        this.profileImageUrl = profileImageUrl;
+        this.profileVersion = profileVersion;
+    }
+
+    /**
+     * @param userData Fields of the users document, or null
+     * @return The summary, or null if userData is null
+     */
+    public static UserSummary fromUserData(String id, Map<String, Object> userData) {
+        if (userData == null) {
+            return null;
+        }
+        Object version = userData.get("profileVersion");
+        return new UserSummary(
+                id,
+                (String) userData.get("username"),
+                (String) userData.get("fullName"),
+                (String) userData.get("profileImageUrl"),
+                version instanceof Number ? ((Number) version).longValue() : 0
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+
+    public long getProfileVersion() {
+        return profileVersion;
+    }
+
+    /**
+     * Copy to embed in a mood event written by this user
+     */
+    public AuthorSnapshot toAuthorSnapshot() {
+        return new AuthorSnapshot(username, fullName, profileImageUrl, profileVersion);
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.team_16.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Session-wide LRU cache of UserSummary with a time-to-live per entry.
+ *
+ * Concurrent lookups of the same uncached user share one load: the first caller
+ * starts it and later callers are queued until it completes. Failed loads
+ * (null) are delivered but not cached.
+ */
+public class UserSummaryCache {
+
+    /**
+     * Source of summaries on a miss; must call back exactly once, with null on failure
+     */
+    public interface Loader {
+        void load(String userId, FirebaseDB.FirebaseCallback<UserSummary> callback);
+    }
+
+    private static final class Entry {
+        final UserSummary summary;
+        final long expiresAt;
+
+        Entry(UserSummary summary, long expiresAt) {
+            this.summary = summary;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Loader loader;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<String, List<FirebaseDB.FirebaseCallback<UserSummary>>> inFlight = new HashMap<>();
+    private final Set<String> invalidatedInFlight = new HashSet<>();
+
+    private long hits;
+    private long misses;
+    private long coalesced;
+
+    public UserSummaryCache(Loader loader, int maxEntries, long ttlMillis) {
+        this(loader, maxEntries, ttlMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock Source of the current time in milliseconds
+     */
+    public UserSummaryCache(Loader loader, int maxEntries, long ttlMillis, LongSupplier clock) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // Access order turns insertion-ordered eviction into least-recently-used
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get a user's summary, loading it at most once however many callers ask
+     */
+    public void get(String userId, FirebaseDB.FirebaseCallback<UserSummary> callback) {
+        UserSummary cached = null;
+        synchronized (this) {
+            Entry entry = entries.get(userId);
+            if (entry != null && entry.expiresAt > clock.getAsLong()) {
+                hits++;
+                cached = entry.summary;
+            } else {
+                if (entry != null) {
+                    entries.remove(userId);
+                }
+                List<FirebaseDB.FirebaseCallback<UserSummary>> waiting = inFlight.get(userId);
+                if (waiting != null) {
+                    coalesced++;
+                    waiting.add(callback);
+                    return;
+                }
+                misses++;
+                waiting = new ArrayList<>();
+                waiting.add(callback);
+                inFlight.put(userId, waiting);
+            }
+        }
+
+        if (cached != null) {
+            callback.onCallback(cached);
+            return;
+        }
+        loader.load(userId, summary -> complete(userId, summary));
+    }
+
+    private void complete(String userId, UserSummary summary) {
+        List<FirebaseDB.FirebaseCallback<UserSummary>> waiting;
+        synchronized (this) {
+            waiting = inFlight.remove(userId);
+            boolean invalidated = invalidatedInFlight.remove(userId);
+            if (summary != null && !invalidated) {
+                entries.put(userId, new Entry(summary, clock.getAsLong() + ttlMillis));
+            }
+        }
+        if (waiting != null) {
+            for (FirebaseDB.FirebaseCallback<UserSummary> callback : waiting) {
+                callback.onCallback(summary);
+            }
+        }
+    }
+
+    /**
+     * Get a user's summary only if it is cached and fresh, for callers that load
+     * misses themselves in bulk. Counts as a hit or a miss.
+     *
+     * @return The cached summary, or null
+     */
+    public synchronized UserSummary peek(String userId) {
+        Entry entry = entries.get(userId);
+        if (entry != null && entry.expiresAt > clock.getAsLong()) {
+            hits++;
+            return entry.summary;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Store a summary that is already known, e.g. right after a profile update
+     */
+    public synchronized void put(UserSummary summary) {
+        entries.put(summary.getId(), new Entry(summary, clock.getAsLong() + ttlMillis));
+    }
+
+    /**
+     * Drop a user's entry; a load already in flight is delivered but not cached
+     */
+    public synchronized void invalidate(String userId) {
+        entries.remove(userId);
+        if (inFlight.containsKey(userId)) {
+            invalidatedInFlight.add(userId);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        invalidatedInFlight.addAll(inFlight.keySet());
+    }
+
+    /**
+     * @return Lookups answered from the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Lookups that started a load
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return Lookups that joined a load already in flight
+     */
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
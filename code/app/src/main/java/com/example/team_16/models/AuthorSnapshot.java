@@ -0,0 +1,79 @@
+/**
+ * Copy of the author's display data stored inside each mood event, so feed rows
+ * can show a name and avatar without reading the users collection.
+ *
+ * version is the author's profileVersion when the copy was taken; snapshots older
+ * than the current profileVersion are rewritten after a profile update.
+ */
+
+package com.example.team_16.models;
+
+import java.io.Serializable;
+import java.util.Map;
+
+public class AuthorSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String username;
+    private String fullName;
+    private String profileImageUrl;
+    private long version;
+
+    public AuthorSnapshot() {
+    }
+
+    public AuthorSnapshot(String username, String fullName, String profileImageUrl, long version) {
+        this.username = username;
+        this.fullName = fullName;
+        this.profileImageUrl = profileImageUrl;
+        this.version = version;
+    }
+
+    /**
+     * Build a snapshot from a users document
+     *
+     * @param userData Fields of the users document, as returned by fetchUserById
+     * @return The snapshot, or null if userData is null
+     */
+    public static AuthorSnapshot fromUserData(Map<String, Object> userData) {
+        if (userData == null) {
+            return null;
+        }
+        Object version = userData.get("profileVersion");
+        return new AuthorSnapshot(
+                (String) userData.get("username"),
+                (String) userData.get("fullName"),
+                (String) userData.get("profileImageUrl"),
+                version instanceof Number ? ((Number) version).longValue() : 0
+        );
+    }
+
+    public String getUsername() {
+        return username;
+    }
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getProfileImageUrl() {
+        return profileImageUrl;
+    }
+    public void setProfileImageUrl(String profileImageUrl) {
+        this.profileImageUrl = profileImageUrl;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+    public void setVersion(long version) {
+        this.version = version;
+    }
+}
@@ -42,6 +42,11 @@ public class MoodEvent implements Serializable {
     private String placeName;
     private boolean isPrivate;
     private String photoUrl;
+    private AuthorSnapshot author;
+    private long updatedAt;
+    private long version;
+    private transient Timestamp serverUpdatedAt;
+    private boolean deleted;
 
     public MoodEvent() {
     }
@@ -228,6 +233,79 @@ public class MoodEvent implements Serializable {
      */
     public void setPlaceName(String placeName) { this.placeName = placeName; }
 
+    /**
+     * Gets the author's display data copied in when the event was written.
+     *
+     * @return The author snapshot, or null for events written before snapshots existed.
+     */
+    public AuthorSnapshot getAuthor() { return author; }
+
+    /**
+     * Sets the author's display data.
+     *
+     * @param author Snapshot of the author's profile.
+     */
+    public void setAuthor(AuthorSnapshot author) { this.author = author; }
+
+    /**
+     * Gets when this event was last written by its owner, on the writing device's clock.
+     *
+     * @return Milliseconds since the epoch, or 0 for events written before this was tracked.
+     */
+    public long getUpdatedAt() { return updatedAt; }
+
+    /**
+     * Sets when this event was last written by its owner.
+     *
+     * @param updatedAt Milliseconds since the epoch.
+     */
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    /**
+     * Gets the number of times this event has been written, used to detect concurrent edits.
+     *
+     * @return The version, 0 for a new or untracked event.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Sets the write count of this event.
+     *
+     * @param version The version.
+     */
+    public void setVersion(long version) { this.version = version; }
+
+    /**
+     * Gets when the server last stored a write to this event. Filled in by Firestore on
+     * every write, so it orders changes consistently across devices.
+     *
+     * @return The server time, or null for events not yet written or written before this was tracked.
+     */
+    @ServerTimestamp
+    public Timestamp getServerUpdatedAt() { return serverUpdatedAt; }
+
+    /**
+     * Sets when the server last stored a write to this event.
+     *
+     * @param serverUpdatedAt The server time.
+     */
+    public void setServerUpdatedAt(Timestamp serverUpdatedAt) { this.serverUpdatedAt = serverUpdatedAt; }
+
+    /**
+     * Determines if this is the tombstone of a deleted event. Deleted events are kept
+     * for a while so that delta refreshes learn about the deletion.
+     *
+     * @return true if the event was deleted, false otherwise.
+     */
+    public boolean isDeleted() { return deleted; }
+
+    /**
+     * Marks this event as the tombstone of a deleted event.
+     *
+     * @param deleted true if the event was deleted.
+     */
+    public void setDeleted(boolean deleted) { this.deleted = deleted; }
+
     /**
      * Determines if the mood event has location data.
      *
@@ -300,6 +378,14 @@ public class MoodEvent implements Serializable {
     public MoodEvent copy() {
         MoodEvent copyEvent = new MoodEvent(id, timestamp, emotionalState, trigger, userID, socialSituation, latitude, longitude, placeName);
         copyEvent.setPostType(postType);
+        copyEvent.setPrivate(isPrivate);
+        copyEvent.setPhotoFilename(photoFilename);
+        copyEvent.setPhotoUrl(photoUrl);
+        copyEvent.setAuthor(author);
+        copyEvent.setUpdatedAt(updatedAt);
+        copyEvent.setVersion(version);
+        copyEvent.setServerUpdatedAt(serverUpdatedAt);
+        copyEvent.setDeleted(deleted);
         return copyEvent;
     }
 
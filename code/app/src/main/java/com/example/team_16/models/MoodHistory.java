@@ -1,6 +1,15 @@
 /**
  * Manages a user's mood history, providing access to their personal or followed users' mood events.
  * Supports fetching all, recent, or filtered events from Firebase based on mode.
+ * Personal histories are loaded a page at a time, newest first; call loadNextPage as the list scrolls.
+ * After the first page, refresh only asks for events the server stored since the newest
+ * change already seen (the watermark), so refreshing an idle history costs next to nothing.
+ * Following histories hold the most recent public events of each followed user.
+ * Once startListening is called, snapshot listeners keep the list current and
+ * subscribers receive only the changes instead of re-downloading on refresh.
+ * With a MoodEventCache, the last known events are shown as soon as the cache answers
+ * and then revalidated from the network, and each change writes back only the
+ * events it touched.
  *
  * Designed for read-only operations; editing/deleting is handled by PersonalMoodHistory.
  */
@@ -8,35 +17,109 @@
 package com.example.team_16.models;
 
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.FollowingWindow;
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.database.MoodEventCache;
+import com.example.team_16.database.MoodQuery;
+import com.example.team_16.database.MoodRepository;
 import com.example.team_16.models.MoodEvent;
+import com.example.team_16.utils.Geohash;
+import com.google.firebase.Timestamp;
+import com.google.firebase.firestore.ListenerRegistration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class MoodHistory {
     // Constants for history modes
     public static final int MODE_PERSONAL = 1;
     public static final int MODE_FOLLOWING = 2;
 
+    // Number of personal events fetched per page
+    public static final int PAGE_SIZE = 20;
+
+    // How far the device clock may run ahead of the server's when it stands in for a watermark
+    private static final long WATERMARK_CLOCK_SKEW_MS = 10 * 60 * 1000L;
+
+    // Number of recent public events kept per followed user
+    public static final int FOLLOWING_EVENTS_PER_USER = 3;
+
     private final String userId;
     private final int mode;
     private List<MoodEvent> moodEvents;
-    private final FirebaseDB firebaseDB;
+    private final MoodRepository repository;
+    private final MoodEventCache cache;
+    // Revision of each event the cache holds for this history, to write only the ones that changed
+    private final Map<String, String> persisted = new HashMap<>();
+
+    // Paging state for MODE_PERSONAL
+    private Timestamp pageCursor;
+    private String pageCursorId;
+    private boolean hasMorePages = true;
+    private boolean loadingPage = false;
+    private int pageGeneration = 0;
+
+    // Delta refresh state for MODE_PERSONAL: serverUpdatedAt of the newest change applied,
+    // and when changes were last fetched, on this device's clock
+    private Timestamp watermark;
+    private long watermarkCheckedAt;
+
+    // Live mode state
+    private ListenerRegistration liveRegistration;
+    private FollowingWindow followingWindow;
+    private final Set<String> liveIds = new HashSet<>();
+    private final List<MoodChangeListener> changeListeners = new ArrayList<>();
 
     /**
      * Constructor for a specific user's mood history
      *
      * @param userId The user ID this history belongs to
      * @param mode Either MODE_PERSONAL or MODE_FOLLOWING
-     * @param firebaseDB The FirebaseDB instance to use
+     * @param repository The repository to load events from (FirebaseDB in production)
+     */
+    public MoodHistory(String userId, int mode, MoodRepository repository) {
+        this(userId, mode, repository, null);
+    }
+
+    /**
+     * Constructor that starts from the cached copy of this history, if any
+     *
+     * @param cache Where the history is kept between launches, or null to always start empty
+     */
+    public MoodHistory(String userId, int mode, MoodRepository repository, MoodEventCache cache) {
+        this(userId, mode, repository, cache, true);
+    }
+
+    /**
+     * @param load false if the subclass calls load() itself once its own state is set up
      */
-    public MoodHistory(String userId, int mode, FirebaseDB firebaseDB) {
+    protected MoodHistory(String userId, int mode, MoodRepository repository, MoodEventCache cache,
+                          boolean load) {
         this.userId = userId;
         this.mode = mode;
         this.moodEvents = new ArrayList<>();
-        this.firebaseDB = firebaseDB;
-        loadEvents();
+        this.repository = repository;
+        this.cache = cache;
+        if (load) {
+            load();
+        }
+    }
+
+    /**
+     * Show the cached copy, then revalidate it against the repository
+     */
+    protected final void load() {
+        if (cache == null) {
+            loadEvents();
+            return;
+        }
+        restoreFromCache(this::loadEvents);
     }
 
     public String getUserId() {
@@ -45,36 +128,95 @@ public class MoodHistory {
     public int getMode() {
         return mode;
     }
-    protected FirebaseDB getFirebaseDB() {
-        return firebaseDB;
+    protected MoodRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Show what was cached last time; the load that follows revalidates it. Skipped
+     * if the history was filled from the network before the cache answered.
+     *
+     * @param onRestored Run once the cache has answered, unless a page load has
+     *                   already been started meanwhile
+     */
+    private void restoreFromCache(Runnable onRestored) {
+        int generation = pageGeneration;
+        cache.getWatermark(getCacheKey(), saved -> cache.getHistory(getCacheKey(), cached -> {
+            // Rows written since the read was queued are newer than what it returned
+            for (MoodEvent event : cached) {
+                persisted.putIfAbsent(event.getId(), revisionOf(event));
+            }
+            if (generation == pageGeneration && moodEvents.isEmpty()) {
+                moodEvents = withLocalChanges(cached);
+                if (mode == MODE_PERSONAL && saved != null) {
+                    // Resume delta refresh where the last session left off
+                    watermark = saved.value;
+                    watermarkCheckedAt = saved.checkedAt;
+                    advanceCursor(cached);
+                }
+                List<MoodChange> restored = new ArrayList<>();
+                for (int i = 0; i < moodEvents.size(); i++) {
+                    restored.add(new MoodChange(MoodChange.Type.ADDED, moodEvents.get(i), -1, i));
+                }
+                notifyChangeListeners(restored);
+            }
+            if (generation == pageGeneration) {
+                onRestored.run();
+            }
+        }));
+    }
+
+    private String getCacheKey() {
+        return (mode == MODE_PERSONAL ? "personal:" : "following:") + userId;
+    }
+
+    /**
+     * Write the events that changed since the last write, and for personal histories
+     * the watermark, to the cache
+     */
+    private void persist() {
+        if (cache == null) {
+            return;
+        }
+        List<MoodEvent> upserted = new ArrayList<>();
+        Set<String> removedIds = new HashSet<>(persisted.keySet());
+        for (MoodEvent event : moodEvents) {
+            removedIds.remove(event.getId());
+            String revision = revisionOf(event);
+            if (!revision.equals(persisted.put(event.getId(), revision))) {
+                upserted.add(event);
+            }
+        }
+        persisted.keySet().removeAll(removedIds);
+
+        MoodEventCache.Watermark saved = null;
+        if (mode == MODE_PERSONAL && watermark != null) {
+            saved = new MoodEventCache.Watermark(watermark, watermarkCheckedAt);
+        }
+        cache.updateHistory(getCacheKey(), upserted, removedIds, saved);
+    }
+
+    /**
+     * @return What changes whenever an event is written, locally or on the server, so a
+     * fresh read of an unchanged event isn't written again
+     */
+    private static String revisionOf(MoodEvent event) {
+        Timestamp serverUpdatedAt = event.getServerUpdatedAt();
+        return (serverUpdatedAt != null
+                ? serverUpdatedAt.getSeconds() + "." + serverUpdatedAt.getNanoseconds() : "-")
+                + "/" + event.getUpdatedAt();
     }
 
     private void loadEvents() {
         if (mode == MODE_PERSONAL) {
-            firebaseDB.getMoodEvents(
-                    userId,
-                    null,
-                    null,
-                    null,
-                    events -> {
-                        setMoodEvents(events);
-                        notifyDataLoaded();
-                    }
-            );
+            // A delta on top of the cached events if a watermark was restored, else the first page
+            refreshPersonal(this::notifyDataLoaded);
         } else if (mode == MODE_FOLLOWING) {
-            firebaseDB.getFollowingMoodEvents(
+            repository.getLatestFollowingMoodEvents(
                     userId,
-                    null,
-                    null,
-                    null,
+                    FOLLOWING_EVENTS_PER_USER,
                     events -> {
-                        List<MoodEvent> publicEvents = new ArrayList<>();
-                        for (MoodEvent e : events) {
-                            if ("Public".equalsIgnoreCase(e.getPostType())) {
-                                publicEvents.add(e);
-                            }
-                        }
-                        setMoodEvents(publicEvents);
+                        setMoodEvents(events);
                         notifyDataLoaded();
                     }
             );
@@ -97,39 +239,177 @@ public class MoodHistory {
         }
     }
 
+    /**
+     * Receives the changes applied by a listening history. Indices are positions
+     * in getAllEvents() at the moment each change was applied, in order.
+     */
+    public interface MoodChangeListener {
+        void onMoodEventsChanged(List<MoodChange> changes);
+    }
+
+    public void addChangeListener(MoodChangeListener listener) {
+        if (!changeListeners.contains(listener)) {
+            changeListeners.add(listener);
+        }
+    }
+
+    public void removeChangeListener(MoodChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Attach the snapshot listener for this history; does nothing if already attached.
+     * Personal histories keep their first page live, following histories the
+     * latest events of each followed user.
+     */
+    public void startListening() {
+        if (liveRegistration != null) {
+            return;
+        }
+        if (mode == MODE_PERSONAL) {
+            liveRegistration = repository.listenMoodEvents(userId, PAGE_SIZE, this::applyChanges);
+        } else if (mode == MODE_FOLLOWING) {
+            followingWindow = repository.listenLatestFollowingMoodEvents(
+                    userId, FOLLOWING_EVENTS_PER_USER, this::applyChanges);
+            liveRegistration = followingWindow;
+        }
+    }
+
+    /**
+     * Detach the snapshot listener, e.g. on logout
+     */
+    public void stopListening() {
+        if (liveRegistration != null) {
+            liveRegistration.remove();
+            liveRegistration = null;
+        }
+        followingWindow = null;
+        liveIds.clear();
+    }
+
+    /**
+     * @return true while snapshot listeners keep this history current. A following
+     * history of too many users to listen to each is not, and needs refresh().
+     */
+    public boolean isListening() {
+        return liveRegistration != null && (followingWindow == null || followingWindow.isLive());
+    }
+
+    /**
+     * Apply repository deltas to the cached list, keeping it newest first,
+     * and forward what actually changed to subscribers
+     */
+    private void applyChanges(List<MoodChange> changes) {
+        for (MoodChange change : changes) {
+            if (change.getType() == MoodChange.Type.REMOVED) {
+                liveIds.remove(change.getEvent().getId());
+            } else {
+                liveIds.add(change.getEvent().getId());
+            }
+        }
+
+        List<MoodChange> applied = new ArrayList<>();
+        for (MoodChange change : changes) {
+            MoodEvent event = change.getEvent();
+            int oldIndex = indexOf(event.getId());
+            if (change.getType() == MoodChange.Type.REMOVED) {
+                if (oldIndex < 0 || slidOutOfWindow(event)) {
+                    continue;
+                }
+                moodEvents.remove(oldIndex);
+                applied.add(new MoodChange(MoodChange.Type.REMOVED, event, oldIndex, -1));
+            } else {
+                if (oldIndex >= 0) {
+                    moodEvents.remove(oldIndex);
+                }
+                int newIndex = insertionIndex(event);
+                moodEvents.add(newIndex, event);
+                applied.add(oldIndex >= 0
+                        ? new MoodChange(MoodChange.Type.MODIFIED, event, oldIndex, newIndex)
+                        : new MoodChange(MoodChange.Type.ADDED, event, -1, newIndex));
+            }
+        }
+
+        if (!applied.isEmpty()) {
+            persist();
+        }
+        notifyChangeListeners(applied);
+    }
+
+    private void notifyChangeListeners(List<MoodChange> applied) {
+        if (!applied.isEmpty()) {
+            for (MoodChangeListener listener : new ArrayList<>(changeListeners)) {
+                listener.onMoodEventsChanged(applied);
+            }
+        }
+    }
+
+    /**
+     * Personal histories page past the live window, so an event that was only
+     * pushed out of it by newer ones stays cached. That is the case when the
+     * window is full and the event is older than everything still in it.
+     */
+    private boolean slidOutOfWindow(MoodEvent removed) {
+        if (mode != MODE_PERSONAL || liveIds.size() < PAGE_SIZE) {
+            return false;
+        }
+        long removedTime = timeOf(removed);
+        for (MoodEvent event : moodEvents) {
+            if (liveIds.contains(event.getId()) && timeOf(event) < removedTime) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(String eventId) {
+        for (int i = 0; i < moodEvents.size(); i++) {
+            if (moodEvents.get(i).getId().equals(eventId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Position that keeps the list newest first; pending server timestamps sort first
+     */
+    private int insertionIndex(MoodEvent event) {
+        long time = timeOf(event);
+        int index = 0;
+        while (index < moodEvents.size() && timeOf(moodEvents.get(index)) >= time) {
+            index++;
+        }
+        return index;
+    }
+
+    private static long timeOf(MoodEvent event) {
+        Timestamp timestamp = event.getTimestamp();
+        return timestamp != null ? timestamp.toDate().getTime() : Long.MAX_VALUE;
+    }
+
     public void refresh() {
-        loadEvents(); // existing behavior
+        if (mode == MODE_PERSONAL) {
+            refreshPersonal(this::notifyDataLoaded);
+        } else {
+            loadEvents();
+        }
     }
 
     // New overloaded method
     public void refresh(Runnable callback) {
         if (mode == MODE_PERSONAL) {
-            firebaseDB.getMoodEvents(
-                    userId,
-                    null,
-                    null,
-                    null,
-                    events -> {
-                        setMoodEvents(events);
-                        if (callback != null) {
-                            callback.run();
-                        }
-                    }
-            );
+            refreshPersonal(() -> {
+                if (callback != null) {
+                    callback.run();
+                }
+            });
         } else if (mode == MODE_FOLLOWING) {
-            firebaseDB.getFollowingMoodEvents(
+            repository.getLatestFollowingMoodEvents(
                     userId,
-                    null,
-                    null,
-                    null,
+                    FOLLOWING_EVENTS_PER_USER,
                     events -> {
-                        List<MoodEvent> publicEvents = new ArrayList<>();
-                        for (MoodEvent e : events) {
-                            if ("Public".equalsIgnoreCase(e.getPostType())) {
-                                publicEvents.add(e);
-                            }
-                        }
-                        setMoodEvents(publicEvents);
+                        setMoodEvents(events);
                         if (callback != null) {
                             callback.run();
                         }
@@ -139,6 +419,219 @@ public class MoodHistory {
     }
 
 
+    /**
+     * Apply the changes stored since the watermark, or reload the first page if
+     * there is no watermark yet or it is too old to trust
+     */
+    private void refreshPersonal(Runnable onLoaded) {
+        long requestedAt = System.currentTimeMillis();
+        if (watermark == null || requestedAt - watermarkCheckedAt > MoodRepository.TOMBSTONE_TTL_MS) {
+            // Tombstones older than the TTL are gone, so deletions could be missed
+            loadFirstPage(onLoaded);
+            return;
+        }
+        int generation = pageGeneration;
+        repository.getMoodEventsChangedSince(userId, watermark, changed -> {
+            if (generation != pageGeneration) {
+                return;
+            }
+            if (changed != null) {
+                applyDelta(changed);
+                watermarkCheckedAt = requestedAt;
+                if (!changed.isEmpty()) {
+                    persist();
+                }
+            }
+            // On failure keep what we have; the next refresh asks again from the same watermark
+            onLoaded.run();
+        });
+    }
+
+    /**
+     * Merge changed events into the cached list. Changes to events older than the
+     * pages loaded so far are skipped; loadNextPage fetches them fresh.
+     */
+    private void applyDelta(List<MoodEvent> changed) {
+        List<MoodChange> applied = new ArrayList<>();
+        for (MoodEvent event : changed) {
+            advanceWatermark(event);
+            if (hasLocalChanges(event.getId())) {
+                // The queued write wins locally until it has been synced
+                continue;
+            }
+            int oldIndex = indexOf(event.getId());
+            if (event.isDeleted()) {
+                if (oldIndex >= 0) {
+                    moodEvents.remove(oldIndex);
+                    applied.add(new MoodChange(MoodChange.Type.REMOVED, event, oldIndex, -1));
+                }
+                continue;
+            }
+            if (oldIndex < 0 && hasMorePages && isPastCursor(event)) {
+                continue;
+            }
+            if (oldIndex >= 0) {
+                moodEvents.remove(oldIndex);
+            }
+            int newIndex = insertionIndex(event);
+            moodEvents.add(newIndex, event);
+            applied.add(oldIndex >= 0
+                    ? new MoodChange(MoodChange.Type.MODIFIED, event, oldIndex, newIndex)
+                    : new MoodChange(MoodChange.Type.ADDED, event, -1, newIndex));
+        }
+        notifyChangeListeners(applied);
+    }
+
+    /**
+     * @return true if eventId has local writes not yet on the server, which a
+     * delta must not overwrite
+     */
+    protected boolean hasLocalChanges(String eventId) {
+        return false;
+    }
+
+    /**
+     * Lay local writes not yet on the server over events read from the server or
+     * cache, before they replace the cached list
+     *
+     * @return The events to show, newest first
+     */
+    protected List<MoodEvent> withLocalChanges(List<MoodEvent> events) {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * @return true if event sorts after the last loaded page, newest first with ties
+     * by id, so it belongs to a page not fetched yet
+     */
+    private boolean isPastCursor(MoodEvent event) {
+        if (pageCursor == null) {
+            return false;
+        }
+        long time = timeOf(event);
+        long cursorTime = pageCursor.toDate().getTime();
+        if (time != cursorTime) {
+            return time < cursorTime;
+        }
+        return pageCursorId != null && event.getId().compareTo(pageCursorId) > 0;
+    }
+
+    private void advanceWatermark(MoodEvent event) {
+        Timestamp updated = event.getServerUpdatedAt();
+        if (updated != null && (watermark == null || updated.compareTo(watermark) > 0)) {
+            watermark = updated;
+        }
+    }
+
+    /**
+     * Reset paging and fetch the newest page of personal events
+     */
+    private void loadFirstPage(Runnable onLoaded) {
+        int generation = ++pageGeneration;
+        long requestedAt = System.currentTimeMillis();
+        loadingPage = true;
+        repository.getMoodEventsPage(userId, null, null, PAGE_SIZE, events -> {
+            if (generation != pageGeneration) {
+                return;
+            }
+            loadingPage = false;
+            advanceCursor(events);
+
+            // Changes stored after this page was read have a later serverUpdatedAt than
+            // anything in it. Events without one predate delta tracking, so the newest
+            // event's timestamp (or the load time, for an empty page) bounds the delta;
+            // both come from a device clock, so they are moved back by the allowed skew.
+            watermark = null;
+            for (MoodEvent event : events) {
+                advanceWatermark(event);
+            }
+            if (watermark == null) {
+                long newest = !events.isEmpty() && events.get(0).getTimestamp() != null
+                        ? events.get(0).getTimestamp().toDate().getTime()
+                        : requestedAt;
+                watermark = new Timestamp(new Date(newest - WATERMARK_CLOCK_SKEW_MS));
+            }
+            watermarkCheckedAt = requestedAt;
+
+            setMoodEvents(withLocalChanges(withoutTombstones(events)));
+            onLoaded.run();
+        });
+    }
+
+    private static List<MoodEvent> withoutTombstones(List<MoodEvent> events) {
+        List<MoodEvent> live = new ArrayList<>(events.size());
+        for (MoodEvent event : events) {
+            if (!event.isDeleted()) {
+                live.add(event);
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Fetch the next page of personal events and append it to the cached list
+     *
+     * @param callback Run once the page has been appended
+     * @return false if there was nothing to load or a page is already in flight
+     */
+    public boolean loadNextPage(Runnable callback) {
+        if (mode != MODE_PERSONAL || !hasMorePages || loadingPage || pageCursor == null) {
+            return false;
+        }
+        int generation = pageGeneration;
+        loadingPage = true;
+        repository.getMoodEventsPage(userId, pageCursor, pageCursorId, PAGE_SIZE, events -> {
+            if (generation != pageGeneration) {
+                return;
+            }
+            loadingPage = false;
+
+            // Skip anything already cached, e.g. events added locally since the first page
+            Set<String> knownIds = new HashSet<>();
+            for (MoodEvent e : moodEvents) {
+                knownIds.add(e.getId());
+            }
+            List<MoodEvent> merged = new ArrayList<>(moodEvents);
+            for (MoodEvent e : withoutTombstones(events)) {
+                if (knownIds.add(e.getId())) {
+                    merged.add(e);
+                }
+            }
+            setMoodEvents(withLocalChanges(merged));
+            advanceCursor(events);
+            if (callback != null) {
+                callback.run();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return true if older personal events remain on the server
+     */
+    public boolean hasMorePages() {
+        return hasMorePages;
+    }
+
+    /**
+     * @return true while a page request is in flight
+     */
+    public boolean isLoadingPage() {
+        return loadingPage;
+    }
+
+    private void advanceCursor(List<MoodEvent> page) {
+        hasMorePages = page.size() >= PAGE_SIZE;
+        if (!page.isEmpty()) {
+            MoodEvent last = page.get(page.size() - 1);
+            if (last.getTimestamp() != null) {
+                pageCursor = last.getTimestamp();
+                pageCursorId = last.getId();
+            }
+        } else if (pageCursor == null) {
+            hasMorePages = false;
+        }
+    }
 
     /**
      * Get filtered events based on criteria
@@ -153,28 +646,65 @@ public class MoodHistory {
             Date startDate,
             String searchText,
             FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        getFilteredEvents(new MoodQuery(null, startDate, emotionalState, searchText), callback);
+    }
 
+    /**
+     * Get every event of this history matching a query from the repository, including
+     * those on pages not loaded yet. Following histories only match public events.
+     *
+     * @param callback Receives the matching events, newest first
+     */
+    public void getFilteredEvents(MoodQuery query, FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
         if (mode == MODE_PERSONAL) {
-            firebaseDB.getMoodEvents(userId, startDate, emotionalState, searchText, callback);
+            repository.queryMoodEvents(userId, query, events -> {
+                // Queued writes the server hasn't seen yet, filtered like the rest
+                List<MoodEvent> matching = new ArrayList<>();
+                for (MoodEvent event : withLocalChanges(events)) {
+                    if (query.matches(event)) {
+                        matching.add(event);
+                    }
+                }
+                callback.onCallback(matching);
+            });
         } else {
-            firebaseDB.getFollowingMoodEvents(
+            repository.queryFollowingMoodEvents(
                     userId,
-                    startDate,
-                    emotionalState,
-                    searchText,
-                    events -> {
-                        List<MoodEvent> publicEvents = new ArrayList<>();
-                        for (MoodEvent e : events) {
-                            if ("Public".equalsIgnoreCase(e.getPostType())) {
-                                publicEvents.add(e);
-                            }
-                        }
-                        callback.onCallback(publicEvents);
-                    }
+                    MoodQuery.publicOnly(query.getStartDate(), query.getEmotionalState(), query.getSearchText()),
+                    callback
             );
         }
     }
 
+    /**
+     * Filter the events this history holds without a network round trip, using the
+     * cache's indexes when there is a cache
+     *
+     * @param query Time, emotional state, post type and trigger filters, or null for all
+     * @param geohashCells Only return events located in one of these cells, or null for any
+     * @param callback Receives the matching events, newest first
+     */
+    public void getCachedEvents(MoodQuery query, List<String> geohashCells,
+                                FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        if (cache != null) {
+            cache.query(Collections.singletonList(getCacheKey()), query, geohashCells, callback);
+            return;
+        }
+        List<MoodEvent> matching = new ArrayList<>();
+        for (MoodEvent event : moodEvents) {
+            if (query != null && !query.matches(event)) {
+                continue;
+            }
+            if (geohashCells != null && !(event.hasLocation() && Geohash.inAnyCell(
+                    Geohash.encode(event.getLatitude(), event.getLongitude(), Geohash.MAX_PRECISION),
+                    geohashCells))) {
+                continue;
+            }
+            matching.add(event);
+        }
+        callback.onCallback(matching);
+    }
+
     /**
      * Get all events (unfiltered)
      *
@@ -209,7 +739,7 @@ public class MoodHistory {
         Date oneWeekAgo = new Date(System.currentTimeMillis() - 7L * 24 * 60 * 60 * 1000);
 
         if (mode == MODE_PERSONAL) {
-            firebaseDB.getMoodEvents(
+            repository.getMoodEvents(
                     userId,
                     oneWeekAgo,
                     null,
@@ -223,27 +753,21 @@ public class MoodHistory {
                     }
             );
         } else {
-            firebaseDB.getFollowingMoodEvents(
+            repository.queryFollowingMoodEvents(
                     userId,
-                    oneWeekAgo,
-                    null,
-                    null,
+                    MoodQuery.publicOnly(oneWeekAgo, null, null),
                     events -> {
-                        List<MoodEvent> publicEvents = new ArrayList<>();
-                        for (MoodEvent e : events) {
-                            if ("Public".equalsIgnoreCase(e.getPostType())) {
-                                publicEvents.add(e);
-                            }
-                        }
-                        if (publicEvents.size() > limit) {
-                            publicEvents = publicEvents.subList(0, limit);
+                        List<MoodEvent> limitedEvents = events;
+                        if (events.size() > limit) {
+                            limitedEvents = events.subList(0, limit);
                         }
-                        callback.onCallback(publicEvents);
+                        callback.onCallback(limitedEvents);
                     }
             );
         }
     }
     protected void setMoodEvents(List<MoodEvent> events) {
         this.moodEvents = new ArrayList<>(events);
+        persist();
     }
 }
@@ -6,23 +6,94 @@
 package com.example.team_16.models;
 
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodConflictResolver;
+import com.example.team_16.database.MoodEventCache;
+import com.example.team_16.database.MoodOperation;
+import com.example.team_16.database.MoodOperationJournal;
+import com.example.team_16.database.MoodRepository;
+import com.example.team_16.database.SyncScheduler;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
-public class PersonalMoodHistory extends MoodHistory {
-    private final List<PendingOperation> pendingOperations;
+public class PersonalMoodHistory extends MoodHistory implements SyncScheduler.SyncTarget {
+    // At most one operation per event id, so sync cost follows events touched rather than edits made
+    private final Map<String, MoodOperation> pendingOperations;
+    private final MoodOperationJournal journal;
+    // Until the journal has been read, a sync could compact away operations not yet replayed
+    private boolean replayed;
+    private Runnable onOperationQueued;
+
+    // Events without a timestamp sort first, as MoodHistory places them
+    private static final Comparator<MoodEvent> NEWEST_FIRST = Comparator.comparingLong(
+            (MoodEvent event) -> event.getTimestamp() != null
+                    ? event.getTimestamp().toDate().getTime()
+                    : Long.MAX_VALUE).reversed();
 
     /**
      * Constructor for PersonalMoodHistory
      *
      * @param userId The user ID this history belongs to
-     * @param firebaseDB The Firebase database instance
+     * @param repository The repository to read and write events through
+     */
+    public PersonalMoodHistory(String userId, MoodRepository repository) {
+        this(userId, repository, null);
+    }
+
+    /**
+     * Constructor with a journal that keeps queued operations across restarts
+     *
+     * @param userId The user ID this history belongs to
+     * @param repository The repository to read and write events through
+     * @param journal Where queued operations are persisted, or null to keep them in memory only
      */
-    public PersonalMoodHistory(String userId, FirebaseDB firebaseDB) {
-        super(userId, MODE_PERSONAL, firebaseDB);
-        this.pendingOperations = new ArrayList<>();
+    public PersonalMoodHistory(String userId, MoodRepository repository, MoodOperationJournal journal) {
+        this(userId, repository, journal, null);
+    }
+
+    /**
+     * Constructor that also keeps the history itself on the device between launches
+     *
+     * @param cache Where the loaded events are kept, or null to start empty each launch
+     */
+    public PersonalMoodHistory(String userId, MoodRepository repository, MoodOperationJournal journal,
+                               MoodEventCache cache) {
+        super(userId, MODE_PERSONAL, repository, cache, false);
+        this.journal = journal;
+        this.pendingOperations = new LinkedHashMap<>();
+        if (journal != null) {
+            // Operations queued before the last shutdown are still owed to the server,
+            // and shown over whatever the first load brings
+            journal.replay(this::onReplayed);
+        } else {
+            replayed = true;
+            load();
+        }
+    }
+
+    private void onReplayed(List<MoodOperation> operations) {
+        // Anything queued while the journal was read goes after what it already held
+        Map<String, MoodOperation> merged = new LinkedHashMap<>();
+        for (MoodOperation operation : operations) {
+            MoodOperation.enqueue(merged, operation);
+        }
+        for (MoodOperation operation : pendingOperations.values()) {
+            MoodOperation.enqueue(merged, operation);
+        }
+        pendingOperations.clear();
+        pendingOperations.putAll(merged);
+        replayed = true;
+        load();
+
+        if (!operations.isEmpty() && onOperationQueued != null) {
+            onOperationQueued.run();
+        }
     }
 
     /**
@@ -37,17 +108,18 @@ public class PersonalMoodHistory extends MoodHistory {
         if (event.getId() == null || event.getId().isEmpty()) {
             event.setId(UUID.randomUUID().toString());
         }
+        event.setUpdatedAt(System.currentTimeMillis());
 
-        // Add to in-memory list
+        // Add to in-memory list; it is the newest event
         List<MoodEvent> events = getAllEvents();
-        events.add(event);
+        events.add(0, event);
         setMoodEvents(events);
 
         // Check if we're offline
-        FirebaseDB firebaseDB = getFirebaseDB();
-        if (!firebaseDB.isOnline()) {
+        MoodRepository repository = getRepository();
+        if (!repository.isOnline()) {
             // Queue the operation for later
-            queuePendingOperation(OperationType.ADD, event);
+            queuePendingOperation(MoodOperation.add(event));
             if (callback != null) {
                 callback.onCallback(true); // Local operation succeeded
             }
@@ -55,10 +127,10 @@ public class PersonalMoodHistory extends MoodHistory {
         }
 
         // If online, directly write to Firestore
-        firebaseDB.addMoodEvent(event, success -> {
+        repository.addMoodEvent(event, success -> {
             if (!success) {
                 // If Firebase write fails, queue for later retry
-                queuePendingOperation(OperationType.ADD, event);
+                queuePendingOperation(MoodOperation.add(event));
             }
             if (callback != null) {
                 callback.onCallback(success);
@@ -86,21 +158,25 @@ public class PersonalMoodHistory extends MoodHistory {
         updates.setId(eventId);
         updates.setUserID(getUserId());
 
-        // Update in-memory list
         MoodEvent existingEvent = getEventById(eventId);
-        if (existingEvent != null) {
-            List<MoodEvent> events = getAllEvents();
-            int index = events.indexOf(existingEvent);
-            if (index >= 0) {
-                events.set(index, updates);
-                setMoodEvents(events);
+        if (existingEvent == null) {
+            if (callback != null) {
+                callback.onCallback(false);
             }
+            return;
+        }
+        updates.setUpdatedAt(System.currentTimeMillis());
+        updates.setVersion(existingEvent.getVersion() + 1);
 
-            // Directly update Firestore
-            getFirebaseDB().updateMoodEvent(eventId, updates, callback);
-        } else if (callback != null) {
-            callback.onCallback(false);
+        // Update in-memory list
+        List<MoodEvent> events = getAllEvents();
+        int index = events.indexOf(existingEvent);
+        if (index >= 0) {
+            events.set(index, updates);
+            setMoodEvents(events);
         }
+
+        writeOrQueue(MoodOperation.update(updates, existingEvent), callback);
     }
 
     /**
@@ -113,6 +189,41 @@ public class PersonalMoodHistory extends MoodHistory {
         editEvent(eventId, updates, null);
     }
 
+    /**
+     * Point an event at a photo whose upload has been confirmed, replacing any earlier
+     * photo. The change is written like any other edit, so it is queued while offline.
+     *
+     * @param photoUrl Download URL of the photo, stored so it never has to be looked up
+     * @param callback Receives the event as it was before, or null if it no longer exists
+     */
+    public void attachPhoto(String eventId, String photoFilename, String photoUrl,
+                            FirebaseDB.FirebaseCallback<MoodEvent> callback) {
+        MoodEvent loaded = getEventById(eventId);
+        if (loaded != null) {
+            editEvent(eventId, withPhoto(loaded, photoFilename, photoUrl), success -> callback.onCallback(loaded));
+            return;
+        }
+
+        // Not among the pages loaded so far
+        getRepository().getMoodEventFromID(eventId, existing -> {
+            if (existing == null || existing.getId() == null) {
+                callback.onCallback(null);
+                return;
+            }
+            MoodEvent updates = withPhoto(existing, photoFilename, photoUrl);
+            updates.setUpdatedAt(System.currentTimeMillis());
+            updates.setVersion(existing.getVersion() + 1);
+            writeOrQueue(MoodOperation.update(updates, existing), success -> callback.onCallback(existing));
+        });
+    }
+
+    private static MoodEvent withPhoto(MoodEvent event, String photoFilename, String photoUrl) {
+        MoodEvent updated = event.copy();
+        updated.setPhotoFilename(photoFilename);
+        updated.setPhotoUrl(photoUrl);
+        return updated;
+    }
+
     /**
      * Delete a mood event
      *
@@ -121,16 +232,20 @@ public class PersonalMoodHistory extends MoodHistory {
      */
     public void deleteEvent(String eventId, FirebaseDB.FirebaseCallback<Boolean> callback) {
         MoodEvent existingEvent = getEventById(eventId);
-        if (existingEvent != null) {
-            List<MoodEvent> events = getAllEvents();
-            events.remove(existingEvent);
-            setMoodEvents(events);
-
-            // Directly delete from Firestore
-            getFirebaseDB().deleteMoodEvent(eventId, callback);
-        } else if (callback != null) {
-            callback.onCallback(false);
+        if (existingEvent == null) {
+            if (callback != null) {
+                callback.onCallback(false);
+            }
+            return;
         }
+
+        List<MoodEvent> events = getAllEvents();
+        events.remove(existingEvent);
+        setMoodEvents(events);
+
+        MoodEvent deleted = existingEvent.copy();
+        deleted.setUpdatedAt(System.currentTimeMillis());
+        writeOrQueue(MoodOperation.delete(deleted, existingEvent), callback);
     }
 
     /**
@@ -142,55 +257,69 @@ public class PersonalMoodHistory extends MoodHistory {
         deleteEvent(eventId, null);
     }
 
-    public void getMonthlyEvents(int year, int month, Object o) {
-    }
-
     /**
-     * Enumeration of operation types for pending operations
+     * Send an edit or delete straight to the repository, or queue it if we are offline,
+     * the write fails, or an earlier write to the same event is still queued (so the
+     * two reach the server in order)
      */
-    private enum OperationType {
-        ADD,
-        UPDATE,
-        DELETE
-    }
-
-    /**
-     * Class to represent a pending operation for offline functionality
-     */
-    private static class PendingOperation {
-        private final OperationType type;
-        private final MoodEvent event;
-
-        public PendingOperation(OperationType type, MoodEvent event) {
-            this.type = type;
-            this.event = event;
+    private void writeOrQueue(MoodOperation operation, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        MoodRepository repository = getRepository();
+        // Before the replay, the journal may still hold an operation on this event
+        if (!replayed || !repository.isOnline() || pendingOperations.containsKey(operation.getEventId())) {
+            queuePendingOperation(operation);
+            if (callback != null) {
+                callback.onCallback(true); // Local operation succeeded
+            }
+            return;
         }
 
-        public OperationType getType() {
-            return type;
+        FirebaseDB.FirebaseCallback<Boolean> onWritten = success -> {
+            if (!success) {
+                queuePendingOperation(operation);
+            }
+            if (callback != null) {
+                callback.onCallback(success);
+            }
+        };
+        if (operation.getType() == MoodOperation.Type.DELETE) {
+            repository.deleteMoodEvent(operation.getEventId(), onWritten);
+        } else {
+            repository.updateMoodEvent(operation.getEventId(), operation.getEvent(), onWritten);
         }
+    }
 
-        public MoodEvent getEvent() {
-            return event;
-        }
+    public void getMonthlyEvents(int year, int month, Object o) {
     }
 
     /**
      * Queue a pending operation for later execution when online
      *
-     * @param type The type of operation
-     * @param event The mood event involved
+     * @param operation The operation to retry
+     */
+    private void queuePendingOperation(MoodOperation operation) {
+        MoodOperation.enqueue(pendingOperations, operation);
+        if (journal != null) {
+            journal.append(operation);
+        }
+        if (onOperationQueued != null) {
+            onOperationQueued.run();
+        }
+    }
+
+    /**
+     * Set a listener run whenever an operation is queued, e.g. to schedule a sync
      */
-    private void queuePendingOperation(OperationType type, MoodEvent event) {
-        pendingOperations.add(new PendingOperation(type, event));
+    public void setOnOperationQueued(Runnable listener) {
+        this.onOperationQueued = listener;
     }
 
     /**
      * Sync pending changes with Firebase
-     * Executes all queued operations when online
+     * Commits all queued operations in batches when online
      *
      * @param callback Callback to handle overall result
      */
+    @Override
     public void syncPendingChanges(FirebaseDB.FirebaseCallback<Boolean> callback) {
         if (pendingOperations.isEmpty()) {
             if (callback != null) {
@@ -199,70 +328,130 @@ public class PersonalMoodHistory extends MoodHistory {
             return;
         }
 
-        FirebaseDB firebaseDB = getFirebaseDB();
-        if (!firebaseDB.isOnline()) {
+        MoodRepository repository = getRepository();
+        if (!replayed || !repository.isOnline()) {
             if (callback != null) {
                 callback.onCallback(false);
             }
             return;
         }
 
-        List<PendingOperation> operationsToProcess = new ArrayList<>(pendingOperations);
+        List<MoodOperation> operationsToProcess = new ArrayList<>(pendingOperations.values());
         pendingOperations.clear();
 
-        final int[] completedOperations = {0};
-        final boolean[] allSuccessful = {true};
+        // Edits and deletes are checked against the current server copies first
+        Set<String> existingIds = new LinkedHashSet<>();
+        for (MoodOperation operation : operationsToProcess) {
+            if (operation.getType() != MoodOperation.Type.ADD) {
+                existingIds.add(operation.getEventId());
+            }
+        }
+        if (existingIds.isEmpty()) {
+            commitPendingOperations(operationsToProcess, callback);
+            return;
+        }
 
-        for (PendingOperation operation : operationsToProcess) {
-            switch (operation.getType()) {
-                case ADD:
-                    firebaseDB.addMoodEvent(operation.getEvent(), success -> {
-                        if (!success) {
-                            allSuccessful[0] = false;
-                            queuePendingOperation(operation.getType(), operation.getEvent());
-                        }
-                        completedOperations[0]++;
-                        checkAllOperationsComplete(operationsToProcess.size(), completedOperations[0], allSuccessful[0], callback);
-                    });
-                    break;
+        repository.getMoodEventsByIds(existingIds, serverCopies -> {
+            if (serverCopies == null) {
+                requeue(operationsToProcess);
+                if (callback != null) {
+                    callback.onCallback(false);
+                }
+                return;
+            }
 
-                case UPDATE:
-                    firebaseDB.updateMoodEvent(operation.getEvent().getId(), operation.getEvent(), success -> {
-                        if (!success) {
-                            allSuccessful[0] = false;
-                            queuePendingOperation(operation.getType(), operation.getEvent());
-                        }
-                        completedOperations[0]++;
-                        checkAllOperationsComplete(operationsToProcess.size(), completedOperations[0], allSuccessful[0], callback);
-                    });
-                    break;
+            List<MoodOperation> resolved = new ArrayList<>();
+            for (MoodOperation operation : operationsToProcess) {
+                MoodOperation write = MoodConflictResolver.resolve(operation, serverCopies.get(operation.getEventId()));
+                if (write != null) {
+                    resolved.add(write);
+                }
+            }
+            commitPendingOperations(resolved, callback);
+        });
+    }
 
-                case DELETE:
-                    firebaseDB.deleteMoodEvent(operation.getEvent().getId(), success -> {
-                        if (!success) {
-                            allSuccessful[0] = false;
-                            queuePendingOperation(operation.getType(), operation.getEvent());
-                        }
-                        completedOperations[0]++;
-                        checkAllOperationsComplete(operationsToProcess.size(), completedOperations[0], allSuccessful[0], callback);
-                    });
-                    break;
+    private void commitPendingOperations(List<MoodOperation> operations, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        // Queued operations go out in as few batches as possible
+        getRepository().commitBatch(operations, results -> {
+            boolean allSuccessful = true;
+            List<MoodOperation> failed = new ArrayList<>();
+            for (MoodOperation.BatchResult result : results) {
+                if (!result.isSuccessful()) {
+                    allSuccessful = false;
+                    failed.addAll(result.getOperations());
+                }
             }
+            requeue(failed);
+
+            if (callback != null) {
+                callback.onCallback(allSuccessful);
+            }
+            // Refresh our data if everything was successful
+            if (allSuccessful) {
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Put operations that did not reach the server back in the queue, ahead of
+     * anything queued while they were in flight, and compact the journal to match
+     */
+    private void requeue(List<MoodOperation> failed) {
+        Map<String, MoodOperation> remaining = new LinkedHashMap<>();
+        for (MoodOperation operation : failed) {
+            MoodOperation.enqueue(remaining, operation);
+        }
+        for (MoodOperation operation : pendingOperations.values()) {
+            MoodOperation.enqueue(remaining, operation);
+        }
+        pendingOperations.clear();
+        pendingOperations.putAll(remaining);
+
+        // The journal only needs what is still owed
+        if (journal != null) {
+            journal.compact(new ArrayList<>(pendingOperations.values()));
         }
     }
 
+    @Override
+    protected boolean hasLocalChanges(String eventId) {
+        return pendingOperations.containsKey(eventId);
+    }
+
     /**
-     * Helper method to check if all operations are complete
+     * Queued adds and edits replace the server copies, queued deletes hide them.
+     * An edit to an event that isn't in events waits for the page holding it.
      */
-    private void checkAllOperationsComplete(int totalOperations, int completedOperations,
-                                            boolean allSuccessful, FirebaseDB.FirebaseCallback<Boolean> callback) {
-        if (completedOperations == totalOperations && callback != null) {
-            callback.onCallback(allSuccessful);
-            // Refresh our data if everything was successful
-            if (allSuccessful) {
-                refresh();
+    @Override
+    protected List<MoodEvent> withLocalChanges(List<MoodEvent> events) {
+        if (pendingOperations.isEmpty()) {
+            return new ArrayList<>(events);
+        }
+        Map<String, MoodEvent> byId = new LinkedHashMap<>();
+        for (MoodEvent event : events) {
+            byId.put(event.getId(), event);
+        }
+        for (MoodOperation operation : pendingOperations.values()) {
+            String eventId = operation.getEventId();
+            switch (operation.getType()) {
+                case ADD:
+                    byId.put(eventId, operation.getEvent());
+                    break;
+                case UPDATE:
+                    if (byId.containsKey(eventId)) {
+                        byId.put(eventId, operation.getEvent());
+                    }
+                    break;
+                case DELETE:
+                    byId.remove(eventId);
+                    break;
             }
         }
+        List<MoodEvent> result = new ArrayList<>(byId.values());
+        result.sort(NEWEST_FIRST);
+        return result;
     }
 
     /**
@@ -270,6 +459,7 @@ public class PersonalMoodHistory extends MoodHistory {
      *
      * @return true if there are pending operations, false otherwise
      */
+    @Override
     public boolean hasPendingChanges() {
         return !pendingOperations.isEmpty();
     }
@@ -9,6 +9,11 @@ package com.example.team_16.models;
 import androidx.annotation.NonNull;
 
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.LocalMoodStore;
+import com.example.team_16.database.MoodRepository;
+import com.example.team_16.database.PhotoUploadQueue;
+import com.example.team_16.database.SocialGraphRepository;
+import com.example.team_16.database.SyncScheduler;
 import com.example.team_16.utils.MoodAnalytics;
 
 import java.util.ArrayList;
@@ -16,6 +21,7 @@ import java.util.Calendar;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 /**
  * Represents a user in the mood tracking application
@@ -32,12 +38,23 @@ UserProfile {
     private String profileImageUrl;
 
     private final FirebaseDB firebaseDB;
+    private final MoodRepository moodRepository;
+    private final SocialGraphRepository socialGraph;
 
 
     // Mood-related components
     private final PersonalMoodHistory personalMoodHistory;
     private final MoodHistory followingMoodHistory;
 
+    // Flushes offline changes when the network is back; only the signed-in user has one
+    private SyncScheduler syncScheduler;
+
+    // Mood and profile photos staged for upload, and what uploads them in the background
+    private final PhotoUploadQueue photoUploads;
+    private SyncScheduler photoScheduler;
+
+    // Stands in for an event id while a profile photo waits in photoUploads
+    private static final String PROFILE_PHOTO_KEY = "profile";
 
 
     // New follow-related fields
@@ -46,14 +63,35 @@ UserProfile {
 
     public UserProfile(FirebaseDB firebaseDB, String id, String username,
                        String fullName, String email, String profileImageUrl) {
+        this(firebaseDB, firebaseDB, firebaseDB, id, username, fullName, email, profileImageUrl);
+    }
+
+    /**
+     * Constructor with explicit mood and social graph backends, e.g. an
+     * InMemoryMoodRepository for offline load tests
+     *
+     * @param firebaseDB Firebase instance used for auth and profile updates (may be null offline)
+     * @param moodRepository Backend for personal and following mood histories
+     * @param socialGraph Backend for follow requests and follow lists
+     */
+    public UserProfile(FirebaseDB firebaseDB, MoodRepository moodRepository,
+                       SocialGraphRepository socialGraph, String id, String username,
+                       String fullName, String email, String profileImageUrl) {
         this.firebaseDB = firebaseDB;
+        this.moodRepository = moodRepository;
+        this.socialGraph = socialGraph;
         this.id = id;
         this.username = username;
         this.fullName = fullName;
         this.email = email;
         this.profileImageUrl = profileImageUrl;
-        this.personalMoodHistory = new PersonalMoodHistory(id, firebaseDB);
-        this.followingMoodHistory = new MoodHistory(id, MoodHistory.MODE_FOLLOWING, firebaseDB);
+        // Only the signed-in user's histories, queued writes and staged photos are kept on the device
+        boolean signedIn = firebaseDB != null && id != null && id.equals(firebaseDB.getCurrentUserId());
+        LocalMoodStore cache = signedIn ? firebaseDB.getLocalMoodStore() : null;
+        this.personalMoodHistory = new PersonalMoodHistory(id, moodRepository,
+                signedIn ? firebaseDB.getPendingJournal(id) : null, cache);
+        this.followingMoodHistory = new MoodHistory(id, MoodHistory.MODE_FOLLOWING, moodRepository, cache);
+        this.photoUploads = signedIn ? firebaseDB.getPhotoUploadQueue(id) : null;
     }
     // Another constructor if profileImageUrl don't exist  at creation
     public UserProfile(FirebaseDB firebaseDB,
@@ -76,13 +114,8 @@ UserProfile {
                                         FirebaseDB.FirebaseCallback<UserProfile> callback) {
         firebaseDB.fetchUserById(userId, userData -> {
             if (userData != null) {
-                String username = (String) userData.get("username");
-                String fullName = (String) userData.get("fullName");
-                String email = (String) userData.get("email");
-                String profileImageUrl = (String) userData.get("profileImageUrl");
-
-                UserProfile profile = new UserProfile(firebaseDB, userId, username,
-                        fullName, email, profileImageUrl);
+                firebaseDB.getLocalMoodStore().putProfile(userId, userData);
+                UserProfile profile = fromUserData(firebaseDB, userId, userData);
                 profile.refreshFollowData(() -> callback.onCallback(profile));
             } else {
                 callback.onCallback(null);
@@ -90,15 +123,53 @@ UserProfile {
         });
     }
 
+    /**
+     * Rebuild the signed-in user's profile from the device alone, e.g. after process
+     * death, so screens can render before the network answers. The profile and
+     * follow lists are then refreshed in the background.
+     *
+     * @param callback Receives the profile, or null if none was saved for userId
+     */
+    public static void restoreCached(FirebaseDB firebaseDB,
+                                     String userId,
+                                     FirebaseDB.FirebaseCallback<UserProfile> callback) {
+        firebaseDB.getLocalMoodStore().getProfile(userId, userData -> {
+            if (userData == null) {
+                callback.onCallback(null);
+                return;
+            }
+            UserProfile profile = fromUserData(firebaseDB, userId, userData);
+            firebaseDB.fetchUserById(userId, freshData -> {
+                if (freshData != null) {
+                    firebaseDB.getLocalMoodStore().putProfile(userId, freshData);
+                    profile.username = (String) freshData.get("username");
+                    profile.fullName = (String) freshData.get("fullName");
+                    profile.email = (String) freshData.get("email");
+                    profile.profileImageUrl = (String) freshData.get("profileImageUrl");
+                }
+            });
+            profile.refreshFollowData(null);
+            callback.onCallback(profile);
+        });
+    }
+
+    private static UserProfile fromUserData(FirebaseDB firebaseDB, String userId, Map<String, Object> userData) {
+        String username = (String) userData.get("username");
+        String fullName = (String) userData.get("fullName");
+        String email = (String) userData.get("email");
+        String profileImageUrl = (String) userData.get("profileImageUrl");
+        return new UserProfile(firebaseDB, userId, username, fullName, email, profileImageUrl);
+    }
+
     // Follow-related Methods
     public void refreshFollowData(Runnable completion) {
-        firebaseDB.getSentFollowRequests(this.id, requests -> {
+        socialGraph.getSentFollowRequests(this.id, requests -> {
             pendingFollow.clear();
             for (Map<String, Object> request : requests) {
                 String toUserId = (String) request.get("toUserId");
                 pendingFollow.add(toUserId);
             }
-            firebaseDB.getFollowingList(this.id, followingList -> {
+            socialGraph.getFollowingList(this.id, followingList -> {
                 userFollowing.clear();
                 if (followingList != null) {
                     userFollowing.addAll(followingList);
@@ -108,6 +179,27 @@ UserProfile {
         });
     }
 
+    /**
+     * Re-check whether this user's request to one target is still pending, with a
+     * single document read instead of reloading every sent request
+     *
+     * @param targetUserId User the request was sent to
+     * @param callback Receives true if the request is pending
+     */
+    public void refreshPendingFollow(String targetUserId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        socialGraph.getFollowRequestStatus(this.id, targetUserId, status -> {
+            boolean pending = "pending".equals(status);
+            if (pending) {
+                if (!pendingFollow.contains(targetUserId)) {
+                    pendingFollow.add(targetUserId);
+                }
+            } else {
+                pendingFollow.remove(targetUserId);
+            }
+            callback.onCallback(pending);
+        });
+    }
+
     public List<String> getPendingFollow() {
         return new ArrayList<>(pendingFollow);
     }
@@ -117,7 +209,7 @@ UserProfile {
     }
 
     public void searchUsersByUsername(String query, FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback) {
-        firebaseDB.searchUsersByUsername(query, callback);
+        socialGraph.searchUsersByUsername(query, callback);
     }
 
     /**
@@ -127,7 +219,7 @@ UserProfile {
      * @param callback Callback to handle follow request result
      */
     public void sendFollowRequest(String targetUserId, FirebaseDB.FirebaseCallback<Boolean> callback) {
-        firebaseDB.sendFollowRequest(this.id, targetUserId, success -> {
+        socialGraph.sendFollowRequest(this.id, targetUserId, success -> {
             if (success) {
                 pendingFollow.add(targetUserId);
             }
@@ -143,7 +235,7 @@ UserProfile {
      * @param callback Callback to handle response result
      */
     public void respondToFollowRequest(String requestId, boolean accept, FirebaseDB.FirebaseCallback<Boolean> callback) {
-        firebaseDB.respondToFollowRequest(requestId, accept, callback);
+        socialGraph.respondToFollowRequest(requestId, accept, callback);
     }
 
     /**
@@ -152,7 +244,7 @@ UserProfile {
      * @param callback Callback to receive list of followed user IDs
      */
     public void getFollowingList(FirebaseDB.FirebaseCallback<List<String>> callback) {
-        firebaseDB.getFollowingList(this.id, callback);
+        socialGraph.getFollowingList(this.id, callback);
     }
 
     /**
@@ -161,7 +253,7 @@ UserProfile {
      * @param callback Callback to receive list of follower user IDs
      */
     public void getFollowers(FirebaseDB.FirebaseCallback<List<String>> callback) {
-        firebaseDB.getFollowersOfUser(this.id, callback);
+        socialGraph.getFollowersOfUser(this.id, callback);
     }
 
     /**
@@ -171,7 +263,7 @@ UserProfile {
      * @param callback Callback to handle unfollow result
      */
     public void unfollowUser(String targetUserId, FirebaseDB.FirebaseCallback<Boolean> callback) {
-        firebaseDB.unfollowUser(this.id, targetUserId, callback);
+        socialGraph.unfollowUser(this.id, targetUserId, callback);
     }
 
     /**
@@ -180,7 +272,7 @@ UserProfile {
      * @param callback Callback to receive list of pending follow requests
      */
     public void getPendingFollowRequests(FirebaseDB.FirebaseCallback<List<Map<String, Object>>> callback) {
-        firebaseDB.getPendingFollowRequests(this.id, callback);
+        socialGraph.getPendingFollowRequests(this.id, callback);
     }
 
     /**
@@ -248,6 +340,7 @@ UserProfile {
      * @param callback Callback to handle result
      */
     public void deleteMoodEvent(String eventId, FirebaseDB.FirebaseCallback<Boolean> callback) {
+        cancelMoodPhoto(eventId);
         personalMoodHistory.deleteEvent(eventId, callback);
     }
 
@@ -260,6 +353,83 @@ UserProfile {
         deleteMoodEvent(eventId, null);
     }
 
+    /**
+     * Stage a compressed photo for a mood event. The photo is uploaded in the background,
+     * and the event's photoFilename and photoUrl are only set once the upload is confirmed;
+     * until then the event keeps any photo it already had.
+     *
+     * @param event Event the photo belongs to; given an id if it has none yet
+     * @param photoData Compressed JPEG bytes
+     * @return false if the photo could not be staged
+     */
+    public boolean stageMoodPhoto(MoodEvent event, byte[] photoData) {
+        if (photoUploads == null) {
+            return false;
+        }
+        if (event.getId() == null || event.getId().isEmpty()) {
+            event.setId(UUID.randomUUID().toString());
+        }
+        // A newer photo supersedes one still waiting
+        photoUploads.cancel(event.getId());
+        String storagePath = "images/" + id + "_" + System.currentTimeMillis() + "_mood.jpg";
+        return photoUploads.enqueue(event.getId(), storagePath, photoData);
+    }
+
+    /**
+     * Drop any photo still waiting to be uploaded for an event
+     */
+    public void cancelMoodPhoto(String eventId) {
+        if (photoUploads != null) {
+            photoUploads.cancel(eventId);
+        }
+    }
+
+    /**
+     * Stage a new profile photo. It is uploaded in the background, resuming across
+     * dropped connections and restarts, and becomes the profile image once confirmed.
+     *
+     * @param photoData Image bytes
+     * @return false if the photo could not be staged
+     */
+    public boolean stageProfilePhoto(byte[] photoData) {
+        if (photoUploads == null) {
+            return false;
+        }
+        photoUploads.cancel(PROFILE_PHOTO_KEY);
+        String storagePath = "profileImages/" + id + "_" + System.currentTimeMillis();
+        return photoUploads.enqueue(PROFILE_PHOTO_KEY, storagePath, photoData);
+    }
+
+    /**
+     * Commit a confirmed upload to its event, and delete whichever photo it replaced,
+     * or the upload itself if the event is gone
+     */
+    private void onPhotoUploaded(String eventId, String storagePath, String downloadUrl) {
+        if (PROFILE_PHOTO_KEY.equals(eventId)) {
+            onProfilePhotoUploaded(downloadUrl);
+            return;
+        }
+        personalMoodHistory.attachPhoto(eventId, storagePath, downloadUrl, previous -> {
+            if (previous == null) {
+                firebaseDB.deletePhoto(storagePath);
+            } else if (previous.getPhotoFilename() != null
+                    && !previous.getPhotoFilename().equals(storagePath)) {
+                firebaseDB.deletePhoto(previous.getPhotoFilename());
+            }
+        });
+    }
+
+    /**
+     * Point the profile at a confirmed profile photo, leaving the other fields as they are
+     */
+    private void onProfilePhotoUploaded(String imageUrl) {
+        firebaseDB.updateUserProfile(id, null, null, null, imageUrl, success -> {
+            if (success) {
+                profileImageUrl = imageUrl;
+            }
+        });
+    }
+
     /**
      * Get personal mood history
      *
@@ -302,6 +472,41 @@ UserProfile {
         personalMoodHistory.syncPendingChanges(null);
     }
 
+    /**
+     * Flush pending changes and upload staged photos in the background whenever they
+     * are queued or the network comes back, until stopBackgroundSync is called
+     */
+    public void startBackgroundSync() {
+        if (firebaseDB == null || photoUploads == null || syncScheduler != null) {
+            return;
+        }
+        syncScheduler = new SyncScheduler(firebaseDB.getConnectivity(), personalMoodHistory);
+        personalMoodHistory.setOnOperationQueued(syncScheduler::requestSync);
+        syncScheduler.start();
+
+        photoScheduler = new SyncScheduler(firebaseDB.getConnectivity(), photoUploads);
+        photoUploads.setUploadListener(this::onPhotoUploaded);
+        photoUploads.setOnUploadQueued(photoScheduler::requestSync);
+        photoScheduler.start();
+    }
+
+    /**
+     * Stop background syncing; queued changes stay in the journal for the next session
+     */
+    public void stopBackgroundSync() {
+        if (syncScheduler == null) {
+            return;
+        }
+        personalMoodHistory.setOnOperationQueued(null);
+        syncScheduler.stop();
+        syncScheduler = null;
+
+        photoUploads.setOnUploadQueued(null);
+        photoUploads.setUploadListener(null);
+        photoScheduler.stop();
+        photoScheduler = null;
+    }
+
     /**
      * Check if there are pending changes in personal mood history
      *
@@ -318,6 +523,7 @@ UserProfile {
      *
      * @param fullName New full name
      * @param email New email address
+     * @param profileImageUrl New image URL, or null to keep the current one
      * @param callback Callback to handle update result
      */
     public void updateProfile(String fullName,
@@ -331,7 +537,9 @@ UserProfile {
                 this.fullName = fullName;
                 this.email = email;
                 this.username = username;
-                this.profileImageUrl = profileImageUrl;
+                if (profileImageUrl != null) {
+                    this.profileImageUrl = profileImageUrl;
+                }
             }
             if (callback != null) {
                 callback.onCallback(success);
@@ -390,6 +598,32 @@ UserProfile {
         return firebaseDB;
     }
 
+    /**
+     * Get the mood event backend used by this profile's histories
+     *
+     * @return MoodRepository instance
+     */
+    public MoodRepository getMoodRepository() {
+        return moodRepository;
+    }
+
+    /**
+     * Get the follow graph backend used by this profile
+     *
+     * @return SocialGraphRepository instance
+     */
+    public SocialGraphRepository getSocialGraph() {
+        return socialGraph;
+    }
+
+    /**
+     * Detach the live listeners of both mood histories
+     */
+    public void stopListening() {
+        personalMoodHistory.stopListening();
+        followingMoodHistory.stopListening();
+    }
+
     /**
      * Sign out the current user
      */
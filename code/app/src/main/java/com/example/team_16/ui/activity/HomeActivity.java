@@ -80,6 +80,29 @@ public class HomeActivity extends AppCompatActivity implements
 
         // Check for a valid user session
         UserProfile userProfile = ((MoodTrackerApp) getApplication()).getCurrentUserProfile();
+        if (userProfile == null && firebaseDB.getCurrentUserId() != null) {
+            // Process was killed but the session survived; start from the on-device copy
+            UserProfile.restoreCached(firebaseDB, firebaseDB.getCurrentUserId(), restored -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                if (restored != null) {
+                    ((MoodTrackerApp) getApplication()).setCurrentUserProfile(restored);
+                }
+                showStartScreen(restored, savedInstanceState);
+            });
+        } else {
+            showStartScreen(userProfile, savedInstanceState);
+        }
+
+        // Handle back press logic
+        setupBackPressHandling();
+    }
+
+    /**
+     * Show the main navigation for a signed-in user, otherwise the entry or login screen
+     */
+    private void showStartScreen(UserProfile userProfile, Bundle savedInstanceState) {
         if (userProfile == null) {
             // Not logged in, first check if we should show entry (first launch)
             if (isFirstLaunch()) {
@@ -91,11 +114,9 @@ public class HomeActivity extends AppCompatActivity implements
         } else {
             // User is logged in, set up main navigation
             isLoggedIn = true;
+            userProfile.startBackgroundSync();
             setupMainNavigation(savedInstanceState);
         }
-
-        // Handle back press logic
-        setupBackPressHandling();
     }
 
     /**
@@ -133,6 +154,7 @@ public class HomeActivity extends AppCompatActivity implements
             if (userProfile != null) {
                 // Store the user profile in the application
                 ((MoodTrackerApp) getApplication()).setCurrentUserProfile(userProfile);
+                userProfile.startBackgroundSync();
 
                 // Update login state
                 isLoggedIn = true;
@@ -572,8 +594,13 @@ public class HomeActivity extends AppCompatActivity implements
      * Log out the user and go back to the login screen.
      */
     public void logout() {
-        // Clear the user profile
-        ((MoodTrackerApp) getApplication()).clearCurrentUserProfile();
+        // Stop live updates and clear the user profile
+        MoodTrackerApp app = (MoodTrackerApp) getApplication();
+        if (app.getCurrentUserProfile() != null) {
+            app.getCurrentUserProfile().stopListening();
+            app.getCurrentUserProfile().stopBackgroundSync();
+        }
+        app.clearCurrentUserProfile();
         FirebaseDB.getInstance(this).logout();
 
         // Update login state
@@ -10,7 +10,6 @@ package com.example.team_16.ui.adapters;
 import android.app.Activity;
 import android.content.Context;
 import android.os.Build;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -28,6 +27,8 @@ import com.bumptech.glide.request.RequestOptions;
 
 import com.example.team_16.R;
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.models.AuthorSnapshot;
 import com.example.team_16.models.MoodEvent;
 
 
@@ -109,44 +110,35 @@ public class FeedAdapter extends RecyclerView.Adapter<FeedAdapter.FeedViewHolder
 
         if (event.getPhotoFilename() != null) {
             holder.mood_image_view.setVisibility(View.VISIBLE);
-            Log.e("log", "images/" + event.getUserID() + "_mood.jpg");
-            FirebaseDB.getInstance(context).getReference(event.getPhotoFilename())
-                    .getDownloadUrl()
-                    .addOnSuccessListener(uri -> {
-                        Glide.with(((Activity) context))
-                                .load(uri)
-                                .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
-                                .into(holder.mood_image_view);
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(((Activity) context), "Failed to load image", Toast.LENGTH_SHORT).show();
-                    });
+            // Stored URL, or a one-time lookup for older events
+            FirebaseDB.getInstance(context).getPhotoUrlResolver().resolve(event, url -> {
+                if (url == null) {
+                    Toast.makeText(((Activity) context), "Failed to load image", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                Glide.with(((Activity) context))
+                        .load(url)
+                        .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
+                        .into(holder.mood_image_view);
+            });
         } else {
             holder.mood_image_view.setVisibility(View.GONE);
         }
 
-        FirebaseDB.getInstance(context).fetchUserById(event.getUserID(), userData -> {
-            if (userData != null) {
-                String fullName = (String) userData.get("fullName");
-                String username = "@" + userData.get("username");
-                holder.first_name_last_name_view.setText(fullName != null ? fullName : "Unknown");
-                holder.profile_username_view.setText(username);
-
-                String profileImageUrl = (String) userData.get("profileImageUrl");
-                if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
-                    Glide.with(context)
-                            .load(profileImageUrl)
-                            .placeholder(R.drawable.image)
-                            .circleCrop()
-                            .into(holder.profile_picture_view);
+        AuthorSnapshot author = event.getAuthor();
+        if (author != null) {
+            bindAuthor(holder, author.getFullName(), author.getUsername(), author.getProfileImageUrl());
+        } else {
+            // Events written before author snapshots still need a lookup
+            FirebaseDB.getInstance(context).fetchUserSummary(event.getUserID(), user -> {
+                if (user != null) {
+                    bindAuthor(holder, user.getFullName(), user.getUsername(), user.getProfileImageUrl());
                 } else {
-                    holder.profile_picture_view.setImageResource(R.drawable.image);
+                    holder.first_name_last_name_view.setText(R.string.unknown_user);
+                    holder.profile_username_view.setText(R.string.unknown);
                 }
-            } else {
-                holder.first_name_last_name_view.setText(R.string.unknown_user);
-                holder.profile_username_view.setText(R.string.unknown);
-            }
-        });
+            });
+        }
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             LocalDateTime currentDateTime = LocalDateTime.now();
@@ -182,6 +174,21 @@ public class FeedAdapter extends RecyclerView.Adapter<FeedAdapter.FeedViewHolder
         holder.profile_picture_view.setOnClickListener(profileTap);
     }
 
+    private void bindAuthor(FeedViewHolder holder, String fullName, String username, String profileImageUrl) {
+        holder.first_name_last_name_view.setText(fullName != null ? fullName : "Unknown");
+        holder.profile_username_view.setText("@" + username);
+
+        if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
+            Glide.with(context)
+                    .load(profileImageUrl)
+                    .placeholder(R.drawable.image)
+                    .circleCrop()
+                    .into(holder.profile_picture_view);
+        } else {
+            holder.profile_picture_view.setImageResource(R.drawable.image);
+        }
+    }
+
     @Override
     public int getItemCount() {
         return moodEvents == null ? 0 : moodEvents.size();
@@ -206,6 +213,22 @@ public class FeedAdapter extends RecyclerView.Adapter<FeedAdapter.FeedViewHolder
         diffResult.dispatchUpdatesTo(this);
     }
 
+    /**
+     * Dispatch a change set from a listening MoodHistory without diffing.
+     * Falls back to updateData if the current list is not the one the changes apply to.
+     *
+     * @param newData The list after the changes
+     * @param changes Changes in the order they were applied
+     */
+    public void applyChanges(List<MoodEvent> newData, List<MoodChange> changes) {
+        if (moodEvents == null || !MoodChangeDispatcher.appliesTo(moodEvents.size(), newData, changes)) {
+            updateData(newData);
+            return;
+        }
+        this.moodEvents = new ArrayList<>(newData);
+        MoodChangeDispatcher.dispatch(this, changes);
+    }
+
     public static class FeedViewHolder extends RecyclerView.ViewHolder {
         TextView mood_one_view;
         TextView emoji_one_view;
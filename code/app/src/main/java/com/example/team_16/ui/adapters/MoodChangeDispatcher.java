@@ -0,0 +1,56 @@
+package com.example.team_16.ui.adapters;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.models.MoodEvent;
+
+import java.util.List;
+
+/**
+ * Turns the change sets of a listening MoodHistory into RecyclerView notifications,
+ * for the adapters that show mood event lists
+ */
+final class MoodChangeDispatcher {
+
+    private MoodChangeDispatcher() {
+    }
+
+    /**
+     * @return true if changes apply to a list of currentSize events, i.e. the adapter
+     * shows the list the changes were made to; otherwise it must diff instead
+     */
+    static boolean appliesTo(int currentSize, List<MoodEvent> newData, List<MoodChange> changes) {
+        int expectedOldSize = newData.size();
+        for (MoodChange change : changes) {
+            if (change.getType() == MoodChange.Type.ADDED) {
+                expectedOldSize--;
+            } else if (change.getType() == MoodChange.Type.REMOVED) {
+                expectedOldSize++;
+            }
+        }
+        return currentSize == expectedOldSize;
+    }
+
+    /**
+     * Notify the adapter of each change, in the order they were applied
+     */
+    static void dispatch(RecyclerView.Adapter<?> adapter, List<MoodChange> changes) {
+        for (MoodChange change : changes) {
+            switch (change.getType()) {
+                case ADDED:
+                    adapter.notifyItemInserted(change.getNewIndex());
+                    break;
+                case MODIFIED:
+                    if (change.getOldIndex() != change.getNewIndex()) {
+                        adapter.notifyItemMoved(change.getOldIndex(), change.getNewIndex());
+                    }
+                    adapter.notifyItemChanged(change.getNewIndex());
+                    break;
+                case REMOVED:
+                    adapter.notifyItemRemoved(change.getOldIndex());
+                    break;
+            }
+        }
+    }
+}
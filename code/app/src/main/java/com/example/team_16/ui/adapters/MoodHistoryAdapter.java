@@ -27,6 +27,8 @@ import com.bumptech.glide.load.resource.bitmap.RoundedCorners;
 import com.bumptech.glide.request.RequestOptions;
 import com.example.team_16.R;
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.models.AuthorSnapshot;
 import com.example.team_16.models.MoodEvent;
 
 import java.time.Duration;
@@ -140,42 +142,37 @@ public class MoodHistoryAdapter extends RecyclerView.Adapter<MoodHistoryAdapter.
 
         if (event.getPhotoFilename() != null) {
             holder.moodImage.setVisibility(View.VISIBLE);
-            FirebaseDB.getInstance(context).getReference(event.getPhotoFilename())
-                    .getDownloadUrl()
-                    .addOnSuccessListener(uri -> {
-                        Glide.with(((Activity) context))
-                                .load(uri)
-                                .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
-                                .into(holder.moodImage);
-                    })
-                    .addOnFailureListener(e ->
-                            Toast.makeText(context, "Failed to load image", Toast.LENGTH_SHORT).show()
-                    );
+            // Stored URL, or a one-time lookup for older events
+            FirebaseDB.getInstance(context).getPhotoUrlResolver().resolve(event, url -> {
+                if (url == null) {
+                    Toast.makeText(context, "Failed to load image", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                Glide.with(((Activity) context))
+                        .load(url)
+                        .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
+                        .into(holder.moodImage);
+            });
         } else {
             holder.moodImage.setVisibility(View.GONE);
         }
 
-        holder.fullNameView.setText(R.string.loading);
-        holder.profileUsername.setText("");
-        FirebaseDB.getInstance(context).fetchUserById(event.getUserID(), userData -> {
-            if (userData != null) {
-                String fullName = (String) userData.get("fullName");
-                String username = "@" + userData.get("username");
-                holder.fullNameView.setText(fullName != null ? fullName : "Unknown");
-                holder.profileUsername.setText(username);
-
-                String profileImageUrl = (String) userData.get("profileImageUrl");
-                if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
-                    Glide.with(context)
-                            .load(profileImageUrl)
-                            .placeholder(R.drawable.image)
-                            .into(holder.profilePicture);
+        AuthorSnapshot author = event.getAuthor();
+        if (author != null) {
+            bindAuthor(holder, author.getFullName(), author.getUsername(), author.getProfileImageUrl());
+        } else {
+            // Events written before author snapshots still need a lookup
+            holder.fullNameView.setText(R.string.loading);
+            holder.profileUsername.setText("");
+            FirebaseDB.getInstance(context).fetchUserSummary(event.getUserID(), user -> {
+                if (user != null) {
+                    bindAuthor(holder, user.getFullName(), user.getUsername(), user.getProfileImageUrl());
+                } else {
+                    holder.fullNameView.setText(R.string.unknown_user);
+                    holder.profileUsername.setText(R.string.unknown);
                 }
-            } else {
-                holder.fullNameView.setText(R.string.unknown_user);
-                holder.profileUsername.setText(R.string.unknown);
-            }
-        });
+            });
+        }
 
         holder.itemView.setOnClickListener(v -> {
             if (onItemClickListener != null) {
@@ -198,6 +195,18 @@ public class MoodHistoryAdapter extends RecyclerView.Adapter<MoodHistoryAdapter.
 
     }
 
+    private void bindAuthor(ViewHolder holder, String fullName, String username, String profileImageUrl) {
+        holder.fullNameView.setText(fullName != null ? fullName : "Unknown");
+        holder.profileUsername.setText("@" + username);
+
+        if (profileImageUrl != null && !profileImageUrl.isEmpty()) {
+            Glide.with(context)
+                    .load(profileImageUrl)
+                    .placeholder(R.drawable.image)
+                    .into(holder.profilePicture);
+        }
+    }
+
     @Override
     public int getItemCount() {
         return moodEvents == null ? 0 : moodEvents.size();
@@ -215,6 +224,22 @@ public class MoodHistoryAdapter extends RecyclerView.Adapter<MoodHistoryAdapter.
         diffResult.dispatchUpdatesTo(this);
     }
 
+    /**
+     * Dispatch a change set from a listening MoodHistory without diffing.
+     * Falls back to updateData if the current list is not the one the changes apply to.
+     *
+     * @param newData The list after the changes
+     * @param changes Changes in the order they were applied
+     */
+    public void applyChanges(List<MoodEvent> newData, List<MoodChange> changes) {
+        if (moodEvents == null || !MoodChangeDispatcher.appliesTo(moodEvents.size(), newData, changes)) {
+            updateData(newData);
+            return;
+        }
+        this.moodEvents = new ArrayList<>(newData);
+        MoodChangeDispatcher.dispatch(this, changes);
+    }
+
     public class ViewHolder extends RecyclerView.ViewHolder {
         TextView moodView, timeView, fullNameView, profileUsername;
         TextView withAmountView, moodDescription, moodDescription2, emojiView;
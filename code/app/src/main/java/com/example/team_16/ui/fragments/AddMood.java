@@ -36,10 +36,9 @@ package com.example.team_16.ui.fragments;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.Manifest;
@@ -75,12 +74,10 @@ import com.example.team_16.models.UserProfile;
 import com.example.team_16.ui.activity.HomeActivity;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 
 public class AddMood extends Fragment {
@@ -568,15 +565,16 @@ public class AddMood extends Fragment {
                 moodEvent.setPlaceName(placeName);
 
                 if (isImageChanged) {
-                    if (moodEvent.getPhotoFilename() != null && !moodEvent.getPhotoFilename().isEmpty()) {
-                        deleteImageFromFirebase(moodEvent.getPhotoFilename());
-                    }
-
                     if (selectedPhotoUri != null) {
-                        String filename = uploadImageToFirebase(selectedPhotoUri);
-                        moodEvent.setPhotoFilename(filename);
+                        // The current photo stays until the new one has been uploaded
+                        stagePhoto(moodEvent, selectedPhotoUri);
                     } else {
+                        userProfile.cancelMoodPhoto(moodEvent.getId());
+                        if (moodEvent.getPhotoFilename() != null && !moodEvent.getPhotoFilename().isEmpty()) {
+                            deleteImageFromFirebase(moodEvent.getPhotoFilename());
+                        }
                         moodEvent.setPhotoFilename(null);
+                        moodEvent.setPhotoUrl(null);
                     }
                 }
 
@@ -615,8 +613,8 @@ public class AddMood extends Fragment {
                 newMoodEvent.setPostType(selectedPostType);
 
                 if (selectedPhotoUri != null) {
-                    String filename = uploadImageToFirebase(selectedPhotoUri);
-                    newMoodEvent.setPhotoFilename(filename);
+                    // Gives the event its id; photoFilename is set once the upload lands
+                    stagePhoto(newMoodEvent, selectedPhotoUri);
                 }
 
                 // Save to database in background
@@ -714,43 +712,24 @@ public class AddMood extends Fragment {
     }
 
     /**
-     * Upload the selectedPhotoUri to Firebase and return the file path.
+     * Compress the photo off the main thread and stage it for background upload. It is
+     * attached to the event only once the upload is confirmed, so an interrupted upload
+     * never leaves the event pointing at a missing file.
      */
-    private String uploadImageToFirebase(Uri imageUri) {
-        try {
-            InputStream inputStream = requireContext().getContentResolver().openInputStream(imageUri);
-            Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-            byte[] imageData = baos.toByteArray();
-
-            // Keep compressing if > 65536 bytes
-            int quality = 90;
-            while (imageData.length > 65536 && quality > 10) {
-                baos.reset();
-                bitmap.compress(Bitmap.CompressFormat.JPEG, quality, baos);
-                imageData = baos.toByteArray();
-                quality -= 10;
-            }
-
-            String filename = "images/" + userProfile.getId() + "_" + System.currentTimeMillis() + "_mood.jpg";
-            StorageReference storageRef = FirebaseDB.getInstance(requireContext()).getReference(filename);
-
-            UploadTask uploadTask = storageRef.putBytes(imageData);
-            uploadTask.addOnSuccessListener(taskSnapshot ->
-                            Log.d("FirebaseStorage", "File uploaded: " + filename))
-                    .addOnFailureListener(e ->
-                            Log.e("FirebaseStorage", "File upload failed for: " + filename, e));
-
-            return filename;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+    private void stagePhoto(MoodEvent event, Uri imageUri) {
+        // The event is saved before compression finishes, so it needs its id now
+        if (event.getId() == null || event.getId().isEmpty()) {
+            event.setId(UUID.randomUUID().toString());
         }
+        Context appContext = requireContext().getApplicationContext();
+        UserProfile owner = userProfile;
+        FirebaseDB.getInstance(appContext).getImageCompressionPipeline().compress(imageUri, imageData -> {
+            if (imageData == null || !owner.stageMoodPhoto(event, imageData)) {
+                Toast.makeText(appContext, "Couldn't save the photo. Please try again.", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
-
     private void updateUIForExistingMood() {
         if (moodEvent == null) return;
 
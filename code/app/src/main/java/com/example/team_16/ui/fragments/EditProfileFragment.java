@@ -167,16 +167,24 @@ public class EditProfileFragment extends Fragment {
         }
     }
 
+    /**
+     * Compress the picked photo off the main thread and stage it for a background
+     * upload, which survives dropped connections and restarts, then save the other
+     * fields right away
+     */
     private void uploadImageAndUpdateProfile(String newFullName, String newUsername) {
-        showProgressDialog("Uploading image...");
-
-        userProfile.getFirebaseDB().uploadProfileImage(selectedImageUri, userProfile.getId(), imageUrl -> {
-            if (imageUrl != null) {
-                doProfileUpdate(newFullName, newUsername, imageUrl);
-            } else {
+        showProgressDialog("Saving...");
+        userProfile.getFirebaseDB().getImageCompressionPipeline().compress(selectedImageUri, imageData -> {
+            if (!isAdded()) {
+                return;
+            }
+            if (imageData == null || !userProfile.stageProfilePhoto(imageData)) {
                 dismissProgressDialog();
                 Toast.makeText(getContext(), "Image upload failed!", Toast.LENGTH_SHORT).show();
+                return;
             }
+            // null keeps the current image, so this can't overwrite the upload if it lands first
+            doProfileUpdate(newFullName, newUsername, null);
         });
     }
 
@@ -187,10 +195,12 @@ public class EditProfileFragment extends Fragment {
             dismissProgressDialog();
             if (success) {
                 Toast.makeText(getContext(), "Profile updated", Toast.LENGTH_SHORT).show();
-                Glide.with(this)
-                        .load(imageUrl)
-                        .placeholder(R.drawable.image)
-                        .into(avatarImageView);
+                if (imageUrl != null) {
+                    Glide.with(this)
+                            .load(imageUrl)
+                            .placeholder(R.drawable.image)
+                            .into(avatarImageView);
+                }
 
                 getParentFragmentManager().popBackStack();
             } else {
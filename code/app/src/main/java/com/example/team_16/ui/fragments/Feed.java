@@ -36,6 +36,7 @@ import android.widget.Toast;
 
 import com.example.team_16.MoodTrackerApp;
 import com.example.team_16.R;
+import com.example.team_16.database.MoodChange;
 import com.example.team_16.models.MoodEvent;
 import com.example.team_16.models.MoodHistory;
 import com.example.team_16.models.UserProfile;
@@ -45,14 +46,9 @@ import com.airbnb.lottie.LottieAnimationView;
 import com.example.team_16.ui.adapters.FeedAdapter;
 import android.view.View;
 import android.view.ViewGroup;
-import android.text.TextUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 
 public class Feed extends Fragment implements FilterableFragment, FilterFragment.FilterListener {
 
@@ -66,6 +62,7 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
     private FeedAdapter adapter;
     private LottieAnimationView progressBar;
     private FilterFragment.FilterCriteria currentCriteria = null;
+    private final MoodHistory.MoodChangeListener moodChangeListener = this::onMoodEventsChanged;
 
     public Feed() {
 
@@ -87,9 +84,8 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
         }
 
         MoodHistory followingMoodHistory = userProfile.getFollowingMoodHistory();
-        List<MoodEvent> events = followingMoodHistory.getAllEvents();
-        Collections.reverse(events);
-        fullMoodEvents = new ArrayList<>(events);
+        followingMoodHistory.startListening();
+        fullMoodEvents = followingMoodHistory.getAllEvents();
         moodEvents = new ArrayList<>(fullMoodEvents);
     }
 
@@ -128,6 +124,31 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
             }
         });
 
+        userProfile.getFollowingMoodHistory().addChangeListener(moodChangeListener);
+
+        updateEmptyState();
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (userProfile != null) {
+            userProfile.getFollowingMoodHistory().removeChangeListener(moodChangeListener);
+        }
+    }
+
+    /**
+     * Apply live changes from the following history; filtered views are re-filtered instead
+     */
+    private void onMoodEventsChanged(List<MoodChange> changes) {
+        if (adapter == null) return;
+        fullMoodEvents = userProfile.getFollowingMoodHistory().getAllEvents();
+        if (currentCriteria != null) {
+            applyFilter(currentCriteria);
+            return;
+        }
+        moodEvents = new ArrayList<>(fullMoodEvents);
+        adapter.applyChanges(moodEvents, changes);
         updateEmptyState();
     }
 
@@ -170,49 +191,18 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
     }
 
     private void applyFilter(FilterFragment.FilterCriteria criteria) {
-        List<MoodEvent> filtered = new ArrayList<>();
-        Date currentDate = new Date();
-
-        for (MoodEvent event : fullMoodEvents) {
-            boolean matches = true;
-
-            if (!criteria.timePeriod.equals("All Time")) {
-                Date eventDate = event.getTimestamp().toDate();
-                long diff = currentDate.getTime() - eventDate.getTime();
-                long daysDiff = diff / (1000 * 60 * 60 * 24);
-
-                if (criteria.timePeriod.equals("Last Year") && daysDiff > 365) {
-                    matches = false;
-                } else if (criteria.timePeriod.equals("Last Month") && daysDiff > 30) {
-                    matches = false;
-                } else if (criteria.timePeriod.equals("Last Week") && daysDiff > 7) {
-                    matches = false;
-                }
-            }
-
-            if (matches && criteria.emotionalState != null) {
-                if (!criteria.emotionalState.equalsIgnoreCase(event.getEmotionalState().getName())) {
-                    matches = false;
-                }
+        // Asks the server, so events on pages not loaded yet are found too
+        userProfile.getFollowingMoodHistory().getFilteredEvents(criteria.toMoodQuery(), events -> {
+            if (!isAdded() || criteria != currentCriteria) {
+                // Gone, or superseded by a later filter
+                return;
             }
-
-            if (matches && !TextUtils.isEmpty(criteria.triggerReason)) {
-                if (event.getTrigger() == null || !event.getTrigger().toLowerCase().contains(criteria.triggerReason.toLowerCase())) {
-                    matches = false;
-                }
-            }
-
-
-            if (matches) {
-                filtered.add(event);
+            moodEvents = events;
+            if (adapter != null) {
+                adapter.updateData(moodEvents);
             }
-        }
-
-        moodEvents = filtered;
-        if (adapter != null) {
-            adapter.updateData(moodEvents);
-        }
-        updateEmptyState();
+            updateEmptyState();
+        });
     }
     private void loadData() {
         progressBar.setVisibility(View.VISIBLE);
@@ -221,30 +211,9 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
 
         MoodHistory followingMoodHistory = userProfile.getFollowingMoodHistory();
 
-        // Refresh from Firebase first
+        // Already limited to the latest events per followed user, newest first
         followingMoodHistory.refresh(() -> {
-            List<MoodEvent> allEvents = followingMoodHistory.getAllEvents();
-            allEvents.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
-
-            Map<String, List<MoodEvent>> groupedByUser = new LinkedHashMap<>();
-            for (MoodEvent event : allEvents) {
-                String userId = event.getUserID();
-                if (!groupedByUser.containsKey(userId)) {
-                    groupedByUser.put(userId, new ArrayList<>());
-                }
-                if (groupedByUser.get(userId).size() < 3) {
-                    groupedByUser.get(userId).add(event);
-                }
-            }
-
-            List<MoodEvent> limitedEvents = new ArrayList<>();
-            for (List<MoodEvent> userEvents : groupedByUser.values()) {
-                limitedEvents.addAll(userEvents);
-            }
-
-            limitedEvents.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
-
-            fullMoodEvents = new ArrayList<>(limitedEvents);
+            fullMoodEvents = followingMoodHistory.getAllEvents();
             moodEvents = new ArrayList<>(fullMoodEvents);
 
             if (isAdded()) {
@@ -265,7 +234,20 @@ public class Feed extends Fragment implements FilterableFragment, FilterFragment
     @Override
     public void onResume() {
         super.onResume();
-        loadData();
+        MoodHistory followingMoodHistory = userProfile.getFollowingMoodHistory();
+        if (followingMoodHistory.isListening()) {
+            // Already current; the snapshot listener applied any changes
+            fullMoodEvents = followingMoodHistory.getAllEvents();
+            if (currentCriteria != null) {
+                applyFilter(currentCriteria);
+            } else {
+                moodEvents = new ArrayList<>(fullMoodEvents);
+                adapter.updateData(moodEvents);
+                updateEmptyState();
+            }
+        } else {
+            loadData();
+        }
         HomeActivity homeActivity = (HomeActivity) requireActivity();
         if (homeActivity.getCurrentNavItemId() == R.id.nav_feed) {
             homeActivity.setToolbarTitle("Feed");
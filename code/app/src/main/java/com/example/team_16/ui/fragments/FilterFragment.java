@@ -51,8 +51,12 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import com.example.team_16.R;
+import com.example.team_16.database.MoodQuery;
+import com.example.team_16.models.EmotionalState;
+import com.example.team_16.models.EmotionalStateRegistry;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 public class FilterFragment extends Fragment {
@@ -69,6 +73,34 @@ public class FilterFragment extends Fragment {
         public String emotionalState;
         public String triggerReason;
         public List<String> eventTypes = new ArrayList<>();
+
+        /**
+         * Time, emotion and trigger filters as a query the local store can answer
+         * from its indexes. Event types are left to the caller.
+         */
+        public MoodQuery toMoodQuery() {
+            EmotionalState state = emotionalState != null && !emotionalState.isEmpty()
+                    ? EmotionalStateRegistry.getByName(emotionalState) : null;
+            return new MoodQuery(null, startDate(), state, triggerReason);
+        }
+
+        /**
+         * Oldest time still inside timePeriod. "Last Week" keeps events up to 7 whole
+         * days old, i.e. anything newer than 8 days ago, and so on.
+         */
+        private Date startDate() {
+            int days;
+            if ("Last Year".equals(timePeriod)) {
+                days = 365;
+            } else if ("Last Month".equals(timePeriod)) {
+                days = 30;
+            } else if ("Last Week".equals(timePeriod)) {
+                days = 7;
+            } else {
+                return null;
+            }
+            return new Date(System.currentTimeMillis() - (days + 1) * 24L * 60 * 60 * 1000);
+        }
     }
 
     private FilterListener listener;
@@ -52,6 +52,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.team_16.R;
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.UserSummary;
 import com.example.team_16.ui.activity.HomeActivity;
 import com.example.team_16.ui.adapters.AcceptedFollowersAdapter;
 import com.example.team_16.ui.adapters.PendingRequestsAdapter;
@@ -210,47 +211,36 @@ public class FollowRequestsFragment extends Fragment {
                 return;
             }
 
-            List<PendingRequestsAdapter.PendingRequest> requestList = new ArrayList<>();
-            int total = pendingDocs.size();
-            final int[] doneCount = {0};
-
+            List<String> fromUserIds = new ArrayList<>();
             for (Map<String, Object> doc : pendingDocs) {
-                String requestId = (String) doc.get("requestId");
                 String fromUserId = (String) doc.get("fromUserId");
-
-                if (requestId == null || fromUserId == null) {
-                    doneCount[0]++;
-                    if (doneCount[0] == total) {
-                        originalPendingData.clear();
-                        originalPendingData.addAll(requestList);
-                        applySearchFilter(searchBar.getText().toString());
-                    }
-                    continue;
+                if (doc.get("requestId") != null && fromUserId != null) {
+                    fromUserIds.add(fromUserId);
                 }
+            }
 
-                firebaseDB.fetchUserById(fromUserId, userData -> {
-                    String fromUsername = userData != null
-                            ? (String) userData.get("username")
-                            : "Unknown User";
-                    String fromUserImageUrl = userData != null
-                            ? (String) userData.get("profileImageUrl")
-                            : null;
-
+            // One batched lookup, then a single list update
+            firebaseDB.fetchUsersByIds(fromUserIds, users -> {
+                List<PendingRequestsAdapter.PendingRequest> requestList = new ArrayList<>();
+                for (Map<String, Object> doc : pendingDocs) {
+                    String requestId = (String) doc.get("requestId");
+                    String fromUserId = (String) doc.get("fromUserId");
+                    if (requestId == null || fromUserId == null) {
+                        continue;
+                    }
+                    UserSummary user = users.get(fromUserId);
                     requestList.add(new PendingRequestsAdapter.PendingRequest(
                             requestId,
                             fromUserId,
-                            fromUsername,
-                            fromUserImageUrl
+                            user != null ? user.getUsername() : "Unknown User",
+                            user != null ? user.getProfileImageUrl() : null
                     ));
+                }
 
-                    doneCount[0]++;
-                    if (doneCount[0] == total) {
-                        originalPendingData.clear();
-                        originalPendingData.addAll(requestList);
-                        applySearchFilter(searchBar.getText().toString());
-                    }
-                });
-            }
+                originalPendingData.clear();
+                originalPendingData.addAll(requestList);
+                applySearchFilter(searchBar.getText().toString());
+            });
         });
     }
 
@@ -269,33 +259,21 @@ public class FollowRequestsFragment extends Fragment {
                 return;
             }
 
-            List<AcceptedFollowersAdapter.AcceptedFollower> followerList = new ArrayList<>();
-            int total = followerIds.size();
-            final int[] doneCount = {0};
-
-            for (String followerId : followerIds) {
-                firebaseDB.fetchUserById(followerId, userData -> {
-                    String username = userData != null
-                            ? (String) userData.get("username")
-                            : "Unknown User";
-                    String profileUrl = userData != null
-                            ? (String) userData.get("profileImageUrl")
-                            : null;
-
+            firebaseDB.fetchUsersByIds(followerIds, users -> {
+                List<AcceptedFollowersAdapter.AcceptedFollower> followerList = new ArrayList<>();
+                for (String followerId : followerIds) {
+                    UserSummary user = users.get(followerId);
                     followerList.add(new AcceptedFollowersAdapter.AcceptedFollower(
                             followerId,
-                            username,
-                            profileUrl
+                            user != null ? user.getUsername() : "Unknown User",
+                            user != null ? user.getProfileImageUrl() : null
                     ));
+                }
 
-                    doneCount[0]++;
-                    if (doneCount[0] == total) {
-                        originalAcceptedData.clear();
-                        originalAcceptedData.addAll(followerList);
-                        applySearchFilter(searchBar.getText().toString());
-                    }
-                });
-            }
+                originalAcceptedData.clear();
+                originalAcceptedData.addAll(followerList);
+                applySearchFilter(searchBar.getText().toString());
+            });
         });
     }
 
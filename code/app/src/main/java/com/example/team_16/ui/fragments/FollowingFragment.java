@@ -49,6 +49,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.team_16.R;
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.UserSummary;
 import com.example.team_16.ui.activity.HomeActivity;
 import com.example.team_16.ui.adapters.FollowingAdapter;
 
@@ -140,33 +141,22 @@ public class FollowingFragment extends Fragment {
                 return;
             }
 
-            List<FollowingAdapter.FollowingItem> items = new ArrayList<>();
-            int total = followingIds.size();
-            int[] doneCount = {0};
-
-            for (String userId : followingIds) {
-                firebaseDB.fetchUserById(userId, userData -> {
-                    String username = userData != null
-                            ? (String) userData.get("username")
-                            : "Unknown User";
-                    String profileImageUrl = userData != null
-                            ? (String) userData.get("profileImageUrl")
-                            : null;
-
+            // One batched lookup, then a single list update
+            firebaseDB.fetchUsersByIds(followingIds, users -> {
+                List<FollowingAdapter.FollowingItem> items = new ArrayList<>();
+                for (String userId : followingIds) {
+                    UserSummary user = users.get(userId);
                     items.add(new FollowingAdapter.FollowingItem(
                             userId,
-                            username,
-                            profileImageUrl
+                            user != null ? user.getUsername() : "Unknown User",
+                            user != null ? user.getProfileImageUrl() : null
                     ));
+                }
 
-                    doneCount[0]++;
-                    if (doneCount[0] == total) {
-                        originalData.clear();
-                        originalData.addAll(items);
-                        applySearchFilter(searchBar.getText().toString());
-                    }
-                });
-            }
+                originalData.clear();
+                originalData.addAll(items);
+                applySearchFilter(searchBar.getText().toString());
+            });
         });
     }
 
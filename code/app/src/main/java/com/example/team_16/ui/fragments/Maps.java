@@ -64,9 +64,13 @@ import android.os.Looper;
 import com.bumptech.glide.Glide;
 import com.example.team_16.MoodTrackerApp;
 import com.example.team_16.R;
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodQuery;
 import com.example.team_16.models.MoodEvent;
+import com.example.team_16.models.MoodHistory;
 import com.example.team_16.models.UserProfile;
 import com.example.team_16.ui.activity.HomeActivity;
+import com.example.team_16.utils.Geohash;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.maps.CameraUpdateFactory;
@@ -82,10 +86,11 @@ import com.google.android.gms.maps.model.MarkerOptions;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class Maps extends Fragment
         implements FilterableFragment, FilterFragment.FilterListener, OnMapReadyCallback {
@@ -110,12 +115,10 @@ public class Maps extends Fragment
     private TextView eventTrigger;
     private ImageView eventPhoto;
 
-    private Map<String, String> userNameCache = new HashMap<>();
-    private Map<String, String> userImageCache = new HashMap<>();
-
     private double currentUserLat = Double.NaN;
     private double currentUserLng = Double.NaN;
     private static final int REQUEST_LOCATION_PERMISSION = 1001;
+    private static final double NEARBY_RADIUS_KM = 5.0;
 
     private boolean firstLoad = true;
 
@@ -337,9 +340,6 @@ public class Maps extends Fragment
     }
 
     private void applyFilter(FilterFragment.FilterCriteria criteria) {
-        List<MoodEvent> newFiltered = new ArrayList<>();
-        Date now = new Date();
-
         boolean wantPersonal  = criteria.eventTypes.contains("My Own Mood History");
         boolean wantFollowing = criteria.eventTypes.contains("Events from People I Follow");
         boolean wantNearby    = criteria.eventTypes.contains("Nearby Events within 5km");
@@ -357,69 +357,64 @@ public class Maps extends Fragment
             wantFollowing = true;
         }
 
-        for (MoodEvent event : fullMoodEvents) {
-            boolean matches = false;
+        boolean haveLocation = !Double.isNaN(currentUserLat) && !Double.isNaN(currentUserLng);
+        List<String> nearbyCells = wantNearby && haveLocation
+                ? Geohash.coveringCells(currentUserLat, currentUserLng, NEARBY_RADIUS_KM) : null;
+
+        // Time, emotion and trigger go to the local store's indexes; a history that is
+        // only wanted for its nearby events is narrowed to the cells around the user
+        MoodQuery query = criteria.toMoodQuery();
+        boolean personal = wantPersonal;
+        boolean following = wantFollowing;
+        cachedEventsOf(userProfile.getPersonalMoodHistory(), personal || nearbyCells != null,
+                query, personal ? null : nearbyCells, personalCandidates ->
+                cachedEventsOf(userProfile.getFollowingMoodHistory(), following || nearbyCells != null,
+                        query, following ? null : nearbyCells, followingCandidates -> {
+                            if (!isAdded()) {
+                                return;
+                            }
+                            List<MoodEvent> candidates = new ArrayList<>(personalCandidates);
+                            candidates.addAll(followingCandidates);
+                            showFiltered(candidates, personal, following, nearbyCells);
+                        }));
+    }
 
-            if ((isPersonalEvent(event) && wantPersonal) ||
-                    (isFollowingEvent(event) && wantFollowing)) {
-                matches = true;
-            }
+    private static void cachedEventsOf(MoodHistory history, boolean wanted, MoodQuery query,
+                                       List<String> geohashCells,
+                                       FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+        if (wanted) {
+            history.getCachedEvents(query, geohashCells, callback);
+        } else {
+            callback.onCallback(new ArrayList<>());
+        }
+    }
 
-            if (!event.hasLocation()) {
-                matches = false;
+    private void showFiltered(List<MoodEvent> candidates, boolean wantPersonal, boolean wantFollowing,
+                              List<String> nearbyCells) {
+        List<MoodEvent> newFiltered = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (MoodEvent event : candidates) {
+            if (!event.hasLocation() || !seen.add(event.getId())) {
                 continue;
             }
 
-            if (wantNearby && !Double.isNaN(currentUserLat) && !Double.isNaN(currentUserLng)) {
+            boolean matches = (isPersonalEvent(event) && wantPersonal) ||
+                    (isFollowingEvent(event) && wantFollowing);
+
+            if (!matches && nearbyCells != null) {
                 double distKm = distanceInKm(
                         currentUserLat, currentUserLng,
                         event.getLatitude(), event.getLongitude()
                 );
-                if (distKm <= 5.0) {
-                    matches = true;
-                }
-            }
-
-            if (!matches) continue;
-
-            if (!criteria.timePeriod.equals("All Time")) {
-                if (event.getTimestamp() == null) {
-                    matches = false;
-                } else {
-                    Date eventDate = event.getTimestamp().toDate();
-                    long diff = now.getTime() - eventDate.getTime();
-                    long days = diff / (1000L * 60 * 60 * 24);
-
-                    if (criteria.timePeriod.equals("Last Year") && days > 365) {
-                        matches = false;
-                    } else if (criteria.timePeriod.equals("Last Month") && days > 30) {
-                        matches = false;
-                    } else if (criteria.timePeriod.equals("Last Week") && days > 7) {
-                        matches = false;
-                    }
-                }
-            }
-
-            // emotion
-            if (matches && criteria.emotionalState != null && !criteria.emotionalState.isEmpty()) {
-                if (event.getEmotionalState() == null
-                        || !criteria.emotionalState.equalsIgnoreCase(event.getEmotionalState().getName())) {
-                    matches = false;
-                }
-            }
-
-            // trigger
-            if (matches && criteria.triggerReason != null && !criteria.triggerReason.isEmpty()) {
-                String eTrig = (event.getTrigger() != null) ? event.getTrigger().toLowerCase() : "";
-                if (!eTrig.contains(criteria.triggerReason.toLowerCase())) {
-                    matches = false;
-                }
+                matches = distKm <= NEARBY_RADIUS_KM;
             }
 
             if (matches) {
                 newFiltered.add(event);
             }
         }
+        newFiltered.sort(Comparator.comparing(MoodEvent::getTimestamp,
+                Comparator.nullsLast(Comparator.reverseOrder())));
 
         filteredMoodEvents = newFiltered;
         firstLoad = false;
@@ -516,6 +511,7 @@ public class Maps extends Fragment
         noEventSelectedText.setVisibility(View.VISIBLE);
         eventDetailsLayout.setVisibility(View.GONE);
         eventPhoto.setVisibility(View.GONE);
+        eventPhoto.setTag(null);
     }
 
     private void showEventInBottomContainer(MoodEvent event) {
@@ -562,16 +558,20 @@ public class Maps extends Fragment
             eventTrigger.setText("Note: --");
         }
 
-        String photoUrl = event.getPhotoUrl();
-        if (photoUrl != null && !photoUrl.isEmpty()) {
+        eventPhoto.setVisibility(View.GONE);
+        eventPhoto.setTag(event);
+        // Stored URL, or a one-time lookup for older events
+        userProfile.getFirebaseDB().getPhotoUrlResolver().resolve(event, photoUrl -> {
+            // Skip if another event was selected meanwhile
+            if (!isAdded() || eventPhoto.getTag() != event || photoUrl == null || photoUrl.isEmpty()) {
+                return;
+            }
             eventPhoto.setVisibility(View.VISIBLE);
             Glide.with(requireContext())
                     .load(photoUrl)
                     .centerCrop()
                     .into(eventPhoto);
-        } else {
-            eventPhoto.setVisibility(View.GONE);
-        }
+        });
     }
 
     private void fetchUserData(String userId, OnUserDataFetched callback) {
@@ -580,22 +580,12 @@ public class Maps extends Fragment
             return;
         }
 
-        if (userNameCache.containsKey(userId) && userImageCache.containsKey(userId)) {
-            callback.onFetched(userNameCache.get(userId), userImageCache.get(userId));
-            return;
-        }
-
-        userProfile.getFirebaseDB().fetchUserById(userId, userData -> {
-            if (userData == null) {
+        // Served from the shared user cache after the first lookup
+        userProfile.getFirebaseDB().fetchUserSummary(userId, user -> {
+            if (user == null) {
                 callback.onFetched(null, null);
             } else {
-                String fetchedUsername = (String) userData.get("username");
-                String fetchedImageUrl = (String) userData.get("profileImageUrl");
-
-                userNameCache.put(userId, fetchedUsername);
-                userImageCache.put(userId, fetchedImageUrl);
-
-                callback.onFetched(fetchedUsername, fetchedImageUrl);
+                callback.onFetched(user.getUsername(), user.getProfileImageUrl());
             }
         });
     }
@@ -236,18 +236,19 @@ public class MoodDetails extends Fragment {
 
         if (moodEvent.getPhotoFilename() != null) {
             mood_image_view.setVisibility(View.VISIBLE);
-            FirebaseDB.getInstance(requireContext())
-                    .getReference(moodEvent.getPhotoFilename())
-                    .getDownloadUrl()
-                    .addOnSuccessListener(uri -> {
-                        Glide.with(requireContext())
-                                .load(uri)
-                                .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
-                                .into(mood_image_view);
-                    })
-                    .addOnFailureListener(e -> {
-                        Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
-                    });
+            FirebaseDB.getInstance(requireContext()).getPhotoUrlResolver().resolve(moodEvent, url -> {
+                if (!isAdded()) {
+                    return;
+                }
+                if (url == null) {
+                    Toast.makeText(getContext(), "Failed to load image", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                Glide.with(requireContext())
+                        .load(url)
+                        .apply(RequestOptions.bitmapTransform(new RoundedCorners(20)))
+                        .into(mood_image_view);
+            });
         }
 
         if (moodEvent.getPlaceName() != null && !moodEvent.getPlaceName().isEmpty()) {
@@ -258,16 +259,16 @@ public class MoodDetails extends Fragment {
         }
 
         FirebaseDB.getInstance(requireContext())
-                .fetchUserById(moodEvent.getUserID(), userData -> {
-                    if (userData != null) {
-                        String fullName = (String) userData.get("fullName");
-                        String userName = (String) userData.get("username");
+                .fetchUserSummary(moodEvent.getUserID(), user -> {
+                    if (user != null) {
+                        String fullName = user.getFullName();
+                        String userName = user.getUsername();
 
                         first_name_last_name_view.setText(
                                 fullName != null ? fullName : "Unknown");
                         profile_username_view.setText("@" + (userName != null ? userName : "unknown"));
 
-                        String imageUrl = (String) userData.get("profileImageUrl");
+                        String imageUrl = user.getProfileImageUrl();
                         if (imageUrl != null && !imageUrl.isEmpty()) {
                             Glide.with(this)
                                     .load(imageUrl)
@@ -225,21 +225,12 @@ public class OtherUserProfileFragment extends Fragment {
      */
     private void refreshFollowCounts() {
         FirebaseDB.getInstance(requireContext())
-                .getFollowersOfUser(targetUserProfile.getId(), followers -> {
-                    if (followers != null) {
-                        followersStats.setText(followers.size() + " Followers");
-                    } else {
-                        followersStats.setText("0 Followers");
-                    }
-                });
-
-        FirebaseDB.getInstance(requireContext())
-                .getFollowingList(targetUserProfile.getId(), following -> {
-                    if (following != null) {
-                        followingStats.setText(following.size() + " Following");
-                    } else {
-                        followingStats.setText("0 Following");
-                    }
+                .getFollowCounts(targetUserProfile.getId(), counts -> {
+                    if (!isAdded()) return;
+                    long followers = counts != null ? counts.getFollowers() : 0;
+                    long following = counts != null ? counts.getFollowing() : 0;
+                    followersStats.setText(followers + " Followers");
+                    followingStats.setText(following + " Following");
                 });
     }
 
@@ -274,11 +265,14 @@ public class OtherUserProfileFragment extends Fragment {
             if (isFollowing) {
                 setButtonStateUnfollow();
             } else {
-                if (currentUserProfile.getPendingFollow().contains(targetUserProfile.getId())) {
-                    setButtonStatePending();
-                } else {
-                    setButtonStateFollow();
-                }
+                currentUserProfile.refreshPendingFollow(targetUserProfile.getId(), pending -> {
+                    if (!isAdded()) return;
+                    if (pending) {
+                        setButtonStatePending();
+                    } else {
+                        setButtonStateFollow();
+                    }
+                });
             }
         });
     }
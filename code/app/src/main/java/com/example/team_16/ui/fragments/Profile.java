@@ -13,6 +13,7 @@
  * - Loads current user data from the application context (`MoodTrackerApp`)
  * - Fetches followers and following counts from Firebase
  * - Loads mood history and supports in-place editing/deleting using `MoodHistoryAdapter`
+ * - Pages older mood events in as the user scrolls toward the bottom of the list
  * - Allows filtering of mood history based on:
  *     - Time period (All Time, Last Year, Last Month, Last Week)
  *     - Emotional state (Happiness, Anger, etc.)
@@ -40,6 +41,7 @@ package com.example.team_16.ui.fragments;
 import android.os.Bundle;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -58,7 +60,10 @@ import com.bumptech.glide.Glide;
 import com.example.team_16.MoodTrackerApp;
 import com.example.team_16.R;
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodChange;
 import com.example.team_16.models.MoodEvent;
+import com.example.team_16.models.MoodHistory;
+import com.example.team_16.models.PersonalMoodHistory;
 import com.example.team_16.models.UserProfile;
 import com.example.team_16.ui.activity.HomeActivity;
 import com.example.team_16.ui.adapters.MoodHistoryAdapter;
@@ -67,7 +72,6 @@ import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.imageview.ShapeableImageView;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 import android.app.AlertDialog;
@@ -92,6 +96,9 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
     private LinearLayout emptyState;
     private ShapeableImageView profileImageView;
     private LottieAnimationView progressBar;
+    private NestedScrollView scrollView;
+    private long totalMoodEntries = 0;
+    private final MoodHistory.MoodChangeListener moodChangeListener = this::onMoodEventsChanged;
 
     public Profile() {
     }
@@ -126,17 +133,22 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
 
         initializeViews(view);
 
+        userProfile.getPersonalMoodHistory().startListening();
         fullMoodEvents = userProfile.getPersonalMoodHistory().getAllEvents();
         moodEvents = new ArrayList<>(fullMoodEvents);
 
         setupMoodHistoryRecyclerView();
 
+        setupPaging();
+
         setupProfileInfo();
 
         setupClickListeners();
 
         refreshCounts();
 
+        userProfile.getPersonalMoodHistory().addChangeListener(moodChangeListener);
+
         Button editProfileButton = view.findViewById(R.id.btnEditProfile);
         editProfileButton.setOnClickListener(v -> {
             EditProfileFragment editFragment = new EditProfileFragment();
@@ -154,6 +166,30 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
         updateEmptyState();
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (userProfile != null) {
+            userProfile.getPersonalMoodHistory().removeChangeListener(moodChangeListener);
+        }
+    }
+
+    /**
+     * Apply live changes from the personal history; filtered views are re-filtered instead.
+     * The history is already newest first, so positions carry over to the adapter.
+     */
+    private void onMoodEventsChanged(List<MoodChange> changes) {
+        if (adapter == null) return;
+        fullMoodEvents = userProfile.getPersonalMoodHistory().getAllEvents();
+        if (currentCriteria != null) {
+            applyFilter(currentCriteria);
+            return;
+        }
+        moodEvents = new ArrayList<>(fullMoodEvents);
+        adapter.applyChanges(moodEvents, changes);
+        updateEmptyState();
+    }
+
     private void initializeViews(View view) {
         profileImageView = view.findViewById(R.id.profileImage);
         username = view.findViewById(R.id.userName);
@@ -165,6 +201,7 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
         moodHistoryRecyclerView = view.findViewById(R.id.moodHistoryRecyclerView);
         emptyState = view.findViewById(R.id.emptyState);
         progressBar = view.findViewById(R.id.progressBar);
+        scrollView = view.findViewById(R.id.fragment_profile);
     }
 
     private void setupMoodHistoryRecyclerView() {
@@ -210,7 +247,8 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
                             adapter.updateData(moodEvents);
 
                             // Update UI elements
-                            totalMoodEntriesTxt.setText("Total Mood Entries: " + fullMoodEvents.size());
+                            totalMoodEntries = Math.max(0, totalMoodEntries - 1);
+                            totalMoodEntriesTxt.setText("Total Mood Entries: " + totalMoodEntries);
                             String recentMood = getMostRecentMood();
                             if (recentMood != null) {
                                 mostFrequentMoodTxt.setText("Most Recent Mood: " + recentMood);
@@ -247,6 +285,59 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
         });
     }
 
+    /**
+     * The RecyclerView sits inside the page's NestedScrollView, so it never scrolls itself;
+     * watch the outer scroll position and fetch the next page when nearing the bottom.
+     */
+    private void setupPaging() {
+        scrollView.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener)
+                (v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+                    if (scrollY <= oldScrollY || v.getChildCount() == 0) return;
+                    int remaining = v.getChildAt(0).getMeasuredHeight() - (scrollY + v.getMeasuredHeight());
+                    if (remaining < v.getMeasuredHeight()) {
+                        loadMoreEvents();
+                    }
+                });
+    }
+
+    private void loadMoreEvents() {
+        PersonalMoodHistory history = userProfile.getPersonalMoodHistory();
+        history.loadNextPage(() -> {
+            if (!isAdded()) return;
+            fullMoodEvents = history.getAllEvents();
+            sortNewestFirst(fullMoodEvents);
+
+            requireActivity().runOnUiThread(() -> {
+                if (currentCriteria != null) {
+                    applyFilter(currentCriteria);
+                } else {
+                    moodEvents = new ArrayList<>(fullMoodEvents);
+                    if (adapter != null) {
+                        adapter.updateData(moodEvents);
+                    }
+                    updateEmptyState();
+                }
+            });
+        });
+    }
+
+    private void refreshTotalEntries() {
+        userProfile.getMoodRepository().countMoodEvents(userProfile.getId(), count -> {
+            if (!isAdded()) return;
+            totalMoodEntries = count != null ? count : fullMoodEvents.size();
+            totalMoodEntriesTxt.setText("Total Mood Entries: " + totalMoodEntries);
+        });
+    }
+
+    private void sortNewestFirst(List<MoodEvent> events) {
+        events.sort((event1, event2) -> {
+            if (event1.getTimestamp() == null && event2.getTimestamp() == null) return 0;
+            if (event1.getTimestamp() == null) return 1;
+            if (event2.getTimestamp() == null) return -1;
+            return event2.getTimestamp().compareTo(event1.getTimestamp());
+        });
+    }
+
     private void setupProfileInfo() {
         username.setText(userProfile.getFullName());
         userHandle.setText("@" + userProfile.getUsername());
@@ -370,21 +461,12 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
 
     private void refreshCounts() {
         FirebaseDB.getInstance(requireContext())
-                .getFollowersOfUser(userProfile.getId(), followers -> {
-                    if (followers != null) {
-                        followersStats.setText(followers.size() + " Followers");
-                    } else {
-                        followersStats.setText("0 Followers");
-                    }
-                });
-
-        FirebaseDB.getInstance(requireContext())
-                .getFollowingList(userProfile.getId(), following -> {
-                    if (following != null) {
-                        followingStats.setText(following.size() + " Following");
-                    } else {
-                        followingStats.setText("0 Following");
-                    }
+                .getFollowCounts(userProfile.getId(), counts -> {
+                    if (!isAdded()) return;
+                    long followers = counts != null ? counts.getFollowers() : 0;
+                    long following = counts != null ? counts.getFollowing() : 0;
+                    followersStats.setText(followers + " Followers");
+                    followingStats.setText(following + " Following");
                 });
     }
 
@@ -422,49 +504,18 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
     }
 
     private void applyFilter(FilterFragment.FilterCriteria criteria) {
-        List<MoodEvent> newFilteredList = new ArrayList<>();
-        Date currentDate = new Date();
-
-        for (MoodEvent event : fullMoodEvents) {
-            boolean matches = true;
-
-            if (!criteria.timePeriod.equals("All Time")) {
-                Date eventDate = event.getTimestamp().toDate();
-                long diff = currentDate.getTime() - eventDate.getTime();
-                long daysDiff = diff / (1000 * 60 * 60 * 24);
-
-                if (criteria.timePeriod.equals("Last Year") && daysDiff > 365) {
-                    matches = false;
-                } else if (criteria.timePeriod.equals("Last Month") && daysDiff > 30) {
-                    matches = false;
-                } else if (criteria.timePeriod.equals("Last Week") && daysDiff > 7) {
-                    matches = false;
-                }
-            }
-
-            if (matches && criteria.emotionalState != null) {
-                if (!criteria.emotionalState.equalsIgnoreCase(event.getEmotionalState().getName())) {
-                    matches = false;
-                }
+        // Asks the server, so events on pages not loaded yet are found too
+        userProfile.getPersonalMoodHistory().getFilteredEvents(criteria.toMoodQuery(), events -> {
+            if (!isAdded() || criteria != currentCriteria) {
+                // Gone, or superseded by a later filter
+                return;
             }
-
-            if (matches && !TextUtils.isEmpty(criteria.triggerReason)) {
-                String trigger = event.getTrigger() == null ? "" : event.getTrigger().toLowerCase();
-                if (!trigger.contains(criteria.triggerReason.toLowerCase())) {
-                    matches = false;
-                }
+            moodEvents = events;
+            if (adapter != null) {
+                adapter.updateData(moodEvents);
             }
-
-            if (matches) {
-                newFilteredList.add(event);
-            }
-        }
-
-        moodEvents = newFilteredList;
-        if (adapter != null) {
-            adapter.updateData(moodEvents);
-        }
-        updateEmptyState();
+            updateEmptyState();
+        });
     }
 
     private void updateEmptyState() {
@@ -484,13 +535,7 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
 
         userProfile.getPersonalMoodHistory().refresh(() -> {
             fullMoodEvents = userProfile.getPersonalMoodHistory().getAllEvents();
-
-            fullMoodEvents.sort((event1, event2) -> {
-                if (event1.getTimestamp() == null && event2.getTimestamp() == null) return 0;
-                if (event1.getTimestamp() == null) return 1;
-                if (event2.getTimestamp() == null) return -1;
-                return event2.getTimestamp().compareTo(event1.getTimestamp());
-            });
+            sortNewestFirst(fullMoodEvents);
 
             requireActivity().runOnUiThread(() -> {
                 progressBar.setVisibility(View.GONE);
@@ -515,6 +560,20 @@ public class Profile extends Fragment implements FilterableFragment, FilterFragm
             ((HomeActivity) requireActivity()).setToolbarTitle("Profile");
         }
         refreshCounts();
-        loadData();
+        refreshTotalEntries();
+        PersonalMoodHistory history = userProfile.getPersonalMoodHistory();
+        if (history.isListening()) {
+            // Already current; the snapshot listener applied any changes
+            fullMoodEvents = history.getAllEvents();
+            if (currentCriteria != null) {
+                applyFilter(currentCriteria);
+            } else {
+                moodEvents = new ArrayList<>(fullMoodEvents);
+                adapter.updateData(moodEvents);
+                updateEmptyState();
+            }
+        } else {
+            loadData();
+        }
     }
 }
\ No newline at end of file
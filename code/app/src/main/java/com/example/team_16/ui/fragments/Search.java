@@ -44,8 +44,8 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.example.team_16.MoodTrackerApp;
 import com.example.team_16.R;
-import com.example.team_16.database.FirebaseDB;
 import com.example.team_16.models.UserProfile;
 import com.example.team_16.ui.adapters.SearchAdapter;
 import java.util.ArrayList;
@@ -70,9 +70,6 @@ public class Search extends Fragment implements SearchAdapter.OnFollowClickListe
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        FirebaseDB firebaseDB = FirebaseDB.getInstance(requireContext());
-        String currentUserId = firebaseDB.getCurrentUserId();
-
         searchBar = view.findViewById(R.id.search_bar);
         peopleRecyclerView = view.findViewById(R.id.peopleRecyclerView);
         noSearchMessage = view.findViewById(R.id.noSearchMessage);
@@ -81,12 +78,15 @@ public class Search extends Fragment implements SearchAdapter.OnFollowClickListe
         adapter = new SearchAdapter(this);
         peopleRecyclerView.setAdapter(adapter);
 
-        UserProfile.loadFromFirebase(firebaseDB, currentUserId, profile -> {
-            if (profile != null) {
-                currentUser = profile;
-                updateAdapterLists();
-            }
-        });
+        // The app's profile owns the signed-in user's history; a second one would share its journal and cache
+        currentUser = ((MoodTrackerApp) requireActivity().getApplication()).getCurrentUserProfile();
+        if (currentUser != null) {
+            currentUser.refreshFollowData(() -> {
+                if (isAdded()) {
+                    updateAdapterLists();
+                }
+            });
+        }
 
         searchBar.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
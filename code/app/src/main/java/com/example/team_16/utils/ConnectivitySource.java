@@ -0,0 +1,17 @@
+package com.example.team_16.utils;
+
+/**
+ * Something that knows whether the network is up and reports when that changes.
+ * ConnectivityUtil is the Android implementation; tests use a fake.
+ */
+public interface ConnectivitySource {
+
+    /**
+     * @return The last known network state, without querying the system
+     */
+    boolean isNetworkAvailable();
+
+    void addCallback(ConnectivityUtil.ConnectivityCallback callback);
+
+    void removeCallback(ConnectivityUtil.ConnectivityCallback callback);
+}
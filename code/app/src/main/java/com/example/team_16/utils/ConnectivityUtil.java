@@ -4,23 +4,26 @@ import android.content.Context;
 import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkCapabilities;
-import android.net.NetworkInfo;
 import android.net.NetworkRequest;
-import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
- * Utility class to monitor and check network connectivity
+ * Utility class to monitor and check network connectivity.
+ * The state is cached from network callbacks, so isNetworkAvailable is cheap enough
+ * to call before every write.
  */
-public class ConnectivityUtil {
+public class ConnectivityUtil implements ConnectivitySource {
     private static final String TAG = "ConnectivityUtil";
 
-    private final Context context;
     private final ConnectivityManager connectivityManager;
-    private final ConnectivityCallback callback;
-    private boolean isNetworkAvailable;
+    private final List<ConnectivityCallback> callbacks = new CopyOnWriteArrayList<>();
+    private ConnectivityManager.NetworkCallback networkCallback;
+    private volatile boolean isNetworkAvailable;
 
     /**
      * Interface for connectivity callbacks
@@ -31,6 +34,17 @@ public class ConnectivityUtil {
         void onNetworkLost();
     }
 
+    /**
+     * Constructor for ConnectivityUtil
+     *
+     * @param context The application context
+     */
+    public ConnectivityUtil(Context context) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.isNetworkAvailable = isConnected();
+    }
+
     /**
      * Constructor for ConnectivityUtil
      *
@@ -38,33 +52,50 @@ public class ConnectivityUtil {
      * @param callback Callback to receive network state changes
      */
     public ConnectivityUtil(Context context, ConnectivityCallback callback) {
-        this.context = context.getApplicationContext();
-        this.callback = callback;
-        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        this.isNetworkAvailable = isConnected();
+        this(context);
+        if (callback != null) {
+            addCallback(callback);
+        }
+    }
+
+    @Override
+    public void addCallback(ConnectivityCallback callback) {
+        callbacks.add(callback);
+    }
+
+    @Override
+    public void removeCallback(ConnectivityCallback callback) {
+        callbacks.remove(callback);
     }
 
     /**
      * Start monitoring network changes
      */
-    public void startMonitoring() {
-        if (connectivityManager == null) return;
+    public synchronized void startMonitoring() {
+        if (connectivityManager == null || networkCallback != null) return;
 
-        ConnectivityManager.NetworkCallback networkCallback = new ConnectivityManager.NetworkCallback() {
+        networkCallback = new ConnectivityManager.NetworkCallback() {
             @Override
             public void onAvailable(@NonNull Network network) {
                 Log.d(TAG, "Network connected");
+                boolean wasAvailable = isNetworkAvailable;
                 isNetworkAvailable = true;
-                if (callback != null) {
-                    callback.onNetworkAvailable();
+                if (!wasAvailable) {
+                    for (ConnectivityCallback callback : callbacks) {
+                        callback.onNetworkAvailable();
+                    }
                 }
             }
 
             @Override
             public void onLost(@NonNull Network network) {
                 Log.d(TAG, "Network disconnected");
+                // Losing wifi while mobile data is up is not going offline
+                if (isConnected()) {
+                    return;
+                }
                 isNetworkAvailable = false;
-                if (callback != null) {
+                for (ConnectivityCallback callback : callbacks) {
                     callback.onNetworkLost();
                 }
             }
@@ -75,44 +106,37 @@ public class ConnectivityUtil {
                 .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
                 .build();
         connectivityManager.registerNetworkCallback(request, networkCallback);
+        isNetworkAvailable = isConnected();
     }
 
     /**
      * Stop monitoring network changes
      */
-    public void stopMonitoring() {
-        if (connectivityManager == null) return;
+    public synchronized void stopMonitoring() {
+        if (connectivityManager == null || networkCallback == null) return;
 
         try {
-            connectivityManager.unregisterNetworkCallback(
-                    new ConnectivityManager.NetworkCallback() {
-                    }
-            );
+            connectivityManager.unregisterNetworkCallback(networkCallback);
         } catch (IllegalArgumentException e) {
             // This exception is thrown if the callback was not registered
             Log.e(TAG, "Error unregistering network callback", e);
         }
+        networkCallback = null;
     }
 
     /**
-     * Check if the device is currently connected to a network
+     * Ask the system whether the device is currently connected to a network
      *
      * @return true if connected, false otherwise
      */
     public boolean isConnected() {
         if (connectivityManager == null) return false;
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            Network network = connectivityManager.getActiveNetwork();
-            if (network == null) return false;
+        Network network = connectivityManager.getActiveNetwork();
+        if (network == null) return false;
 
-            NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
-            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
-        } else {
-            // For older Android versions
-            NetworkInfo activeNetwork = connectivityManager.getActiveNetworkInfo();
-            return activeNetwork != null && activeNetwork.isConnected();
-        }
+        NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(network);
+        return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
     }
 
     /**
@@ -120,7 +144,8 @@ public class ConnectivityUtil {
      *
      * @return true if network is available, false otherwise
      */
+    @Override
     public boolean isNetworkAvailable() {
         return isNetworkAvailable;
     }
-}
\ No newline at end of file
+}
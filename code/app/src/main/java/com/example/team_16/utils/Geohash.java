@@ -0,0 +1,126 @@
+package com.example.team_16.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Geohash encoding, so a location can be stored as a string whose prefixes are
+ * ever smaller cells. Everything within a cell shares its prefix, which turns
+ * "near this point" into a handful of indexed prefix range scans.
+ */
+public final class Geohash {
+
+    // Precision stored with each event, roughly 5m x 5m
+    public static final int MAX_PRECISION = 9;
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private Geohash() {
+    }
+
+    /**
+     * @param precision Number of characters, 1 to MAX_PRECISION
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean lonBit = true;
+        int bits = 0;
+        int value = 0;
+        while (hash.length() < precision) {
+            if (lonBit) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLon = mid;
+                } else {
+                    value <<= 1;
+                    maxLon = mid;
+                }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLat = mid;
+                } else {
+                    value <<= 1;
+                    maxLat = mid;
+                }
+            }
+            lonBit = !lonBit;
+            if (++bits == 5) {
+                hash.append(BASE32.charAt(value));
+                bits = 0;
+                value = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Cells that together cover every point within radiusKm of the given one: the
+     * cell containing it and its eight neighbours, at the finest precision whose
+     * cells are at least radiusKm across. Candidates still need an exact distance check.
+     */
+    public static List<String> coveringCells(double latitude, double longitude, double radiusKm) {
+        int precision = MAX_PRECISION;
+        while (precision > 1 && (cellHeightKm(precision) < radiusKm
+                || cellWidthKm(precision, latitude) < radiusKm)) {
+            precision--;
+        }
+
+        double height = cellHeightDegrees(precision);
+        double width = cellWidthDegrees(precision);
+        Set<String> cells = new LinkedHashSet<>();
+        for (int dy = -1; dy <= 1; dy++) {
+            double lat = Math.max(-90, Math.min(90 - 1e-9, latitude + dy * height));
+            for (int dx = -1; dx <= 1; dx++) {
+                double lon = longitude + dx * width;
+                if (lon >= 180) {
+                    lon -= 360;
+                } else if (lon < -180) {
+                    lon += 360;
+                }
+                cells.add(encode(lat, lon, precision));
+            }
+        }
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * @return true if hash lies inside any of the cells
+     */
+    public static boolean inAnyCell(String hash, List<String> cells) {
+        if (hash == null) {
+            return false;
+        }
+        for (String cell : cells) {
+            if (hash.startsWith(cell)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double cellHeightDegrees(int precision) {
+        return 180.0 / (1L << (5 * precision / 2));
+    }
+
+    private static double cellWidthDegrees(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    private static double cellHeightKm(int precision) {
+        return cellHeightDegrees(precision) * KM_PER_DEGREE;
+    }
+
+    private static double cellWidthKm(int precision, double latitude) {
+        // Narrowest edge of the neighbourhood, on the side nearer the pole
+        double edge = Math.min(89.9, Math.abs(latitude) + cellHeightDegrees(precision));
+        return cellWidthDegrees(precision) * KM_PER_DEGREE * Math.cos(Math.toRadians(edge));
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.team_16.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.team_16.database.FirebaseDB;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shrinks picked photos to an upload size cap off the main thread.
+ *
+ * The image is decoded already downsampled (inJustDecodeBounds, then a power of
+ * two inSampleSize) to at most MAX_DIMENSION on its longest side, and the encode
+ * quality is binary searched for the highest one that fits the cap, halving the
+ * dimensions if even MIN_QUALITY doesn't. Jobs run one at a time on a single worker,
+ * so only one bitmap is in memory at once and the encode buffers can be reused
+ * between jobs. Results are delivered on the main thread.
+ */
+public class ImageCompressionPipeline {
+    private static final String TAG = "ImageCompression";
+
+    // Mood photos must stay under 64KB
+    public static final int MAX_IMAGE_BYTES = 64 * 1024;
+
+    // Longest side to decode at; a 64KB JPEG can't keep more detail than this
+    public static final int MAX_DIMENSION = 1280;
+
+    public static final int MIN_QUALITY = 10;
+    public static final int MAX_QUALITY = 95;
+
+    // Give up below this size rather than upload a thumbnail of a thumbnail
+    private static final int MIN_DIMENSION = 160;
+
+    public enum Format {
+        JPEG,
+        WEBP
+    }
+
+    /**
+     * Encodes the image for searchQuality
+     */
+    public interface Encoder {
+        /**
+         * @return The encoded size at this quality
+         */
+        int encode(int quality);
+
+        /**
+         * Hold on to the last encode, which fit
+         */
+        void keepLast();
+    }
+
+    /**
+     * ByteArrayOutputStream whose buffer survives reset(), so repeated encodes
+     * don't reallocate it, and can be copied out without an intermediate array
+     */
+    private static final class ReusableStream extends ByteArrayOutputStream {
+        ReusableStream() {
+            super(MAX_IMAGE_BYTES);
+        }
+
+        byte[] copy() {
+            return Arrays.copyOf(buf, count);
+        }
+    }
+
+    private final ContentResolver contentResolver;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Only touched on the worker thread
+    private ReusableStream attempt = new ReusableStream();
+    private ReusableStream best = new ReusableStream();
+
+    public ImageCompressionPipeline(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * Compress an image to JPEG of at most MAX_IMAGE_BYTES
+     *
+     * @param callback Receives the bytes on the main thread, or null if the image
+     *                 could not be read or made small enough
+     */
+    public void compress(Uri imageUri, FirebaseDB.FirebaseCallback<byte[]> callback) {
+        compress(imageUri, MAX_IMAGE_BYTES, Format.JPEG, callback);
+    }
+
+    /**
+     * Compress an image to at most maxBytes in the given format
+     *
+     * @param callback Receives the bytes on the main thread, or null if the image
+     *                 could not be read or made small enough
+     */
+    public void compress(Uri imageUri, int maxBytes, Format format,
+                         FirebaseDB.FirebaseCallback<byte[]> callback) {
+        worker.execute(() -> {
+            byte[] result = compressNow(imageUri, maxBytes, format);
+            mainHandler.post(() -> callback.onCallback(result));
+        });
+    }
+
+    private byte[] compressNow(Uri imageUri, int maxBytes, Format format) {
+        Bitmap bitmap = null;
+        try {
+            bitmap = decodeSampled(imageUri, MAX_DIMENSION);
+            if (bitmap == null) {
+                Log.e(TAG, "Cannot decode " + imageUri);
+                return null;
+            }
+            Bitmap.CompressFormat compressFormat = toCompressFormat(format);
+            while (true) {
+                Bitmap source = bitmap;
+                int quality = searchQuality(new Encoder() {
+                    @Override
+                    public int encode(int quality) {
+                        attempt.reset();
+                        source.compress(compressFormat, quality, attempt);
+                        return attempt.size();
+                    }
+
+                    @Override
+                    public void keepLast() {
+                        ReusableStream swap = best;
+                        best = attempt;
+                        attempt = swap;
+                    }
+                }, maxBytes);
+                if (quality >= 0) {
+                    return best.copy();
+                }
+                int width = bitmap.getWidth() / 2;
+                int height = bitmap.getHeight() / 2;
+                if (Math.max(width, height) < MIN_DIMENSION) {
+                    Log.e(TAG, "Cannot fit " + imageUri + " in " + maxBytes + " bytes");
+                    return null;
+                }
+                bitmap = Bitmap.createScaledBitmap(source, width, height, true);
+                source.recycle();
+            }
+        } catch (IOException | OutOfMemoryError e) {
+            Log.e(TAG, "Error compressing " + imageUri, e);
+            return null;
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decode at the smallest power of two sample that keeps the longest side at or
+     * above maxDimension, then scale the rest of the way down
+     */
+    private Bitmap decodeSampled(Uri imageUri, int maxDimension) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = contentResolver.openInputStream(imageUri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, maxDimension);
+        Bitmap decoded;
+        try (InputStream in = contentResolver.openInputStream(imageUri)) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            return null;
+        }
+
+        int longest = Math.max(decoded.getWidth(), decoded.getHeight());
+        if (longest <= maxDimension) {
+            return decoded;
+        }
+        float scale = (float) maxDimension / longest;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded,
+                Math.round(decoded.getWidth() * scale), Math.round(decoded.getHeight() * scale), true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Highest quality in [MIN_QUALITY, MAX_QUALITY] whose encoding fits maxBytes.
+     * Each fitting encode is kept, so the winner isn't encoded twice.
+     *
+     * @return The quality, or -1 if none fits
+     */
+    public static int searchQuality(Encoder encoder, int maxBytes) {
+        int low = MIN_QUALITY;
+        int high = MAX_QUALITY;
+        int found = -1;
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            if (encoder.encode(quality) <= maxBytes) {
+                found = quality;
+                encoder.keepLast();
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Largest power of two sample size that keeps the longest side at least maxDimension
+     */
+    public static int calculateInSampleSize(int width, int height, int maxDimension) {
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while (longest / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat toCompressFormat(Format format) {
+        if (format == Format.WEBP) {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY
+                    : Bitmap.CompressFormat.WEBP;
+        }
+        return Bitmap.CompressFormat.JPEG;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.team_16.utils;
 
+import android.util.Log;
+
+import com.example.team_16.database.MoodOperation;
 import com.example.team_16.models.EmotionalState;
 import com.example.team_16.models.MoodEvent;
 import com.example.team_16.models.UserProfile;
@@ -173,8 +176,7 @@ public class TestDataGenerator {
             }
         }
 
-        // Add events in sequence with small delays to avoid overwhelming Firebase
-        addEventsSequentially(userProfile, events, 0, onComplete);
+        addEventsInBatches(userProfile, events, onComplete);
     }
 
     public static void generateMarchMoodEvents(UserProfile userProfile, Runnable onComplete) {
@@ -260,8 +262,7 @@ public class TestDataGenerator {
             }
         }
 
-        // Add events in sequence with small delays to avoid overwhelming Firebase
-        addEventsSequentially(userProfile, events, 0, onComplete);
+        addEventsInBatches(userProfile, events, onComplete);
     }
 
     private static String selectWeightedEmotion(Random random) {
@@ -321,26 +322,22 @@ public class TestDataGenerator {
         return "Alone";  // Default to alone if no specific context
     }
 
-    private static void addEventsSequentially(UserProfile userProfile, List<MoodEvent> events, int index, Runnable onComplete) {
-        if (index >= events.size()) {
-            if (onComplete != null) {
-                onComplete.run();
-            }
-            return;
+    private static void addEventsInBatches(UserProfile userProfile, List<MoodEvent> events, Runnable onComplete) {
+        List<MoodOperation> operations = new ArrayList<>(events.size());
+        for (MoodEvent event : events) {
+            operations.add(MoodOperation.add(event));
         }
 
-        MoodEvent event = events.get(index);
-        userProfile.addMoodEvent(event, success -> {
-            if (success) {
-                // Add next event after a small delay
-                android.os.Handler handler = new android.os.Handler(android.os.Looper.getMainLooper());
-                handler.postDelayed(() -> {
-                    addEventsSequentially(userProfile, events, index + 1, onComplete);
-                }, 200); // Increased delay to 200ms to be safer
-            } else {
-                // If failed, try next event immediately
-                addEventsSequentially(userProfile, events, index + 1, onComplete);
+        // One WriteBatch per 500 events instead of one write per event
+        userProfile.getMoodRepository().commitBatch(operations, results -> {
+            for (MoodOperation.BatchResult result : results) {
+                if (!result.isSuccessful()) {
+                    Log.e("TestDataGenerator", "Failed to add " + result.getOperations().size() + " test events");
+                }
+            }
+            if (onComplete != null) {
+                onComplete.run();
             }
         });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.utils.Geohash;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class GeohashTest {
+
+    @Test
+    public void testEncodeKnownPoints() {
+        assertEquals("ezs42", Geohash.encode(42.605, -5.603, 5));
+        assertEquals("u4pruydqq", Geohash.encode(57.64911, 10.40744, 9));
+    }
+
+    @Test
+    public void testCoveringCellsContainEveryNearbyPoint() {
+        Random random = new Random(16);
+        for (int i = 0; i < 1000; i++) {
+            double lat = -80 + 160 * random.nextDouble();
+            double lon = -180 + 360 * random.nextDouble();
+            List<String> cells = Geohash.coveringCells(lat, lon, 5.0);
+
+            // A point up to 5km away in a random direction
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double km = random.nextDouble() * 5.0;
+            double nearLat = lat + km / 111.32 * Math.cos(bearing);
+            double nearLon = lon + km / (111.32 * Math.cos(Math.toRadians(lat))) * Math.sin(bearing);
+            if (nearLon >= 180) {
+                nearLon -= 360;
+            } else if (nearLon < -180) {
+                nearLon += 360;
+            }
+
+            String hash = Geohash.encode(nearLat, nearLon, Geohash.MAX_PRECISION);
+            assertTrue(hash + " not in " + cells, Geohash.inAnyCell(hash, cells));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.utils.ImageCompressionPipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ImageCompressionPipelineTest {
+
+    /**
+     * Encoded size grows linearly with quality, like a real encoder only roughly does
+     */
+    private static class FakeEncoder implements ImageCompressionPipeline.Encoder {
+        final int bytesPerQuality;
+        final List<Integer> tried = new ArrayList<>();
+        int lastEncoded = -1;
+        int kept = -1;
+
+        FakeEncoder(int bytesPerQuality) {
+            this.bytesPerQuality = bytesPerQuality;
+        }
+
+        @Override
+        public int encode(int quality) {
+            tried.add(quality);
+            lastEncoded = quality;
+            return quality * bytesPerQuality;
+        }
+
+        @Override
+        public void keepLast() {
+            kept = lastEncoded;
+        }
+    }
+
+    @Test
+    public void testSearchFindsHighestFittingQualityInFewEncodes() {
+        FakeEncoder encoder = new FakeEncoder(1000);
+        int quality = ImageCompressionPipeline.searchQuality(encoder, 64 * 1024);
+
+        assertEquals(65, quality);
+        assertEquals(65, encoder.kept);
+        // A linear walk from the top would take 30 encodes
+        assertTrue(encoder.tried.size() <= 7);
+    }
+
+    @Test
+    public void testSearchReportsWhenNothingFits() {
+        FakeEncoder encoder = new FakeEncoder(1000);
+        assertEquals(-1, ImageCompressionPipeline.searchQuality(encoder, 5000));
+        assertEquals(-1, encoder.kept);
+
+        assertEquals(ImageCompressionPipeline.MAX_QUALITY,
+                ImageCompressionPipeline.searchQuality(new FakeEncoder(1), 64 * 1024));
+    }
+
+    @Test
+    public void testSampleSizeNeverDecodesBelowTarget() {
+        assertEquals(1, ImageCompressionPipeline.calculateInSampleSize(800, 600, 1280));
+        assertEquals(1, ImageCompressionPipeline.calculateInSampleSize(2000, 1500, 1280));
+        assertEquals(2, ImageCompressionPipeline.calculateInSampleSize(3000, 4000, 1280));
+        assertEquals(4, ImageCompressionPipeline.calculateInSampleSize(8000, 6000, 1280));
+    }
+}
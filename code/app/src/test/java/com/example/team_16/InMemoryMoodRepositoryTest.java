@@ -0,0 +1,474 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.FollowCounts;
+import com.example.team_16.database.FollowingWindow;
+import com.example.team_16.database.InMemoryMoodRepository;
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.database.MoodOperation;
+import com.example.team_16.database.MoodQuery;
+import com.example.team_16.database.SocialGraphRepository;
+import com.example.team_16.database.UserSummary;
+import com.example.team_16.models.AuthorSnapshot;
+import com.example.team_16.models.EmotionalState;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+import com.example.team_16.models.MoodHistory;
+import com.example.team_16.models.PersonalMoodHistory;
+import com.google.firebase.Timestamp;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class InMemoryMoodRepositoryTest {
+
+    private InMemoryMoodRepository repository;
+
+    @Before
+    public void setUp() {
+        repository = new InMemoryMoodRepository();
+    }
+
+    private MoodEvent eventAt(String userId, String id, long millis, String stateName) {
+        MoodEvent event = new MoodEvent(userId, EmotionalStateRegistry.getByName(stateName));
+        event.setId(id);
+        event.setTimestamp(new Timestamp(new Date(millis)));
+        return event;
+    }
+
+    @Test
+    public void testGetMoodEventsNewestFirst() {
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("alice", "a2", 3000, "Sadness"), success -> {});
+        repository.addMoodEvent(eventAt("alice", "a3", 2000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("bob", "b1", 4000, "Happiness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.getMoodEvents("alice", null, null, null, result::addAll);
+
+        assertEquals(3, result.size());
+        assertEquals("a2", result.get(0).getId());
+        assertEquals("a3", result.get(1).getId());
+        assertEquals("a1", result.get(2).getId());
+    }
+
+    @Test
+    public void testGetMoodEventsFilters() {
+        EmotionalState happiness = EmotionalStateRegistry.getByName("Happiness");
+        MoodEvent withTrigger = eventAt("alice", "a1", 5000, "Happiness");
+        withTrigger.setTrigger("Great workout");
+        repository.addMoodEvent(withTrigger, success -> {});
+        repository.addMoodEvent(eventAt("alice", "a2", 4000, "Sadness"), success -> {});
+        repository.addMoodEvent(eventAt("alice", "a3", 1000, "Happiness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.getMoodEvents("alice", new Date(2000), happiness, "workout", result::addAll);
+
+        assertEquals(1, result.size());
+        assertEquals("a1", result.get(0).getId());
+    }
+
+    @Test
+    public void testFollowingEventsMergedAcrossUsers() {
+        repository.putFollowing("carol", "alice");
+        repository.putFollowing("carol", "bob");
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("bob", "b1", 2000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("dave", "d1", 3000, "Happiness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.getFollowingMoodEvents("carol", null, null, null, result::addAll);
+
+        assertEquals(2, result.size());
+        assertEquals("b1", result.get(0).getId());
+        assertEquals("a1", result.get(1).getId());
+    }
+
+    @Test
+    public void testPublicOnlyFollowingQuery() {
+        repository.putFollowing("carol", "alice");
+        MoodEvent privateEvent = eventAt("alice", "a1", 2000, "Happiness");
+        privateEvent.setPostType("Private");
+        repository.addMoodEvent(privateEvent, success -> {});
+        repository.addMoodEvent(eventAt("alice", "a2", 1000, "Sadness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.queryFollowingMoodEvents("carol", MoodQuery.publicOnly(null, null, null), result::addAll);
+
+        assertEquals(1, result.size());
+        assertEquals("a2", result.get(0).getId());
+    }
+
+    @Test
+    public void testLatestFollowingEventsPerUser() {
+        repository.putFollowing("carol", "alice");
+        repository.putFollowing("carol", "bob");
+        for (int i = 1; i <= 5; i++) {
+            repository.addMoodEvent(eventAt("alice", "a" + i, i * 1000, "Happiness"), success -> {});
+        }
+        repository.addMoodEvent(eventAt("bob", "b1", 4500, "Happiness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.getLatestFollowingMoodEvents("carol", 2, result::addAll);
+
+        assertEquals(3, result.size());
+        assertEquals("a5", result.get(0).getId());
+        assertEquals("b1", result.get(1).getId());
+        assertEquals("a4", result.get(2).getId());
+    }
+
+    @Test
+    public void testTombstonesDoNotTakeLimitSlots() {
+        repository.putFollowing("carol", "alice");
+        for (int i = 1; i <= 4; i++) {
+            repository.addMoodEvent(eventAt("alice", "a" + i, i * 1000, "Happiness"), success -> {});
+        }
+        repository.deleteMoodEvent("a4", Assert::assertTrue);
+        repository.deleteMoodEvent("a3", Assert::assertTrue);
+
+        List<MoodEvent> latest = new ArrayList<>();
+        repository.getLatestFollowingMoodEvents("carol", 2, latest::addAll);
+        assertEquals(2, latest.size());
+        assertEquals("a2", latest.get(0).getId());
+        assertEquals("a1", latest.get(1).getId());
+
+        // Firestore pages can still return tombstones; the residual drops them on the client
+        MoodEvent tombstone = eventAt("alice", "a3", 3000, "Happiness");
+        tombstone.setDeleted(true);
+        MoodQuery all = new MoodQuery(null, null, null, null);
+        assertFalse(all.matchesResidual(tombstone));
+        assertFalse(all.matches(tombstone));
+        assertTrue(all.matches(latest.get(0)));
+    }
+
+    @Test
+    public void testMoodQueryResidualIsTriggerOnly() {
+        MoodQuery query = new MoodQuery("Public", new Date(5000),
+                EmotionalStateRegistry.getByName("Happiness"), "Coffee");
+        MoodEvent event = eventAt("alice", "a1", 1000, "Sadness");
+        event.setTrigger("Morning coffee with friends");
+
+        // Server-side predicates are not re-checked on the client
+        assertTrue(query.hasResidual());
+        assertTrue(query.matchesResidual(event));
+        assertFalse(query.matches(event));
+
+        event.setTrigger("Late bus");
+        assertFalse(query.matchesResidual(event));
+        assertFalse(new MoodQuery(null, null, null, "").hasResidual());
+    }
+
+    @Test
+    public void testAddMoodEventEmbedsAuthorSnapshot() {
+        repository.putUser("alice", "alice01", "Alice Smith", "https://example.com/a.png");
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+
+        List<MoodEvent> result = new ArrayList<>();
+        repository.getMoodEvents("alice", null, null, null, result::addAll);
+
+        AuthorSnapshot author = result.get(0).getAuthor();
+        assertNotNull(author);
+        assertEquals("alice01", author.getUsername());
+        assertEquals("Alice Smith", author.getFullName());
+        assertEquals("https://example.com/a.png", author.getProfileImageUrl());
+        assertEquals(0, author.getVersion());
+    }
+
+    @Test
+    public void testFetchUsersByIds() {
+        repository.putUser("alice", "alice01", "Alice Smith", null);
+        repository.putUser("bob", "bob01", "Bob Jones", null);
+
+        Map<String, UserSummary> users = new HashMap<>();
+        repository.fetchUsersByIds(Arrays.asList("alice", "bob", "ghost"), users::putAll);
+
+        assertEquals(2, users.size());
+        assertEquals("bob01", users.get("bob").getUsername());
+        assertNull(users.get("ghost"));
+    }
+
+    @Test
+    public void testUpdateAndDelete() {
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+
+        MoodEvent updates = eventAt("alice", "a1", 1000, "Sadness");
+        updates.setTrigger("Rainy day");
+        repository.updateMoodEvent("a1", updates, Assert::assertTrue);
+
+        repository.getMoodEventFromID("a1", event -> assertEquals("Rainy day", event.getTrigger()));
+
+        repository.deleteMoodEvent("a1", Assert::assertTrue);
+        assertEquals(0, repository.size());
+        repository.updateMoodEvent("a1", updates, Assert::assertFalse);
+    }
+
+    @Test
+    public void testCommitBatchIsAtomicPerBatch() {
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+
+        List<MoodOperation> operations = new ArrayList<>();
+        operations.add(MoodOperation.add(eventAt("alice", "a2", 2000, "Sadness")));
+        operations.add(MoodOperation.delete(eventAt("alice", "a1", 1000, "Happiness")));
+        List<MoodOperation.BatchResult> results = new ArrayList<>();
+        repository.commitBatch(operations, results::addAll);
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(1, repository.size());
+
+        // Updating a missing event fails the whole batch
+        operations.clear();
+        operations.add(MoodOperation.add(eventAt("alice", "a3", 3000, "Happiness")));
+        operations.add(MoodOperation.update(eventAt("alice", "missing", 3000, "Happiness")));
+        results.clear();
+        repository.commitBatch(operations, results::addAll);
+
+        assertFalse(results.get(0).isSuccessful());
+        assertEquals(1, repository.size());
+    }
+
+    @Test
+    public void testQueuedDeleteOfMissingEventDoesNotFailBatch() {
+        // The event was never written, or its tombstone already expired
+        List<MoodOperation> operations = new ArrayList<>();
+        operations.add(MoodOperation.add(eventAt("alice", "a1", 1000, "Happiness")));
+        operations.add(MoodOperation.delete(eventAt("alice", "missing", 2000, "Happiness")));
+        List<MoodOperation.BatchResult> results = new ArrayList<>();
+        repository.commitBatch(operations, results::addAll);
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(1, repository.size());
+        repository.deleteMoodEvent("missing", Assert::assertTrue);
+    }
+
+    @Test
+    public void testFollowRequestFlow() {
+        repository.sendFollowRequest("alice", "bob", Assert::assertTrue);
+        // Duplicate pending request is rejected
+        repository.sendFollowRequest("alice", "bob", Assert::assertFalse);
+
+        List<String> requestIds = new ArrayList<>();
+        repository.getPendingFollowRequests("bob", requests -> {
+            assertEquals(1, requests.size());
+            requestIds.add((String) requests.get(0).get("requestId"));
+        });
+
+        assertEquals(SocialGraphRepository.followRequestId("alice", "bob"), requestIds.get(0));
+        repository.getFollowRequestStatus("alice", "bob", status -> assertEquals("pending", status));
+
+        repository.respondToFollowRequest(requestIds.get(0), true, Assert::assertTrue);
+        repository.getFollowRequestStatus("alice", "bob", status -> assertEquals("accepted", status));
+        repository.getFollowingList("alice", following -> assertTrue(following.contains("bob")));
+        repository.getFollowersOfUser("bob", followers -> assertTrue(followers.contains("alice")));
+
+        repository.unfollowUser("alice", "bob", Assert::assertTrue);
+        repository.getFollowingList("alice", following -> assertTrue(following.isEmpty()));
+
+        // A stale accept of the answered request does not follow again
+        repository.respondToFollowRequest(requestIds.get(0), true, Assert::assertFalse);
+        repository.getFollowingList("alice", following -> assertTrue(following.isEmpty()));
+
+        // An answered request does not block a new one
+        repository.sendFollowRequest("alice", "bob", Assert::assertTrue);
+        repository.getFollowRequestStatus("carol", "bob", Assert::assertNull);
+    }
+
+    @Test
+    public void testFollowCounts() {
+        repository.putFollowing("alice", "bob");
+        repository.putFollowing("carol", "bob");
+        repository.putFollowing("bob", "alice");
+
+        List<FollowCounts> counts = new ArrayList<>();
+        repository.getFollowCounts("bob", counts::add);
+        assertEquals(2, counts.get(0).getFollowers());
+        assertEquals(1, counts.get(0).getFollowing());
+
+        repository.unfollowUser("carol", "bob", Assert::assertTrue);
+        repository.getFollowCounts("bob", counts::add);
+        assertEquals(1, counts.get(1).getFollowers());
+    }
+
+    @Test
+    public void testFollowingPages() {
+        for (String followed : new String[]{"erin", "bob", "dave", "carol"}) {
+            repository.putFollowing("alice", followed);
+        }
+
+        List<String> first = new ArrayList<>();
+        repository.getFollowingPage("alice", null, 3, first::addAll);
+        assertEquals(Arrays.asList("bob", "carol", "dave"), first);
+
+        List<String> second = new ArrayList<>();
+        repository.getFollowingPage("alice", first.get(2), 3, second::addAll);
+        assertEquals(Arrays.asList("erin"), second);
+
+        List<String> followers = new ArrayList<>();
+        repository.getFollowersPage("bob", null, 10, followers::addAll);
+        assertEquals(Arrays.asList("alice"), followers);
+    }
+
+    @Test
+    public void testMoodHistoryLoadsFromRepository() {
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+
+        MoodHistory history = new MoodHistory("alice", MoodHistory.MODE_PERSONAL, repository);
+        assertEquals(1, history.getAllEvents().size());
+        assertNotNull(history.getEventById("a1"));
+    }
+
+    @Test
+    public void testFilteredEventsReachPastLoadedPages() {
+        for (int i = 0; i < MoodHistory.PAGE_SIZE + 5; i++) {
+            repository.addMoodEvent(eventAt("alice", "a" + i, (i + 1) * 1000L,
+                    i == 0 ? "Sadness" : "Happiness"), success -> {});
+        }
+        PersonalMoodHistory history = new PersonalMoodHistory("alice", repository);
+        assertNull(history.getEventById("a0"));
+
+        repository.setOnline(false);
+        MoodEvent queued = eventAt("alice", "q1", 100_000, "Sadness");
+        history.addEvent(queued);
+        history.addEvent(eventAt("alice", "q2", 100_001, "Happiness"));
+
+        List<MoodEvent> sad = new ArrayList<>();
+        history.getFilteredEvents(new MoodQuery(null, null,
+                EmotionalStateRegistry.getByName("Sadness"), null), sad::addAll);
+        assertEquals(2, sad.size());
+        assertEquals("q1", sad.get(0).getId());
+        assertEquals("a0", sad.get(1).getId());
+    }
+
+    @Test
+    public void testListeningHistoryAppliesDeltas() {
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        MoodHistory history = new MoodHistory("alice", MoodHistory.MODE_PERSONAL, repository);
+        List<MoodChange> received = new ArrayList<>();
+        history.addChangeListener(received::addAll);
+        history.startListening();
+        received.clear();
+
+        repository.addMoodEvent(eventAt("alice", "a2", 2000, "Sadness"), success -> {});
+        assertEquals(1, received.size());
+        assertEquals(MoodChange.Type.ADDED, received.get(0).getType());
+        assertEquals(0, received.get(0).getNewIndex());
+        assertEquals("a2", history.getAllEvents().get(0).getId());
+
+        received.clear();
+        repository.deleteMoodEvent("a1", success -> {});
+        assertEquals(1, received.size());
+        assertEquals(MoodChange.Type.REMOVED, received.get(0).getType());
+        assertEquals(1, received.get(0).getOldIndex());
+        assertEquals(1, history.getAllEvents().size());
+
+        history.stopListening();
+        received.clear();
+        repository.addMoodEvent(eventAt("alice", "a3", 3000, "Happiness"), success -> {});
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testEmptyFirstPageBoundsTheNextDelta() {
+        List<Timestamp> asked = new ArrayList<>();
+        InMemoryMoodRepository recording = new InMemoryMoodRepository() {
+            @Override
+            public void getMoodEventsChangedSince(String userId, Timestamp since,
+                                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                asked.add(since);
+                super.getMoodEventsChangedSince(userId, since, callback);
+            }
+        };
+        long before = System.currentTimeMillis();
+        MoodHistory history = new MoodHistory("alice", MoodHistory.MODE_PERSONAL, recording);
+        assertTrue(history.getAllEvents().isEmpty());
+
+        recording.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        history.refresh();
+
+        assertEquals(1, asked.size());
+        assertTrue(asked.get(0).toDate().getTime() > 0);
+        assertTrue(asked.get(0).toDate().getTime() <= before);
+        assertEquals("a1", history.getAllEvents().get(0).getId());
+    }
+
+    @Test
+    public void testPagedEventsSurviveLiveWindowEviction() {
+        for (int i = 0; i < MoodHistory.PAGE_SIZE; i++) {
+            repository.addMoodEvent(eventAt("alice", "a" + i, (i + 1) * 1000L, "Happiness"), success -> {});
+        }
+        MoodHistory history = new MoodHistory("alice", MoodHistory.MODE_PERSONAL, repository);
+        history.startListening();
+
+        // A newer event pushes the oldest out of the live window but not out of the history
+        repository.addMoodEvent(eventAt("alice", "new", 100000, "Happiness"), success -> {});
+
+        assertEquals(MoodHistory.PAGE_SIZE + 1, history.getAllEvents().size());
+        assertNotNull(history.getEventById("a0"));
+    }
+
+    @Test
+    public void testFollowingHistoryTracksFollowGraph() {
+        repository.putFollowing("carol", "alice");
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("bob", "b1", 2000, "Happiness"), success -> {});
+        MoodHistory history = new MoodHistory("carol", MoodHistory.MODE_FOLLOWING, repository);
+        history.startListening();
+        assertTrue(history.isListening());
+        assertEquals(1, history.getAllEvents().size());
+
+        repository.putFollowing("carol", "bob");
+        assertEquals("b1", history.getAllEvents().get(0).getId());
+        repository.addMoodEvent(eventAt("bob", "b2", 3000, "Happiness"), success -> {});
+        assertEquals(3, history.getAllEvents().size());
+
+        repository.unfollowUser("carol", "alice", success -> {});
+        assertEquals(2, history.getAllEvents().size());
+        assertNull(history.getEventById("a1"));
+    }
+
+    @Test
+    public void testFollowingWindowPollsPastListenerCap() {
+        repository.putFollowing("carol", "alice");
+        repository.putFollowing("carol", "bob");
+        repository.addMoodEvent(eventAt("alice", "a1", 1000, "Happiness"), success -> {});
+        repository.addMoodEvent(eventAt("bob", "b1", 2000, "Happiness"), success -> {});
+
+        List<MoodChange> received = new ArrayList<>();
+        FollowingWindow window = repository.listenLatestFollowingMoodEvents("carol", 3, 1, received::addAll);
+        assertFalse(window.isLive());
+        assertEquals(2, received.size());
+
+        // Not live, so a new post waits for the next read...
+        received.clear();
+        repository.addMoodEvent(eventAt("bob", "b2", 3000, "Happiness"), success -> {});
+        assertTrue(received.isEmpty());
+
+        // ...which a follow graph change triggers, and which can bring it under the cap
+        repository.unfollowUser("carol", "alice", success -> {});
+        assertTrue(window.isLive());
+        List<String> removed = new ArrayList<>();
+        for (MoodChange change : received) {
+            if (change.getType() == MoodChange.Type.REMOVED) {
+                removed.add(change.getEvent().getId());
+            }
+        }
+        assertEquals(Collections.singletonList("a1"), removed);
+
+        window.remove();
+        received.clear();
+        repository.putFollowing("carol", "alice");
+        assertTrue(received.isEmpty());
+    }
+}
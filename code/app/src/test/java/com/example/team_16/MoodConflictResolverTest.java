@@ -0,0 +1,70 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.MoodConflictResolver;
+import com.example.team_16.database.MoodOperation;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+
+import org.junit.Test;
+
+public class MoodConflictResolverTest {
+
+    private MoodEvent event(String trigger, String placeName, long updatedAt, long version) {
+        MoodEvent event = new MoodEvent("alice", EmotionalStateRegistry.getByName("Happiness"));
+        event.setId("e1");
+        event.setTrigger(trigger);
+        event.setPlaceName(placeName);
+        event.setUpdatedAt(updatedAt);
+        event.setVersion(version);
+        return event;
+    }
+
+    @Test
+    public void testUnchangedServerTakesLocalEdit() {
+        MoodEvent base = event("Coffee", "Home", 100, 1);
+        MoodEvent local = event("Tea", "Home", 200, 2);
+
+        MoodOperation resolved = MoodConflictResolver.resolve(MoodOperation.update(local, base), base.copy());
+
+        assertSame(local, resolved.getEvent());
+    }
+
+    @Test
+    public void testEditsToDifferentFieldsAreBothKept() {
+        MoodEvent base = event("Coffee", "Home", 100, 1);
+        MoodEvent local = event("Tea", "Home", 200, 2);
+        MoodEvent server = event("Coffee", "Office", 300, 2);
+
+        MoodEvent merged = MoodConflictResolver.resolve(MoodOperation.update(local, base), server).getEvent();
+
+        assertEquals("Tea", merged.getTrigger());
+        assertEquals("Office", merged.getPlaceName());
+        assertEquals(300, merged.getUpdatedAt());
+        assertEquals(3, merged.getVersion());
+    }
+
+    @Test
+    public void testSameFieldGoesToLaterWrite() {
+        MoodEvent base = event("Coffee", "Home", 100, 1);
+
+        MoodEvent laterLocal = MoodConflictResolver.merge(base,
+                event("Tea", "Home", 300, 2), event("Juice", "Home", 200, 2));
+        assertEquals("Tea", laterLocal.getTrigger());
+
+        MoodEvent laterServer = MoodConflictResolver.merge(base,
+                event("Tea", "Home", 200, 2), event("Juice", "Home", 300, 2));
+        assertEquals("Juice", laterServer.getTrigger());
+    }
+
+    @Test
+    public void testDeleteLosesToLaterRemoteEdit() {
+        MoodEvent base = event("Coffee", "Home", 100, 1);
+        MoodOperation delete = MoodOperation.delete(event("Coffee", "Home", 200, 1), base);
+
+        assertNull(MoodConflictResolver.resolve(delete, event("Tea", "Home", 300, 2)));
+        assertSame(delete, MoodConflictResolver.resolve(delete, event("Tea", "Home", 150, 2)));
+        assertNull(MoodConflictResolver.resolve(delete, null));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.MoodEventMerge;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+import com.google.firebase.Timestamp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class MoodEventMergeTest {
+
+    private MoodEvent eventAt(String id, long millis) {
+        MoodEvent event = new MoodEvent("user", EmotionalStateRegistry.getByName("Happiness"));
+        event.setId(id);
+        event.setTimestamp(new Timestamp(new Date(millis)));
+        return event;
+    }
+
+    @Test
+    public void testChunk() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 65; i++) {
+            ids.add("u" + i);
+        }
+
+        List<List<String>> chunks = MoodEventMerge.chunk(ids, 30);
+
+        assertEquals(3, chunks.size());
+        assertEquals(30, chunks.get(0).size());
+        assertEquals(30, chunks.get(1).size());
+        assertEquals(5, chunks.get(2).size());
+        assertEquals("u64", chunks.get(2).get(4));
+        assertTrue(MoodEventMerge.chunk(Collections.emptyList(), 30).isEmpty());
+    }
+
+    @Test
+    public void testMergeNewestFirst() {
+        List<MoodEvent> first = Arrays.asList(eventAt("a", 9000), eventAt("b", 5000), eventAt("c", 1000));
+        List<MoodEvent> second = Arrays.asList(eventAt("d", 8000), eventAt("e", 2000));
+        List<MoodEvent> third = new ArrayList<>();
+
+        List<MoodEvent> merged = MoodEventMerge.mergeNewestFirst(Arrays.asList(first, second, third));
+
+        assertEquals(5, merged.size());
+        String[] expected = {"a", "d", "b", "e", "c"};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], merged.get(i).getId());
+        }
+    }
+}
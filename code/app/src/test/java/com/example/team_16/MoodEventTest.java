@@ -205,4 +205,30 @@ public class MoodEventTest {
         event.setEmotionalState(null);
         assertFalse(event.isValid());
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testCopyKeepsPersistedFields() {
+        MoodEvent event = new MoodEvent("user123", new EmotionalState("Happiness"));
+        event.setId("event1");
+        event.setTrigger("Coffee");
+        event.setPostType("Private");
+        event.setPhotoFilename("mood_images/event1.jpg");
+        event.setPhotoUrl("https://storage/mood_images/event1.jpg");
+        event.setUpdatedAt(1234L);
+        event.setVersion(3);
+        event.setServerUpdatedAt(new Timestamp(new Date(5678L)));
+
+        MoodEvent copy = event.copy();
+
+        assertNotSame(event, copy);
+        assertEquals("event1", copy.getId());
+        assertEquals(event.getTimestamp(), copy.getTimestamp());
+        assertEquals("Coffee", copy.getTrigger());
+        assertEquals("Private", copy.getPostType());
+        assertEquals("mood_images/event1.jpg", copy.getPhotoFilename());
+        assertEquals("https://storage/mood_images/event1.jpg", copy.getPhotoUrl());
+        assertEquals(1234L, copy.getUpdatedAt());
+        assertEquals(3, copy.getVersion());
+        assertEquals(event.getServerUpdatedAt(), copy.getServerUpdatedAt());
+    }
+}
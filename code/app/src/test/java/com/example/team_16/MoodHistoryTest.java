@@ -4,10 +4,15 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.InMemoryMoodRepository;
+import com.example.team_16.database.MoodChange;
+import com.example.team_16.database.MoodEventCache;
+import com.example.team_16.database.MoodQuery;
 import com.example.team_16.models.EmotionalState;
 import com.example.team_16.models.EmotionalStateRegistry;
 import com.example.team_16.models.MoodEvent;
 import com.example.team_16.models.MoodHistory;
+import com.google.firebase.Timestamp;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -16,8 +21,11 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(MockitoJUnitRunner.class)
 public class MoodHistoryTest {
@@ -94,12 +102,12 @@ public class MoodHistoryTest {
     @Test
     public void testRefresh() {
         moodHistory.refresh();
-        // Verify refresh was called twice (once in constructor, once in refresh)
-        verify(mockFirebaseDB, times(2)).getMoodEvents(
+        // Verify the first page was requested twice (once in constructor, once in refresh)
+        verify(mockFirebaseDB, times(2)).getMoodEventsPage(
             eq(TEST_USER_ID),
             isNull(),
             isNull(),
-            isNull(),
+            eq(MoodHistory.PAGE_SIZE),
             any()
         );
     }
@@ -109,16 +117,287 @@ public class MoodHistoryTest {
         Runnable mockCallback = mock(Runnable.class);
         moodHistory.refresh(mockCallback);
         
-        // Verify refresh was called twice (once in constructor, once in refresh)
-        verify(mockFirebaseDB, times(2)).getMoodEvents(
+        // Verify the first page was requested twice (once in constructor, once in refresh)
+        verify(mockFirebaseDB, times(2)).getMoodEventsPage(
             eq(TEST_USER_ID),
             isNull(),
             isNull(),
-            isNull(),
+            eq(MoodHistory.PAGE_SIZE),
             any()
         );
     }
 
+    @Test
+    public void testPagedLoading() {
+        InMemoryMoodRepository repository = new InMemoryMoodRepository();
+        int total = MoodHistory.PAGE_SIZE * 2 + 5;
+        for (int i = 0; i < total; i++) {
+            MoodEvent event = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Happiness"));
+            event.setId("event_" + i);
+            event.setTimestamp(new Timestamp(new Date(1000L * (i + 1))));
+            repository.addMoodEvent(event, success -> {});
+        }
+
+        MoodHistory history = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository);
+        assertEquals(MoodHistory.PAGE_SIZE, history.getAllEvents().size());
+        assertEquals("event_" + (total - 1), history.getAllEvents().get(0).getId());
+        assertTrue(history.hasMorePages());
+
+        assertTrue(history.loadNextPage(null));
+        assertTrue(history.loadNextPage(null));
+        assertEquals(total, history.getAllEvents().size());
+        assertEquals("event_0", history.getAllEvents().get(total - 1).getId());
+        assertFalse(history.hasMorePages());
+        assertFalse(history.loadNextPage(null));
+    }
+
+    @Test
+    public void testPagingKeepsEventsSharingTheBoundaryTimestamp() {
+        InMemoryMoodRepository repository = new InMemoryMoodRepository();
+        int total = MoodHistory.PAGE_SIZE + 5;
+        Timestamp sameInstant = new Timestamp(new Date(5000L));
+        for (int i = 0; i < total; i++) {
+            MoodEvent event = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Happiness"));
+            event.setId(String.format("event_%03d", i));
+            event.setTimestamp(sameInstant);
+            repository.addMoodEvent(event, success -> {});
+        }
+
+        MoodHistory history = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository);
+        assertEquals(MoodHistory.PAGE_SIZE, history.getAllEvents().size());
+        assertTrue(history.loadNextPage(null));
+        assertEquals(total, history.getAllEvents().size());
+    }
+
+    @Test
+    public void testRefreshAppliesOnlyChanges() {
+        List<Integer> pageReads = new ArrayList<>();
+        List<Integer> deltaSizes = new ArrayList<>();
+        InMemoryMoodRepository repository = new InMemoryMoodRepository() {
+            @Override
+            public void getMoodEventsPage(String userId, Timestamp startAfter, String startAfterId, int pageSize,
+                                          FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                pageReads.add(pageSize);
+                super.getMoodEventsPage(userId, startAfter, startAfterId, pageSize, callback);
+            }
+
+            @Override
+            public void getMoodEventsChangedSince(String userId, Timestamp since,
+                                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                super.getMoodEventsChangedSince(userId, since, changed -> {
+                    deltaSizes.add(changed.size());
+                    callback.onCallback(changed);
+                });
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            MoodEvent event = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Happiness"));
+            event.setId("event_" + i);
+            event.setTimestamp(new Timestamp(new Date(1000L * (i + 1))));
+            repository.addMoodEvent(event, success -> {});
+        }
+        MoodHistory history = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository);
+        assertEquals(3, history.getAllEvents().size());
+
+        MoodEvent updates = history.getEventById("event_0").copy();
+        updates.setTrigger("Rain");
+        repository.updateMoodEvent("event_0", updates, success -> {});
+        repository.deleteMoodEvent("event_1", success -> {});
+
+        history.refresh();
+        assertEquals(2, history.getAllEvents().size());
+        assertNull(history.getEventById("event_1"));
+        assertEquals("Rain", history.getEventById("event_0").getTrigger());
+        assertEquals(Integer.valueOf(2), deltaSizes.get(0));
+
+        // Nothing stored since the last refresh, so nothing is downloaded
+        history.refresh();
+        assertEquals(Integer.valueOf(0), deltaSizes.get(1));
+        assertEquals(1, pageReads.size());
+    }
+
+    /**
+     * MoodEventCache kept in maps, standing in for LocalMoodStore. Reads answer at
+     * once unless held, so a test can look at a history before the cache answers.
+     */
+    private static class MapMoodEventCache implements MoodEventCache {
+        final Map<String, Map<String, MoodEvent>> histories = new HashMap<>();
+        final Map<String, Watermark> watermarks = new HashMap<>();
+        final List<Runnable> heldReads = new ArrayList<>();
+        boolean holdReads;
+        int rowsWritten;
+
+        List<MoodEvent> events(String historyKey) {
+            List<MoodEvent> events = new ArrayList<>();
+            Map<String, MoodEvent> history = histories.get(historyKey);
+            if (history != null) {
+                events.addAll(history.values());
+            }
+            events.sort((a, b) -> b.getTimestamp().compareTo(a.getTimestamp()));
+            return events;
+        }
+
+        private void read(Runnable read) {
+            if (holdReads) {
+                heldReads.add(read);
+            } else {
+                read.run();
+            }
+        }
+
+        void releaseReads() {
+            holdReads = false;
+            while (!heldReads.isEmpty()) {
+                heldReads.remove(0).run();
+            }
+        }
+
+        @Override
+        public void getHistory(String historyKey, FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+            read(() -> callback.onCallback(events(historyKey)));
+        }
+
+        @Override
+        public void getWatermark(String historyKey, FirebaseDB.FirebaseCallback<Watermark> callback) {
+            read(() -> callback.onCallback(watermarks.get(historyKey)));
+        }
+
+        @Override
+        public void updateHistory(String historyKey, List<MoodEvent> upserted, Collection<String> removedIds,
+                                  Watermark watermark) {
+            Map<String, MoodEvent> history = histories.computeIfAbsent(historyKey, k -> new HashMap<>());
+            for (MoodEvent event : upserted) {
+                history.put(event.getId(), event);
+            }
+            history.keySet().removeAll(removedIds);
+            rowsWritten += upserted.size();
+            if (watermark != null) {
+                watermarks.put(historyKey, watermark);
+            } else {
+                watermarks.remove(historyKey);
+            }
+        }
+
+        @Override
+        public void query(List<String> historyKeys, MoodQuery query, List<String> geohashCells,
+                          FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+            List<MoodEvent> matching = new ArrayList<>();
+            for (String key : historyKeys) {
+                for (MoodEvent event : events(key)) {
+                    if (query == null || query.matches(event)) {
+                        matching.add(event);
+                    }
+                }
+            }
+            read(() -> callback.onCallback(matching));
+        }
+
+        @Override
+        public void clear() {
+            histories.clear();
+            watermarks.clear();
+        }
+    }
+
+    @Test
+    public void testColdStartShowsCachedEventsThenRevalidates() {
+        List<Integer> pageReads = new ArrayList<>();
+        List<FirebaseDB.FirebaseCallback<List<MoodEvent>>> pendingDeltas = new ArrayList<>();
+        InMemoryMoodRepository repository = new InMemoryMoodRepository() {
+            @Override
+            public void getMoodEventsPage(String userId, Timestamp startAfter, String startAfterId, int pageSize,
+                                          FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                pageReads.add(pageSize);
+                super.getMoodEventsPage(userId, startAfter, startAfterId, pageSize, callback);
+            }
+
+            @Override
+            public void getMoodEventsChangedSince(String userId, Timestamp since,
+                                                  FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                // Held back, so the test can look at the history before the network answers
+                super.getMoodEventsChangedSince(userId, since,
+                        changed -> pendingDeltas.add(events -> callback.onCallback(changed)));
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            MoodEvent event = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Happiness"));
+            event.setId("event_" + i);
+            event.setTimestamp(new Timestamp(new Date(1000L * (i + 1))));
+            repository.addMoodEvent(event, success -> {});
+        }
+        MapMoodEventCache cache = new MapMoodEventCache();
+        new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository, cache);
+        assertEquals(1, pageReads.size());
+
+        // Stored while the app was not running
+        MoodEvent later = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Sadness"));
+        later.setId("event_3");
+        later.setTimestamp(new Timestamp(new Date(4000L)));
+        repository.addMoodEvent(later, success -> {});
+
+        MoodHistory restarted = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository, cache);
+        assertEquals(3, restarted.getAllEvents().size());
+        List<MoodEvent> happy = new ArrayList<>();
+        restarted.getCachedEvents(new MoodQuery(null, null,
+                EmotionalStateRegistry.getByName("Happiness"), null), null, happy::addAll);
+        assertEquals(3, happy.size());
+
+        // Revalidated with a delta from the saved watermark rather than another page read
+        assertEquals(1, pendingDeltas.size());
+        pendingDeltas.get(0).onCallback(null);
+        assertEquals(1, pageReads.size());
+        assertEquals("event_3", restarted.getAllEvents().get(0).getId());
+        assertEquals(4, cache.events("personal:" + TEST_USER_ID).size());
+        List<MoodEvent> sad = new ArrayList<>();
+        restarted.getCachedEvents(new MoodQuery(null, null,
+                EmotionalStateRegistry.getByName("Sadness"), null), null, sad::addAll);
+        assertEquals(1, sad.size());
+    }
+
+    @Test
+    public void testCacheIsReadWithoutBlockingAndOnlyChangesAreWritten() {
+        List<Integer> pageReads = new ArrayList<>();
+        InMemoryMoodRepository repository = new InMemoryMoodRepository() {
+            @Override
+            public void getMoodEventsPage(String userId, Timestamp startAfter, String startAfterId, int pageSize,
+                                          FirebaseDB.FirebaseCallback<List<MoodEvent>> callback) {
+                pageReads.add(pageSize);
+                super.getMoodEventsPage(userId, startAfter, startAfterId, pageSize, callback);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            MoodEvent event = new MoodEvent(TEST_USER_ID, EmotionalStateRegistry.getByName("Happiness"));
+            event.setId("event_" + i);
+            event.setTimestamp(new Timestamp(new Date(1000L * (i + 1))));
+            repository.addMoodEvent(event, success -> {});
+        }
+        MapMoodEventCache cache = new MapMoodEventCache();
+        new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository, cache);
+        assertEquals(3, cache.rowsWritten);
+
+        cache.holdReads = true;
+        MoodHistory restarted = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_PERSONAL, repository, cache);
+        List<MoodChange> shown = new ArrayList<>();
+        restarted.addChangeListener(shown::addAll);
+        // Nothing waits on the cache; revalidation starts once it has answered
+        assertTrue(restarted.getAllEvents().isEmpty());
+        assertEquals(1, pageReads.size());
+
+        cache.releaseReads();
+        assertEquals(3, restarted.getAllEvents().size());
+        assertEquals(3, shown.size());
+        assertEquals(MoodChange.Type.ADDED, shown.get(0).getType());
+
+        MoodEvent updates = restarted.getEventById("event_0").copy();
+        updates.setTrigger("Rain");
+        repository.updateMoodEvent("event_0", updates, success -> {});
+        restarted.refresh();
+        assertEquals("Rain", restarted.getEventById("event_0").getTrigger());
+        // Only the edited event is written again
+        assertEquals(4, cache.rowsWritten);
+        assertEquals("Rain", cache.histories.get("personal:" + TEST_USER_ID).get("event_0").getTrigger());
+    }
+
     @Test
     public void testFollowingMode() {
         MoodHistory followingHistory = new MoodHistory(TEST_USER_ID, MoodHistory.MODE_FOLLOWING, mockFirebaseDB);
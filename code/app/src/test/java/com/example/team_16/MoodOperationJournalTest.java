@@ -0,0 +1,169 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.InMemoryMoodRepository;
+import com.example.team_16.database.MoodOperation;
+import com.example.team_16.database.MoodOperationJournal;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+import com.example.team_16.models.PersonalMoodHistory;
+import com.google.firebase.Timestamp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+public class MoodOperationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MoodEvent event(String id, String trigger) {
+        MoodEvent event = new MoodEvent("alice", EmotionalStateRegistry.getByName("Happiness"));
+        event.setId(id);
+        event.setTrigger(trigger);
+        return event;
+    }
+
+    private MoodOperationJournal journal(File file) {
+        return new MoodOperationJournal(file, Runnable::run);
+    }
+
+    @Test
+    public void testReplayReturnsAppendedOperationsInOrder() {
+        File file = new File(folder.getRoot(), "alice.journal");
+        MoodOperationJournal journal = journal(file);
+        journal.append(MoodOperation.add(event("e1", "Coffee")));
+        journal.append(MoodOperation.update(event("e1", "Tea")));
+        journal.append(MoodOperation.delete(event("e2", null)));
+
+        List<MoodOperation> replayed = journal(file).replay();
+
+        assertEquals(3, replayed.size());
+        assertEquals(MoodOperation.Type.ADD, replayed.get(0).getType());
+        assertEquals("Tea", replayed.get(1).getEvent().getTrigger());
+        assertEquals(MoodOperation.Type.DELETE, replayed.get(2).getType());
+        assertEquals("e2", replayed.get(2).getEventId());
+    }
+
+    @Test
+    public void testTornTailIsDropped() throws IOException {
+        File file = new File(folder.getRoot(), "alice.journal");
+        journal(file).append(MoodOperation.add(event("e1", "Coffee")));
+        long intactLength = file.length();
+
+        // A crash half way through the next record
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{0, 0, 1, 0, 12, 34});
+        }
+
+        MoodOperationJournal reopened = journal(file);
+        assertEquals(1, reopened.replay().size());
+        assertEquals(intactLength, file.length());
+
+        // Appends after recovery land after the intact prefix
+        reopened.append(MoodOperation.add(event("e2", "Walk")));
+        assertEquals(2, journal(file).replay().size());
+    }
+
+    @Test
+    public void testCompactKeepsOnlyRemaining() {
+        File file = new File(folder.getRoot(), "alice.journal");
+        MoodOperationJournal journal = journal(file);
+        journal.append(MoodOperation.add(event("e1", "Coffee")));
+        MoodOperation failed = MoodOperation.add(event("e2", "Walk"));
+        journal.append(failed);
+
+        journal.compact(Collections.singletonList(failed));
+        List<MoodOperation> replayed = journal(file).replay();
+        assertEquals(1, replayed.size());
+        assertEquals("e2", replayed.get(0).getEventId());
+
+        journal.compact(Collections.emptyList());
+        assertFalse(file.exists());
+        assertTrue(journal(file).replay().isEmpty());
+    }
+
+    @Test
+    public void testReplayedOperationsAreShownOverTheFirstLoad() {
+        InMemoryMoodRepository repository = new InMemoryMoodRepository();
+        for (int i = 1; i <= 3; i++) {
+            MoodEvent stored = event("e" + i, "Server");
+            stored.setTimestamp(new Timestamp(new Date(i * 1000L)));
+            repository.addMoodEvent(stored, success -> {});
+        }
+
+        File file = new File(folder.getRoot(), "alice.journal");
+        MoodEvent added = event("e4", "Offline");
+        added.setTimestamp(new Timestamp(new Date(4000L)));
+        MoodEvent edited = event("e1", "Edited");
+        edited.setTimestamp(new Timestamp(new Date(1000L)));
+        journal(file).append(MoodOperation.add(added));
+        journal(file).append(MoodOperation.update(edited));
+        journal(file).append(MoodOperation.delete(event("e2", null)));
+
+        PersonalMoodHistory history = new PersonalMoodHistory("alice", repository, journal(file));
+        List<MoodEvent> events = history.getAllEvents();
+        assertEquals(3, events.size());
+        assertEquals("e4", events.get(0).getId());
+        assertEquals("e3", events.get(1).getId());
+        assertEquals("Edited", history.getEventById("e1").getTrigger());
+        assertNull(history.getEventById("e2"));
+        assertTrue(history.hasPendingChanges());
+
+        // A server change to an event with a queued edit doesn't replace it
+        MoodEvent serverEdit = event("e1", "Server edit");
+        serverEdit.setTimestamp(new Timestamp(new Date(1000L)));
+        repository.updateMoodEvent("e1", serverEdit, success -> {});
+        history.refresh();
+        assertEquals("Edited", history.getEventById("e1").getTrigger());
+        assertNull(history.getEventById("e2"));
+    }
+
+    @Test
+    public void testReplayRunsOnTheWriterThread() {
+        File file = new File(folder.getRoot(), "alice.journal");
+        MoodEvent queued = event("e1", "Offline");
+        queued.setTimestamp(new Timestamp(new Date(1000L)));
+        journal(file).append(MoodOperation.add(queued));
+
+        InMemoryMoodRepository repository = new InMemoryMoodRepository();
+        List<Runnable> writer = new ArrayList<>();
+        PersonalMoodHistory history = new PersonalMoodHistory("alice", repository,
+                new MoodOperationJournal(file, writer::add, Runnable::run));
+
+        // Nothing is read until the writer runs, and nothing is synced before then
+        assertEquals(1, writer.size());
+        assertFalse(history.hasPendingChanges());
+        MoodEvent added = event("e2", "While replaying");
+        added.setTimestamp(new Timestamp(new Date(2000L)));
+        repository.setOnline(false);
+        history.addEvent(added);
+        repository.setOnline(true);
+        boolean[] synced = {true};
+        history.syncPendingChanges(success -> synced[0] = success);
+        assertFalse(synced[0]);
+        assertEquals(0, repository.size());
+
+        // The replay runs first, then the append made while it was pending
+        while (!writer.isEmpty()) {
+            writer.remove(0).run();
+        }
+        assertEquals(2, history.getAllEvents().size());
+        assertEquals("Offline", history.getEventById("e1").getTrigger());
+        assertEquals(2, journal(file).replay().size());
+
+        history.syncPendingChanges(success -> synced[0] = success);
+        assertTrue(synced[0]);
+        assertEquals(2, repository.size());
+    }
+}
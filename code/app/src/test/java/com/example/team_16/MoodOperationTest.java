@@ -0,0 +1,62 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.MoodOperation;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class MoodOperationTest {
+
+    private MoodEvent event(String id, String trigger) {
+        MoodEvent event = new MoodEvent("alice", EmotionalStateRegistry.getByName("Happiness"));
+        event.setId(id);
+        event.setTrigger(trigger);
+        return event;
+    }
+
+    @Test
+    public void testAddThenUpdatesBecomesOneAdd() {
+        List<MoodOperation> coalesced = MoodOperation.coalesce(Arrays.asList(
+                MoodOperation.add(event("e1", "Coffee")),
+                MoodOperation.update(event("e1", "Tea")),
+                MoodOperation.update(event("e1", "Juice"))));
+
+        assertEquals(1, coalesced.size());
+        assertEquals(MoodOperation.Type.ADD, coalesced.get(0).getType());
+        assertEquals("Juice", coalesced.get(0).getEvent().getTrigger());
+    }
+
+    @Test
+    public void testAddThenDeleteCancelsOut() {
+        List<MoodOperation> coalesced = MoodOperation.coalesce(Arrays.asList(
+                MoodOperation.add(event("e1", "Coffee")),
+                MoodOperation.update(event("e1", "Tea")),
+                MoodOperation.delete(event("e1", "Tea"))));
+
+        assertTrue(coalesced.isEmpty());
+    }
+
+    @Test
+    public void testUpdatesKeepLastAndFirstTouchOrder() {
+        List<MoodOperation> coalesced = MoodOperation.coalesce(Arrays.asList(
+                MoodOperation.update(event("e1", "Coffee")),
+                MoodOperation.add(event("e2", "Walk")),
+                MoodOperation.update(event("e1", "Tea")),
+                MoodOperation.update(event("e3", "Run")),
+                MoodOperation.delete(event("e3", "Run"))));
+
+        assertEquals(3, coalesced.size());
+        assertEquals("e1", coalesced.get(0).getEventId());
+        assertEquals(MoodOperation.Type.UPDATE, coalesced.get(0).getType());
+        assertEquals("Tea", coalesced.get(0).getEvent().getTrigger());
+        assertEquals("e2", coalesced.get(1).getEventId());
+        // An update followed by a delete still has to delete the server copy
+        assertEquals(MoodOperation.Type.DELETE, coalesced.get(2).getType());
+    }
+}
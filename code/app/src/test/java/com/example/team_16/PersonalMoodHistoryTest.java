@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.MoodOperation;
 import com.example.team_16.models.EmotionalState;
 import com.example.team_16.models.EmotionalStateRegistry;
 import com.example.team_16.models.MoodEvent;
@@ -16,6 +17,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -115,6 +117,31 @@ public class PersonalMoodHistoryTest {
         });
     }
 
+    @Test
+    public void testSyncPendingChangesRequeuesFailedBatch() {
+        when(mockFirebaseDB.isOnline()).thenReturn(false, true);
+
+        EmotionalState emotionalState = EmotionalStateRegistry.getByName("Happiness");
+        MoodEvent event = new MoodEvent(TEST_USER_ID, emotionalState);
+        event.setId("test_event_id");
+        personalMoodHistory.addEvent(event);
+
+        doAnswer(invocation -> {
+            List<MoodOperation> operations = invocation.getArgument(0);
+            FirebaseDB.FirebaseCallback<List<MoodOperation.BatchResult>> callback = invocation.getArgument(1);
+            callback.onCallback(Collections.singletonList(new MoodOperation.BatchResult(operations, false)));
+            return null;
+        }).when(mockFirebaseDB).commitBatch(anyList(), any());
+
+        final boolean[] synced = {true};
+        personalMoodHistory.syncPendingChanges(success -> synced[0] = success);
+
+        assertFalse(synced[0]);
+        assertTrue(personalMoodHistory.hasPendingChanges());
+        verify(mockFirebaseDB).commitBatch(argThat(ops -> ops.size() == 1
+                && ops.get(0).getType() == MoodOperation.Type.ADD), any());
+    }
+
     @Test
     public void testHasPendingChanges() {
         // Initially should have no pending changes
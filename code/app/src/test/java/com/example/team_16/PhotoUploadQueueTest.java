@@ -0,0 +1,163 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.PhotoUploadQueue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PhotoUploadQueueTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Holds uploads in flight until the test finishes them
+     */
+    private static class FakeUploader implements PhotoUploadQueue.Uploader {
+        final Map<String, FirebaseDB.FirebaseCallback<String>> inFlight = new LinkedHashMap<>();
+        final Map<String, FirebaseDB.FirebaseCallback<String>> sessions = new LinkedHashMap<>();
+        final Map<String, String> resumedFrom = new LinkedHashMap<>();
+        final List<String> deleted = new ArrayList<>();
+
+        @Override
+        public void uploadPhoto(String storagePath, File data, String sessionUri,
+                                FirebaseDB.FirebaseCallback<String> onSession,
+                                FirebaseDB.FirebaseCallback<String> callback) {
+            assertTrue(data.exists());
+            resumedFrom.put(storagePath, sessionUri);
+            sessions.put(storagePath, onSession);
+            inFlight.put(storagePath, callback);
+        }
+
+        @Override
+        public void deletePhoto(String storagePath) {
+            deleted.add(storagePath);
+        }
+
+        void finish(String storagePath, boolean success) {
+            inFlight.remove(storagePath).onCallback(success ? "https://storage/" + storagePath : null);
+        }
+    }
+
+    @Test
+    public void testStagedPhotoSurvivesRestartAndCommitsOnlyOnceUploaded() {
+        File dir = new File(folder.getRoot(), "alice");
+        FakeUploader uploader = new FakeUploader();
+        PhotoUploadQueue queue = new PhotoUploadQueue(dir, uploader);
+        assertTrue(queue.enqueue("e1", "images/e1.jpg", new byte[]{1, 2, 3}));
+
+        PhotoUploadQueue restarted = new PhotoUploadQueue(dir, uploader);
+        assertTrue(restarted.hasPendingChanges());
+
+        Map<String, String> committed = new LinkedHashMap<>();
+        Map<String, String> urls = new LinkedHashMap<>();
+        restarted.setUploadListener((eventId, storagePath, downloadUrl) -> {
+            committed.put(eventId, storagePath);
+            urls.put(eventId, downloadUrl);
+        });
+        List<Boolean> results = new ArrayList<>();
+        restarted.syncPendingChanges(results::add);
+
+        // A failed upload commits nothing and stays staged for the retry
+        uploader.finish("images/e1.jpg", false);
+        assertTrue(committed.isEmpty());
+        assertEquals(Boolean.FALSE, results.get(0));
+        assertTrue(restarted.hasPendingChanges());
+
+        restarted.syncPendingChanges(results::add);
+        uploader.finish("images/e1.jpg", true);
+        assertEquals("images/e1.jpg", committed.get("e1"));
+        assertEquals("https://storage/images/e1.jpg", urls.get("e1"));
+        assertEquals(Boolean.TRUE, results.get(1));
+        assertFalse(restarted.hasPendingChanges());
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void testRestoreRunsOnTheIoExecutor() {
+        File dir = new File(folder.getRoot(), "alice");
+        FakeUploader uploader = new FakeUploader();
+        assertTrue(new PhotoUploadQueue(dir, uploader).enqueue("e1", "images/e1.jpg", new byte[]{1}));
+
+        List<Runnable> io = new ArrayList<>();
+        PhotoUploadQueue restarted = new PhotoUploadQueue(dir, uploader, io::add, Runnable::run);
+        int[] queued = {0};
+        restarted.setOnUploadQueued(() -> queued[0]++);
+        assertFalse(restarted.hasPendingChanges());
+
+        io.remove(0).run();
+        assertTrue(restarted.hasPendingChanges());
+        assertEquals(1, queued[0]);
+    }
+
+    @Test
+    public void testInterruptedUploadResumesItsSessionAfterRestart() {
+        File dir = new File(folder.getRoot(), "alice");
+        FakeUploader uploader = new FakeUploader();
+        PhotoUploadQueue queue = new PhotoUploadQueue(dir, uploader);
+        queue.enqueue("e1", "images/e1.jpg", new byte[]{1, 2, 3});
+
+        queue.syncPendingChanges(success -> {});
+        assertNull(uploader.resumedFrom.get("images/e1.jpg"));
+        uploader.sessions.get("images/e1.jpg").onCallback("https://upload/session-1");
+        uploader.finish("images/e1.jpg", false);
+
+        // A new process picks the session up from disk
+        PhotoUploadQueue restarted = new PhotoUploadQueue(dir, uploader);
+        restarted.syncPendingChanges(success -> {});
+        assertEquals("https://upload/session-1", uploader.resumedFrom.get("images/e1.jpg"));
+
+        // A session Storage no longer accepts is forgotten, so the next try starts over
+        uploader.sessions.get("images/e1.jpg").onCallback(null);
+        uploader.finish("images/e1.jpg", false);
+        new PhotoUploadQueue(dir, uploader).syncPendingChanges(success -> {});
+        assertNull(uploader.resumedFrom.get("images/e1.jpg"));
+    }
+
+    @Test
+    public void testUploadsAreBounded() {
+        FakeUploader uploader = new FakeUploader();
+        PhotoUploadQueue queue = new PhotoUploadQueue(folder.getRoot(), uploader);
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue("e" + i, "images/e" + i + ".jpg", new byte[]{(byte) i});
+        }
+
+        List<Boolean> results = new ArrayList<>();
+        queue.syncPendingChanges(results::add);
+        assertEquals(2, uploader.inFlight.size());
+
+        for (int i = 0; i < 5; i++) {
+            uploader.finish("images/e" + i + ".jpg", true);
+            assertTrue(uploader.inFlight.size() <= 2);
+        }
+        assertEquals(Boolean.TRUE, results.get(0));
+        assertFalse(queue.hasPendingChanges());
+    }
+
+    @Test
+    public void testCancelledUploadIsDeletedWhenItLands() {
+        FakeUploader uploader = new FakeUploader();
+        PhotoUploadQueue queue = new PhotoUploadQueue(folder.getRoot(), uploader);
+        Map<String, String> committed = new LinkedHashMap<>();
+        queue.setUploadListener((eventId, storagePath, downloadUrl) -> committed.put(eventId, storagePath));
+        queue.enqueue("e1", "images/e1.jpg", new byte[]{1});
+
+        queue.syncPendingChanges(success -> {});
+        queue.cancel("e1");
+        uploader.finish("images/e1.jpg", true);
+
+        assertTrue(committed.isEmpty());
+        assertEquals(1, uploader.deleted.size());
+        assertFalse(queue.hasPendingChanges());
+    }
+}
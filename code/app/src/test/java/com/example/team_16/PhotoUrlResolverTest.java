@@ -0,0 +1,104 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.PhotoUrlResolver;
+import com.example.team_16.models.EmotionalStateRegistry;
+import com.example.team_16.models.MoodEvent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PhotoUrlResolverTest {
+
+    /**
+     * Holds lookups in flight until the test finishes them
+     */
+    private final Map<String, FirebaseDB.FirebaseCallback<String>> lookups = new LinkedHashMap<>();
+    private final List<String> backfilled = new ArrayList<>();
+
+    private final PhotoUrlResolver resolver = new PhotoUrlResolver(
+            lookups::put,
+            (event, url) -> backfilled.add(event.getId() + "=" + url),
+            16);
+
+    private static MoodEvent eventWithPhoto(String id, String photoFilename) {
+        MoodEvent event = new MoodEvent("alice", EmotionalStateRegistry.getByName("Happiness"));
+        event.setId(id);
+        event.setPhotoFilename(photoFilename);
+        return event;
+    }
+
+    private void finish(String photoFilename) {
+        lookups.remove(photoFilename).onCallback("https://storage/" + photoFilename);
+    }
+
+    @Test
+    public void testStoredUrlNeedsNoLookup() {
+        MoodEvent event = eventWithPhoto("e1", "images/e1.jpg");
+        event.setPhotoUrl("https://stored");
+
+        List<String> results = new ArrayList<>();
+        resolver.resolve(event, results::add);
+        assertEquals("https://stored", results.get(0));
+        assertTrue(lookups.isEmpty());
+    }
+
+    @Test
+    public void testLegacyEventIsLookedUpOnceAndBackfilled() {
+        MoodEvent first = eventWithPhoto("e1", "images/e1.jpg");
+        MoodEvent rebound = eventWithPhoto("e1", "images/e1.jpg");
+
+        List<String> results = new ArrayList<>();
+        resolver.resolve(first, results::add);
+        resolver.resolve(rebound, results::add);
+        assertEquals(1, lookups.size());
+
+        finish("images/e1.jpg");
+        assertEquals(2, results.size());
+        assertEquals("https://storage/images/e1.jpg", first.getPhotoUrl());
+        assertEquals("https://storage/images/e1.jpg", rebound.getPhotoUrl());
+        assertEquals(1, backfilled.size());
+
+        // Served from memory for a copy that hasn't been backfilled yet
+        resolver.resolve(eventWithPhoto("e1", "images/e1.jpg"), results::add);
+        assertEquals(3, results.size());
+        assertTrue(lookups.isEmpty());
+    }
+
+    @Test
+    public void testLookupsAreBounded() {
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            resolver.resolve(eventWithPhoto("e" + i, "images/e" + i + ".jpg"), results::add);
+        }
+        assertEquals(4, lookups.size());
+
+        for (int i = 0; i < 10; i++) {
+            finish("images/e" + i + ".jpg");
+            assertTrue(lookups.size() <= 4);
+        }
+        assertEquals(10, results.size());
+        assertEquals(10, backfilled.size());
+    }
+
+    @Test
+    public void testFailedLookupIsRetriedNextTime() {
+        MoodEvent event = eventWithPhoto("e1", "images/e1.jpg");
+        List<String> results = new ArrayList<>();
+        resolver.resolve(event, results::add);
+        lookups.remove("images/e1.jpg").onCallback(null);
+
+        assertNull(results.get(0));
+        assertNull(event.getPhotoUrl());
+        assertTrue(backfilled.isEmpty());
+
+        resolver.resolve(event, results::add);
+        assertEquals(1, lookups.size());
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.SyncScheduler;
+import com.example.team_16.utils.ConnectivitySource;
+import com.example.team_16.utils.ConnectivityUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SyncSchedulerTest {
+
+    private static class FakeConnectivity implements ConnectivitySource {
+        boolean available;
+        final List<ConnectivityUtil.ConnectivityCallback> callbacks = new ArrayList<>();
+
+        @Override
+        public boolean isNetworkAvailable() {
+            return available;
+        }
+
+        @Override
+        public void addCallback(ConnectivityUtil.ConnectivityCallback callback) {
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void removeCallback(ConnectivityUtil.ConnectivityCallback callback) {
+            callbacks.remove(callback);
+        }
+
+        void setAvailable(boolean available) {
+            this.available = available;
+            for (ConnectivityUtil.ConnectivityCallback callback : new ArrayList<>(callbacks)) {
+                if (available) {
+                    callback.onNetworkAvailable();
+                } else {
+                    callback.onNetworkLost();
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds scheduled tasks until the test runs them
+     */
+    private static class ManualTimer implements SyncScheduler.Timer {
+        final Map<Runnable, Long> scheduled = new LinkedHashMap<>();
+
+        @Override
+        public void schedule(Runnable task, long delayMs) {
+            scheduled.put(task, delayMs);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            scheduled.remove(task);
+        }
+
+        long nextDelay() {
+            return scheduled.values().iterator().next();
+        }
+
+        void runAll() {
+            List<Runnable> due = new ArrayList<>(scheduled.keySet());
+            scheduled.clear();
+            for (Runnable task : due) {
+                task.run();
+            }
+        }
+    }
+
+    private static class FakeTarget implements SyncScheduler.SyncTarget {
+        boolean pending = true;
+        boolean succeed = true;
+        int syncs;
+        FirebaseDB.FirebaseCallback<Boolean> inFlight;
+
+        @Override
+        public boolean hasPendingChanges() {
+            return pending;
+        }
+
+        @Override
+        public void syncPendingChanges(FirebaseDB.FirebaseCallback<Boolean> callback) {
+            syncs++;
+            inFlight = callback;
+        }
+
+        void finish() {
+            FirebaseDB.FirebaseCallback<Boolean> callback = inFlight;
+            inFlight = null;
+            if (succeed) {
+                pending = false;
+            }
+            callback.onCallback(succeed);
+        }
+    }
+
+    private FakeConnectivity connectivity;
+    private ManualTimer timer;
+    private FakeTarget target;
+    private SyncScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        connectivity = new FakeConnectivity();
+        timer = new ManualTimer();
+        target = new FakeTarget();
+        scheduler = new SyncScheduler(connectivity, target, timer, new Random(16));
+    }
+
+    @Test
+    public void testRequestsAreDebouncedIntoOneFlush() {
+        connectivity.available = true;
+        scheduler.start();
+        scheduler.requestSync();
+        scheduler.requestSync();
+
+        assertEquals(1, timer.scheduled.size());
+        timer.runAll();
+        assertEquals(1, target.syncs);
+
+        // A request while a flush is in flight does not start a second one
+        scheduler.requestSync();
+        timer.runAll();
+        assertEquals(1, target.syncs);
+        target.finish();
+        assertTrue(timer.scheduled.isEmpty());
+    }
+
+    @Test
+    public void testWaitsForNetworkInsteadOfPolling() {
+        scheduler.start();
+        timer.runAll();
+        assertEquals(0, target.syncs);
+        assertTrue(timer.scheduled.isEmpty());
+
+        connectivity.setAvailable(true);
+        timer.runAll();
+        assertEquals(1, target.syncs);
+    }
+
+    @Test
+    public void testFailuresBackOffWithJitter() {
+        connectivity.available = true;
+        target.succeed = false;
+        scheduler.start();
+
+        long previousCap = 0;
+        for (int attempt = 1; attempt <= 4; attempt++) {
+            timer.runAll();
+            target.finish();
+
+            long cap = 1000L << (attempt - 1);
+            long delay = timer.nextDelay();
+            assertTrue(delay >= cap / 2 && delay <= cap);
+            assertTrue(delay > previousCap / 2);
+            previousCap = cap;
+        }
+        assertEquals(4, target.syncs);
+
+        // New changes do not cut the backoff short
+        scheduler.requestSync();
+        assertTrue(timer.nextDelay() > 2000);
+
+        // Going offline cancels the retry; coming back starts afresh
+        connectivity.setAvailable(false);
+        assertTrue(timer.scheduled.isEmpty());
+        target.succeed = true;
+        connectivity.setAvailable(true);
+        assertEquals(2000, timer.nextDelay());
+        timer.runAll();
+        target.finish();
+        assertFalse(target.hasPendingChanges());
+    }
+
+    @Test
+    public void testStopUnsubscribes() {
+        scheduler.start();
+        scheduler.stop();
+        assertTrue(connectivity.callbacks.isEmpty());
+
+        connectivity.setAvailable(true);
+        assertTrue(timer.scheduled.isEmpty());
+    }
+}
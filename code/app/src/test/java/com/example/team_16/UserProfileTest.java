@@ -5,6 +5,7 @@ import static org.mockito.Mockito.*;
 
 import com.example.team_16.database.FirebaseDB;
 import com.example.team_16.models.MoodEvent;
+import com.example.team_16.models.MoodHistory;
 import com.example.team_16.models.PersonalMoodHistory;
 import com.example.team_16.models.UserProfile;
 
@@ -177,11 +178,12 @@ public class UserProfileTest {
     @Test
     public void testRefreshMoodHistories() {
         userProfile.refreshMoodHistories();
-        verify(mockFirebaseDB, times(2)).getMoodEvents(
+        // Personal history loads its first page on construction and again on refresh
+        verify(mockFirebaseDB, times(2)).getMoodEventsPage(
             eq(TEST_USER_ID),
             isNull(),
             isNull(),
-            isNull(),
+            eq(MoodHistory.PAGE_SIZE),
             any()
         );
     }
@@ -0,0 +1,115 @@
+package com.example.team_16;
+
+import static org.junit.Assert.*;
+
+import com.example.team_16.database.FirebaseDB;
+import com.example.team_16.database.UserSummary;
+import com.example.team_16.database.UserSummaryCache;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class UserSummaryCacheTest {
+
+    private static final long TTL = 1000;
+
+    private final Map<String, List<FirebaseDB.FirebaseCallback<UserSummary>>> pendingLoads = new HashMap<>();
+    private long now;
+    private int loads;
+    private UserSummaryCache cache;
+
+    @Before
+    public void setUp() {
+        now = 0;
+        loads = 0;
+        pendingLoads.clear();
+        // Loads stay pending until the test completes them, like an in-flight read
+        cache = new UserSummaryCache((userId, callback) -> {
+            loads++;
+            pendingLoads.computeIfAbsent(userId, k -> new ArrayList<>()).add(callback);
+        }, 2, TTL, () -> now);
+    }
+
+    private void completeLoad(String userId) {
+        for (FirebaseDB.FirebaseCallback<UserSummary> callback : pendingLoads.remove(userId)) {
+            callback.onCallback(new UserSummary(userId, userId + "_name", "Full " + userId, null, 0));
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsCoalesce() {
+        List<UserSummary> results = new ArrayList<>();
+        cache.get("alice", results::add);
+        cache.get("alice", results::add);
+        cache.get("alice", results::add);
+
+        assertEquals(1, loads);
+        assertTrue(results.isEmpty());
+
+        completeLoad("alice");
+
+        assertEquals(3, results.size());
+        assertEquals("alice_name", results.get(2).getUsername());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getCoalescedCount());
+
+        cache.get("alice", results::add);
+        assertEquals(1, loads);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        cache.get("alice", summary -> {});
+        completeLoad("alice");
+
+        now = TTL + 1;
+        cache.get("alice", summary -> {});
+
+        assertEquals(2, loads);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        for (String userId : new String[]{"alice", "bob"}) {
+            cache.get(userId, summary -> {});
+            completeLoad(userId);
+        }
+        // Touch alice so bob becomes the eldest
+        cache.get("alice", summary -> {});
+        cache.get("carol", summary -> {});
+        completeLoad("carol");
+
+        assertEquals(2, cache.size());
+        cache.get("alice", summary -> {});
+        assertEquals(3, loads);
+        cache.get("bob", summary -> {});
+        assertEquals(4, loads);
+    }
+
+    @Test
+    public void testInvalidateDuringLoadSkipsCaching() {
+        cache.get("alice", summary -> {});
+        cache.invalidate("alice");
+        completeLoad("alice");
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPeekNeverLoads() {
+        assertNull(cache.peek("alice"));
+        cache.put(new UserSummary("alice", "alice01", "Alice", null, 0));
+
+        assertEquals("alice01", cache.peek("alice").getUsername());
+        assertEquals(0, loads);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+}